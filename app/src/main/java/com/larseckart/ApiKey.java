@@ -1,5 +1,13 @@
 package com.larseckart;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 public class ApiKey {
 
   private final String value;
@@ -18,6 +26,45 @@ public class ApiKey {
     return new ApiKey(value);
   }
 
+  /**
+   * Reads every key configured for a provider: a comma separated list in the environment variable
+   * and one key per line in the file named by the same variable with a {@code _FILE} suffix. Blank
+   * lines and lines starting with {@code #} in the file are skipped.
+   */
+  public static List<ApiKey> allFromEnvironment(String environmentVariableName) {
+    List<String> values = new ArrayList<>();
+    String value = System.getenv(environmentVariableName);
+    if (value != null) {
+      values.addAll(Arrays.asList(value.split(",")));
+    }
+
+    String keyFile = System.getenv(environmentVariableName + "_FILE");
+    if (keyFile != null && !keyFile.isBlank()) {
+      try {
+        values.addAll(Files.readAllLines(Path.of(keyFile)));
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not read API key file: " + keyFile, e);
+      }
+    }
+
+    List<ApiKey> keys =
+        values.stream()
+            .map(String::trim)
+            .filter(key -> !key.isEmpty() && !key.startsWith("#"))
+            .distinct()
+            .map(ApiKey::new)
+            .toList();
+    if (keys.isEmpty()) {
+      throw new IllegalArgumentException(
+          "API key cannot be null or empty. Check environment variable: "
+              + environmentVariableName
+              + " or "
+              + environmentVariableName
+              + "_FILE");
+    }
+    return keys;
+  }
+
   public static ApiKey forTesting(String value) {
     return new ApiKey(value);
   }
@@ -1,5 +1,6 @@
 package com.larseckart;
 
+import com.larseckart.adapters.batch.BatchApplication;
 import com.larseckart.adapters.cli.CliApplication;
 import com.larseckart.adapters.web.WebApplication;
 
@@ -10,6 +11,8 @@ public class App {
 
     if ("web".equalsIgnoreCase(mode)) {
       WebApplication.main(args);
+    } else if ("batch".equalsIgnoreCase(mode)) {
+      BatchApplication.main(args);
     } else {
       CliApplication.main(args);
     }
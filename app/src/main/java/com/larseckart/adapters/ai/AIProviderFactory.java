@@ -4,6 +4,8 @@ import static org.slf4j.LoggerFactory.getLogger;
 
 import com.larseckart.ApiKey;
 import com.larseckart.core.ports.AIProvider;
+import com.larseckart.core.services.ToolRegistry;
+import java.util.List;
 import org.slf4j.Logger;
 
 public class AIProviderFactory {
@@ -16,11 +18,22 @@ public class AIProviderFactory {
   }
 
   public static AIProvider create(ProviderType type, ApiKey apiKey) {
-    log.info("Creating AI provider of type: {}", type);
-    return switch (type) {
-      case ANTHROPIC -> new AnthropicProvider(apiKey);
-      case GEMINI -> new GeminiProvider(apiKey);
-    };
+    return create(type, ApiKeyPool.of(apiKey));
+  }
+
+  public static AIProvider create(ProviderType type, ApiKeyPool keys) {
+    log.info("Creating AI provider of type: {} with {} API keys", type, keys.size());
+    ToolRegistry toolRegistry = ToolRegistry.withDefaultTools();
+    AIProvider provider =
+        switch (type) {
+          case ANTHROPIC -> new AnthropicProvider(keys, toolRegistry);
+          case GEMINI -> new GeminiProvider(keys, toolRegistry);
+        };
+
+    if (ProviderClients.prewarmEnabled()) {
+      keys.keys().forEach(apiKey -> ProviderClients.prewarm(type, apiKey));
+    }
+    return provider;
   }
 
   public static AIProvider createFromEnvironment() {
@@ -35,12 +48,12 @@ public class AIProviderFactory {
 
     log.info("Selected provider type: {}", type);
 
-    ApiKey apiKey =
+    List<ApiKey> apiKeys =
         switch (type) {
-          case ANTHROPIC -> ApiKey.fromEnvironment("ANTHROPIC_API_KEY");
-          case GEMINI -> ApiKey.fromEnvironment("GOOGLE_API_KEY");
+          case ANTHROPIC -> ApiKey.allFromEnvironment("ANTHROPIC_API_KEY");
+          case GEMINI -> ApiKey.allFromEnvironment("GOOGLE_API_KEY");
         };
 
-    return create(type, apiKey);
+    return create(type, new ApiKeyPool(apiKeys));
   }
 }
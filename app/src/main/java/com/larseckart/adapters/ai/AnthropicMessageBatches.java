@@ -0,0 +1,143 @@
+package com.larseckart.adapters.ai;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import com.anthropic.client.AnthropicClient;
+import com.anthropic.core.http.StreamResponse;
+import com.anthropic.models.messages.TextBlockParam;
+import com.anthropic.models.messages.ToolUnion;
+import com.anthropic.models.messages.batches.BatchCreateParams;
+import com.anthropic.models.messages.batches.MessageBatch;
+import com.anthropic.models.messages.batches.MessageBatchIndividualResponse;
+import com.anthropic.models.messages.batches.MessageBatchResult;
+import com.larseckart.ApiKey;
+import com.larseckart.core.domain.ai.AIRequest;
+import com.larseckart.core.domain.ai.BatchResult;
+import com.larseckart.core.ports.batch.MessageBatches;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+
+/**
+ * Runs requests through the Anthropic Message Batches API. Requests are built exactly like the
+ * interactive ones, cache breakpoints included, so batched prompts sharing a prefix can read it
+ * from the prompt cache too.
+ */
+class AnthropicMessageBatches implements MessageBatches {
+
+  private static final Logger log = getLogger(AnthropicMessageBatches.class);
+  private static final int MAX_BATCH_SIZE = 10_000;
+  private static final Duration POLL_INTERVAL = Duration.ofSeconds(30);
+
+  private final AnthropicProvider provider;
+  private final ApiKeyPool keys;
+  private final ResilientCaller resilience;
+  // Batches belong to the key's workspace; batches of earlier runs are looked up with any key
+  private final Map<String, ApiKey> batchKeys = new ConcurrentHashMap<>();
+
+  AnthropicMessageBatches(AnthropicProvider provider, ApiKeyPool keys, ResilientCaller resilience) {
+    this.provider = provider;
+    this.keys = keys;
+    this.resilience = resilience;
+  }
+
+  @Override
+  public int maxBatchSize() {
+    return MAX_BATCH_SIZE;
+  }
+
+  @Override
+  public String submit(Map<String, AIRequest> requests) {
+    BatchCreateParams.Builder batch = BatchCreateParams.builder();
+    requests.forEach(
+        (id, request) ->
+            batch.addRequest(
+                BatchCreateParams.Request.builder()
+                    .customId(id)
+                    .params(paramsFor(request))
+                    .build()));
+    BatchCreateParams params = batch.build();
+
+    return resilience.call(
+        () ->
+            keys.call(
+                lease -> {
+                  MessageBatch created =
+                      ProviderClients.anthropic(lease.key()).messages().batches().create(params);
+                  batchKeys.put(created.id(), lease.key());
+                  return created.id();
+                },
+                AnthropicProvider::quarantineFor),
+        AnthropicProvider::classify);
+  }
+
+  @Override
+  public List<BatchResult> awaitResults(String batchId) {
+    AnthropicClient client =
+        ProviderClients.anthropic(batchKeys.getOrDefault(batchId, keys.keys().getFirst()));
+
+    MessageBatch batch = retrieve(client, batchId);
+    while (!MessageBatch.ProcessingStatus.ENDED.equals(batch.processingStatus())) {
+      log.info(
+          "Batch {} in progress: {} processing, {} succeeded, {} errored",
+          batchId,
+          batch.requestCounts().processing(),
+          batch.requestCounts().succeeded(),
+          batch.requestCounts().errored());
+      try {
+        Thread.sleep(POLL_INTERVAL.toMillis());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for batch " + batchId, e);
+      }
+      batch = retrieve(client, batchId);
+    }
+
+    List<BatchResult> results = new ArrayList<>();
+    try (StreamResponse<MessageBatchIndividualResponse> responses =
+        resilience.call(
+            () -> client.messages().batches().resultsStreaming(batchId),
+            AnthropicProvider::classify)) {
+      responses.stream()
+          .forEach(response -> results.add(toBatchResult(response.customId(), response.result())));
+    }
+    log.info("Batch {} ended with {} results", batchId, results.size());
+    return results;
+  }
+
+  private MessageBatch retrieve(AnthropicClient client, String batchId) {
+    return resilience.call(
+        () -> client.messages().batches().retrieve(batchId), AnthropicProvider::classify);
+  }
+
+  private BatchCreateParams.Request.Params paramsFor(AIRequest request) {
+    var params =
+        BatchCreateParams.Request.Params.builder()
+            .model(AnthropicProvider.MODEL)
+            .maxTokens((long) request.maxTokens())
+            .messages(provider.toMessageParams(request.messages()));
+    List<TextBlockParam> system = provider.systemBlocks(request.systemPrompt());
+    if (!system.isEmpty()) {
+      params.systemOfTextBlockParams(system);
+    }
+    List<ToolUnion> tools = provider.tools();
+    if (!tools.isEmpty()) {
+      params.tools(tools);
+    }
+    return params.build();
+  }
+
+  private BatchResult toBatchResult(String id, MessageBatchResult result) {
+    if (result.succeeded().isPresent()) {
+      return BatchResult.succeeded(
+          id, provider.convertToAIResponse(result.succeeded().get().message()));
+    }
+    if (result.errored().isPresent()) {
+      return BatchResult.failed(id, "errored: " + result.errored().get().error());
+    }
+    return BatchResult.failed(id, result.expired().isPresent() ? "expired" : "canceled");
+  }
+}
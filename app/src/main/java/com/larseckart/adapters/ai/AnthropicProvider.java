@@ -3,130 +3,580 @@ package com.larseckart.adapters.ai;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import com.anthropic.client.AnthropicClient;
-import com.anthropic.client.okhttp.AnthropicOkHttpClient;
 import com.anthropic.core.JsonValue;
+import com.anthropic.core.http.Headers;
+import com.anthropic.core.http.HttpResponseFor;
+import com.anthropic.core.http.StreamResponse;
+import com.anthropic.errors.AnthropicIoException;
 import com.anthropic.errors.AnthropicServiceException;
+import com.anthropic.helpers.MessageAccumulator;
+import com.anthropic.models.messages.CacheControlEphemeral;
 import com.anthropic.models.messages.ContentBlock;
+import com.anthropic.models.messages.ContentBlockParam;
+import com.anthropic.models.messages.Message;
 import com.anthropic.models.messages.MessageCreateParams;
+import com.anthropic.models.messages.MessageParam;
 import com.anthropic.models.messages.Model;
+import com.anthropic.models.messages.RawMessageStreamEvent;
+import com.anthropic.models.messages.TextBlockParam;
 import com.anthropic.models.messages.Tool;
+import com.anthropic.models.messages.ToolChoiceNone;
+import com.anthropic.models.messages.ToolResultBlockParam;
 import com.anthropic.models.messages.ToolUnion;
+import com.anthropic.models.messages.ToolUseBlockParam;
+import com.anthropic.models.messages.Usage;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.larseckart.ApiKey;
+import com.larseckart.adapters.ai.ResilientCaller.Failure;
 import com.larseckart.core.domain.ChatMessage;
+import com.larseckart.core.domain.MessageBlock;
+import com.larseckart.core.domain.PersistentVector;
+import com.larseckart.core.domain.Role;
 import com.larseckart.core.domain.ai.AIRequest;
 import com.larseckart.core.domain.ai.AIResponse;
-import com.larseckart.core.domain.ai.AITool;
 import com.larseckart.core.domain.ai.AIToolUse;
+import com.larseckart.core.domain.ai.TokenUsage;
 import com.larseckart.core.ports.AIProvider;
+import com.larseckart.core.ports.StreamListener;
+import com.larseckart.core.ports.batch.MessageBatches;
+import com.larseckart.core.services.ToolCatalog;
+import com.larseckart.core.services.ToolCatalog.ToolDefinition;
+import com.larseckart.core.services.ToolOutcome;
 import com.larseckart.core.services.ToolRegistry;
-import com.larseckart.core.tools.EditFileTool;
-import com.larseckart.core.tools.ListFilesTool;
-import com.larseckart.core.tools.ReadFileTool;
-import com.larseckart.core.tools.RunTestsTool;
+import com.larseckart.core.services.ToolResultCache;
+import com.larseckart.core.services.ToolScheduler;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 
 public class AnthropicProvider implements AIProvider {
 
   private static final Logger log = getLogger(AnthropicProvider.class);
-
-  private final AnthropicClient client;
+  private static final String TOOL_VIEW_KEY = "anthropic";
+  private static final int MAX_ITERATIONS = 25;
+  // System prompt the API adds to requests that define tools, as documented for the Claude models
+  private static final long TOOL_USE_PREAMBLE_TOKENS = 346;
+  static final Model MODEL = Model.CLAUDE_HAIKU_4_5;
+  private static final CacheControlEphemeral CACHE_BREAKPOINT =
+      CacheControlEphemeral.builder().build();
+
+  private static final Duration AUTH_QUARANTINE = Duration.ofMinutes(10);
+  private static final Duration QUOTA_QUARANTINE = Duration.ofMinutes(1);
+
+  private final ApiKeyPool keys;
   private final ObjectMapper objectMapper;
   private final ToolRegistry toolRegistry;
+  private final ToolScheduler toolScheduler;
+  private final ResilientCaller resilience = ResilientCaller.forProvider("anthropic");
+  private final MessageBatches messageBatches;
+  private final Function<ApiKey, AnthropicClient> clients;
 
   public AnthropicProvider(ApiKey apiKey) {
-    this.client = AnthropicOkHttpClient.builder().apiKey(apiKey.getValue()).build();
-    this.objectMapper = new ObjectMapper();
+    this(apiKey, ToolRegistry.withDefaultTools());
+  }
 
-    // Initialize tools
-    this.toolRegistry = new ToolRegistry();
-    this.toolRegistry.registerTool(new ReadFileTool());
-    this.toolRegistry.registerTool(new ListFilesTool());
-    this.toolRegistry.registerTool(new EditFileTool());
-    this.toolRegistry.registerTool(new RunTestsTool());
+  public AnthropicProvider(ApiKey apiKey, ToolRegistry toolRegistry) {
+    this(ApiKeyPool.of(apiKey), toolRegistry);
+  }
 
-    log.debug("AnthropicProvider initialized with {} tools", toolRegistry.getAllTools().size());
+  public AnthropicProvider(ApiKeyPool keys, ToolRegistry toolRegistry) {
+    this(keys, toolRegistry, ProviderClients::anthropic);
+  }
+
+  AnthropicProvider(
+      ApiKeyPool keys, ToolRegistry toolRegistry, Function<ApiKey, AnthropicClient> clients) {
+    this.keys = keys;
+    this.clients = clients;
+    this.objectMapper = new ObjectMapper();
+    this.toolRegistry = toolRegistry;
+    this.toolScheduler = new ToolScheduler(toolRegistry);
+    this.messageBatches = new AnthropicMessageBatches(this, keys, resilience);
+
+    log.debug(
+        "AnthropicProvider initialized with {} tools and {} API keys",
+        toolRegistry.getAllTools().size(),
+        keys.size());
   }
 
   @Override
   public AIResponse sendMessage(AIRequest request) {
+    return streamMessage(request, StreamListener.NONE);
+  }
+
+  @Override
+  public AIResponse streamMessage(AIRequest request, StreamListener listener) {
+    // Memoized tool results last for this turn only: files may change between turns, and
+    // concurrent conversations must neither see nor clear each other's results
+    ToolResultCache resultCache = new ToolResultCache();
+    try {
+      AIResponse response = runAgentLoop(request, listener, resultCache);
+      TokenUsage usage = response.usage();
+      log.info(
+          "Token usage: {} input, {} output, {} cache write, {} cache read, cache hit rate {}%",
+          usage.inputTokens(),
+          usage.outputTokens(),
+          usage.cacheWriteTokens(),
+          usage.cacheReadTokens(),
+          Math.round(usage.cacheHitRate() * 100));
+      return response;
+    } finally {
+      ResilientCaller.Stats resilienceStats = resilience.stats();
+      log.info(
+          "Anthropic calls: {} total, {} retries, {} failed, {} rejected, circuit {}",
+          resilienceStats.calls(),
+          resilienceStats.retries(),
+          resilienceStats.failures(),
+          resilienceStats.rejected(),
+          resilienceStats.breakerState());
+      ToolResultCache.Stats stats = resultCache.stats();
+      log.info(
+          "Tool result cache: {} hits, {} misses, {} invalidations, hit rate {}%",
+          stats.hits(),
+          stats.misses(),
+          stats.invalidations(),
+          Math.round(stats.hitRate() * 100));
+    }
+  }
+
+  /**
+   * Calls the model until it answers without using tools. Every assistant message and the tool
+   * results answering it are appended to the request's messages and recorded in the transcript.
+   */
+  private AIResponse runAgentLoop(
+      AIRequest request, StreamListener listener, ToolResultCache resultCache) {
+    // Appending shares the history instead of copying it for every iteration
+    PersistentVector<ChatMessage> messages = PersistentVector.copyOf(request.messages());
+    List<ChatMessage> transcript = new ArrayList<>();
+    TokenUsage usage = TokenUsage.NONE;
+
+    for (int iteration = 1; iteration <= MAX_ITERATIONS; iteration++) {
+      Step step = callModel(request, messages, listener, resultCache);
+      usage = usage.plus(step.response().usage());
+      messages = messages.append(step.assistantMessage());
+      transcript.add(step.assistantMessage());
+
+      // Calls the model asked for in spite of the request are never run
+      if (!step.response().hasToolUse() || !request.toolUse()) {
+        return new AIResponse(step.response().textContent(), List.of(), false, usage, transcript);
+      }
+
+      ChatMessage results = toolResults(step.response().toolUses(), step.outcomes());
+      messages = messages.append(results);
+      transcript.add(results);
+      log.debug(
+          "Agent loop iteration {} answered {} tool uses", iteration, step.outcomes().size());
+    }
+
+    throw new IllegalStateException(
+        "Agent loop did not finish within " + MAX_ITERATIONS + " iterations");
+  }
+
+  /** One model call together with the outcomes of the tools it asked for. */
+  private record Step(
+      AIResponse response, ChatMessage assistantMessage, List<ToolOutcome> outcomes) {}
+
+  /** A streamed model response whose tool calls may still be running. */
+  private record Streamed(AIResponse response, StreamingToolDispatcher dispatcher) {}
+
+  private Step callModel(
+      AIRequest request,
+      List<ChatMessage> messages,
+      StreamListener listener,
+      ToolResultCache resultCache) {
     try {
       var paramsBuilder =
           MessageCreateParams.builder()
-              .model(Model.CLAUDE_HAIKU_4_5)
+              .model(MODEL)
               .maxTokens((long) request.maxTokens())
-              .system(request.systemPrompt());
-
-      // Add internal tools
-      List<AITool> aiTools = convertRegistryToAITools();
-      if (!aiTools.isEmpty()) {
-        List<ToolUnion> tools = convertToAnthropicTools(aiTools);
+              .messages(toMessageParams(messages));
+      List<TextBlockParam> system = systemBlocks(request.systemPrompt());
+      if (!system.isEmpty()) {
+        paramsBuilder.systemOfTextBlockParams(system);
+      }
+      List<ToolUnion> tools = tools();
+      if (!tools.isEmpty()) {
         paramsBuilder.tools(tools);
+        if (!request.toolUse()) {
+          // The tools stay defined, the history may hold tool_use blocks that refer to them
+          paramsBuilder.toolChoice(ToolChoiceNone.builder().build());
+        }
       }
 
-      // Add messages
-      for (ChatMessage message : request.messages()) {
-        switch (message.role()) {
-          case USER -> paramsBuilder.addUserMessage(message.content());
-          case ASSISTANT -> paramsBuilder.addAssistantMessage(message.content());
-          default -> {}
+      MessageCreateParams params = paramsBuilder.build();
+      long estimatedTokens =
+          RateLimits.estimateTokens(request.systemPrompt(), messages, request.maxTokens());
+      // Once reply text or tool calls have escaped, repeating the call would duplicate them
+      AtomicBoolean delivered = new AtomicBoolean();
+      // Every attempt is metered and may run with a different key of the pool
+      Streamed streamed =
+          resilience.call(
+              () ->
+                  RateLimits.meter(
+                      MODEL.asString(),
+                      estimatedTokens,
+                      () ->
+                          keys.call(
+                              lease ->
+                                  streamAttempt(
+                                      lease,
+                                      params,
+                                      request.toolUse(),
+                                      listener,
+                                      resultCache,
+                                      delivered),
+                              AnthropicProvider::quarantineFor),
+                      attempt -> attempt.response().usage().totalTokens()),
+              e -> {
+                Failure failure = classify(e);
+                // A rejected key is not the request's fault while another key can take it
+                if (quarantineFor(e).isPresent() && keys.hasAvailableKey()) {
+                  failure = Failure.keyRejected(Optional.empty());
+                }
+                return delivered.get() ? failure.notRepeatable() : failure;
+              });
+
+      // The key and the rate budget are released by now, so slow tools do not hold them
+      AIResponse response = streamed.response();
+      try (StreamingToolDispatcher dispatcher = streamed.dispatcher()) {
+        List<ToolOutcome> outcomes = List.of();
+        if (response.hasToolUse() && request.toolUse()) {
+          // Tools started as their blocks closed, so most of them are done by now
+          outcomes =
+              dispatcher.hasDispatched()
+                  ? dispatcher.awaitOutcomes()
+                  : toolScheduler.executeAll(response.toolUses(), listener, resultCache);
         }
+        return new Step(response, response.transcript().getFirst(), outcomes);
       }
+    } catch (Exception e) {
+      logAnthropicError(e);
+      throw new RuntimeException("Anthropic API call failed", e);
+    }
+  }
 
-      log.debug("Sending request to Anthropic API");
-      var response = client.messages().create(paramsBuilder.build());
+  /**
+   * Streams one attempt of a model call. Tool calls are dispatched as their blocks close and keep
+   * running after this returns; if the attempt fails, they are cancelled.
+   */
+  private Streamed streamAttempt(
+      ApiKeyPool.Lease lease,
+      MessageCreateParams params,
+      boolean toolUse,
+      StreamListener listener,
+      ToolResultCache resultCache,
+      AtomicBoolean delivered) {
+    log.debug("Sending streaming request to Anthropic API");
+    StreamListener tracking =
+        new StreamListener() {
+          @Override
+          public void onTextDelta(String delta) {
+            delivered.set(true);
+            listener.onTextDelta(delta);
+          }
+
+          @Override
+          public void onToolStart(String toolName) {
+            listener.onToolStart(toolName);
+          }
+
+          @Override
+          public void onToolEnd(String toolName, String status, Duration elapsed) {
+            listener.onToolEnd(toolName, status, elapsed);
+          }
+        };
+
+    StreamingToolDispatcher dispatcher =
+        new StreamingToolDispatcher(toolScheduler, objectMapper, tracking, resultCache);
+    try {
+      Message response =
+          stream(lease, params, tracking, toolUse ? dispatcher::accept : event -> {});
+      return new Streamed(convertToAIResponse(response), dispatcher);
+    } catch (RuntimeException e) {
+      dispatcher.close();
+      throw e;
+    } finally {
+      if (dispatcher.hasDispatched()) {
+        delivered.set(true);
+      }
+    }
+  }
 
-      AIResponse aiResponse = convertToAIResponse(response);
+  /**
+   * Classifies a failed API call. Overload (529), timeouts, conflicts and server errors are
+   * transient, as are network failures. Rate limiting (429) is retried too, but concerns the key
+   * rather than the provider's health. Everything else is a bad request.
+   */
+  static Failure classify(RuntimeException e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof AnthropicServiceException serviceEx) {
+        int status = serviceEx.statusCode();
+        if (status == 429) {
+          return Failure.keyRejected(retryAfter(serviceEx.headers()));
+        }
+        if (status == 408 || status == 409 || status >= 500) {
+          return Failure.transientFailure(retryAfter(serviceEx.headers()));
+        }
+        return Failure.permanent();
+      }
+      if (cause instanceof AnthropicIoException) {
+        return Failure.transientFailure(Optional.empty());
+      }
+    }
+    return Failure.permanent();
+  }
 
-      // Handle tool execution if needed
-      if (aiResponse.hasToolUse()) {
-        return handleToolExecution(request, aiResponse);
+  /**
+   * How long to take a key out of rotation after an error: invalid or revoked keys (401, 403) for
+   * a while, rate limited keys (429) until they may be used again.
+   */
+  static Optional<Duration> quarantineFor(RuntimeException e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof AnthropicServiceException serviceEx) {
+        return switch (serviceEx.statusCode()) {
+          case 401, 403 -> Optional.of(AUTH_QUARANTINE);
+          case 429 -> Optional.of(retryAfter(serviceEx.headers()).orElse(QUOTA_QUARANTINE));
+          default -> Optional.empty();
+        };
       }
+    }
+    return Optional.empty();
+  }
 
-      return aiResponse;
+  /**
+   * Reads the share of the key's limits still available from the {@code anthropic-ratelimit-*}
+   * headers, taking the scarcer of requests and tokens.
+   */
+  static Optional<Double> headroom(Headers headers) {
+    return Stream.of(remainingShare(headers, "requests"), remainingShare(headers, "tokens"))
+        .flatMap(Optional::stream)
+        .min(Double::compare);
+  }
 
-    } catch (Exception e) {
-      logAnthropicError(e);
-      throw new RuntimeException("Anthropic API call failed", e);
+  private static Optional<Double> remainingShare(Headers headers, String limit) {
+    List<String> remaining = headers.values("anthropic-ratelimit-" + limit + "-remaining");
+    List<String> total = headers.values("anthropic-ratelimit-" + limit + "-limit");
+    if (remaining.isEmpty() || total.isEmpty()) {
+      return Optional.empty();
+    }
+    try {
+      double limitValue = Double.parseDouble(total.getFirst().trim());
+      return limitValue <= 0
+          ? Optional.empty()
+          : Optional.of(Double.parseDouble(remaining.getFirst().trim()) / limitValue);
+    } catch (NumberFormatException e) {
+      return Optional.empty();
     }
   }
 
+  private static Optional<Duration> retryAfter(Headers headers) {
+    Optional<Duration> precise =
+        headers.values("retry-after-ms").stream()
+            .findFirst()
+            .flatMap(ResilientCaller::parseRetryAfterMillis);
+    if (precise.isPresent()) {
+      return precise;
+    }
+    return headers.values("retry-after").stream()
+        .findFirst()
+        .flatMap(ResilientCaller::parseRetryAfter);
+  }
+
+  /**
+   * Streams a single API call, forwarding text deltas to the listener and tool use blocks to the
+   * dispatcher as they arrive, and returns the message assembled from all stream events.
+   */
+  private Message stream(
+      ApiKeyPool.Lease lease,
+      MessageCreateParams params,
+      StreamListener listener,
+      Consumer<RawMessageStreamEvent> toolEvents) {
+    MessageAccumulator accumulator = MessageAccumulator.create();
+    try (HttpResponseFor<StreamResponse<RawMessageStreamEvent>> response =
+            clients
+                .apply(lease.key())
+                .messages()
+                .withRawResponse()
+                .createStreaming(params);
+        StreamResponse<RawMessageStreamEvent> events = response.parse()) {
+      headroom(response.headers()).ifPresent(lease::reportHeadroom);
+      events.stream()
+          .forEach(
+              event -> {
+                accumulator.accumulate(event);
+                toolEvents.accept(event);
+                event
+                    .contentBlockDelta()
+                    .flatMap(blockDelta -> blockDelta.delta().text())
+                    .ifPresent(textDelta -> listener.onTextDelta(textDelta.text()));
+              });
+    }
+    return accumulator.message();
+  }
+
+  /**
+   * Converts the conversation for a request. The last block that is sent carries a rolling
+   * cache breakpoint: the whole history up to it is the stable prefix of the next request, which
+   * can then read it from the cache instead of processing it again.
+   */
+  List<MessageParam> toMessageParams(List<ChatMessage> messages) {
+    // Messages left without blocks are not sent, so the breakpoint goes on the last one that is
+    int lastSent = messages.size() - 1;
+    while (lastSent >= 0 && sendableBlocks(messages.get(lastSent)).isEmpty()) {
+      lastSent--;
+    }
+
+    List<MessageParam> params = new ArrayList<>();
+    for (int i = 0; i <= lastSent; i++) {
+      ChatMessage message = messages.get(i);
+      List<MessageBlock> blocks = sendableBlocks(message);
+      if (blocks.isEmpty()) {
+        continue;
+      }
+
+      boolean lastMessage = i == lastSent;
+      List<ContentBlockParam> content = new ArrayList<>();
+      for (int j = 0; j < blocks.size(); j++) {
+        content.add(convertToContentBlock(blocks.get(j), lastMessage && j == blocks.size() - 1));
+      }
+
+      params.add(
+          MessageParam.builder()
+              .role(
+                  switch (message.role()) {
+                    case USER -> MessageParam.Role.USER;
+                    case ASSISTANT -> MessageParam.Role.ASSISTANT;
+                  })
+              .contentOfBlockParams(content)
+              .build());
+    }
+    return params;
+  }
+
+  // Empty text blocks are rejected by the API
+  private static List<MessageBlock> sendableBlocks(ChatMessage message) {
+    return message.blocks().stream()
+        .filter(block -> !(block instanceof MessageBlock.Text text && text.text().isBlank()))
+        .toList();
+  }
+
+  /**
+   * The system prompt as a cache breakpoint. Prompts are cached in prefix order: tools, then the
+   * system prompt, then the messages.
+   */
+  List<TextBlockParam> systemBlocks(String systemPrompt) {
+    if (systemPrompt == null || systemPrompt.isEmpty()) {
+      return List.of();
+    }
+    return List.of(
+        TextBlockParam.builder().text(systemPrompt).cacheControl(CACHE_BREAKPOINT).build());
+  }
+
+  /** The internal tools, converted once per catalog version. */
+  List<ToolUnion> tools() {
+    return toolRegistry.getCatalog().providerView(TOOL_VIEW_KEY, this::convertToAnthropicTools);
+  }
+
+  private ContentBlockParam convertToContentBlock(MessageBlock block, boolean cacheBreakpoint) {
+    return switch (block) {
+      case MessageBlock.Text text -> {
+        TextBlockParam.Builder param = TextBlockParam.builder().text(text.text());
+        if (cacheBreakpoint) {
+          param.cacheControl(CACHE_BREAKPOINT);
+        }
+        yield ContentBlockParam.ofText(param.build());
+      }
+      case MessageBlock.ToolUse toolUse -> {
+        ToolUseBlockParam.Builder param =
+            ToolUseBlockParam.builder()
+                .id(toolUse.id())
+                .name(toolUse.name())
+                .input(JsonValue.from(objectMapper.convertValue(toolUse.input(), Map.class)));
+        if (cacheBreakpoint) {
+          param.cacheControl(CACHE_BREAKPOINT);
+        }
+        yield ContentBlockParam.ofToolUse(param.build());
+      }
+      case MessageBlock.ToolResult result -> {
+        ToolResultBlockParam.Builder param =
+            ToolResultBlockParam.builder()
+                .toolUseId(result.toolUseId())
+                .content(result.content())
+                .isError(result.isError());
+        if (cacheBreakpoint) {
+          param.cacheControl(CACHE_BREAKPOINT);
+        }
+        yield ContentBlockParam.ofToolResult(param.build());
+      }
+    };
+  }
+
+  @Override
+  public long fixedOverheadEstimate() {
+    ToolCatalog catalog = toolRegistry.getCatalog();
+    return catalog.definitions().isEmpty() ? 0 : catalog.rawEstimate() + TOOL_USE_PREAMBLE_TOKENS;
+  }
+
+  @Override
+  public Optional<MessageBatches> messageBatches() {
+    return Optional.of(messageBatches);
+  }
+
   @Override
   public String getProviderName() {
     return "Anthropic Claude";
   }
 
-  private List<ToolUnion> convertToAnthropicTools(List<AITool> aiTools) {
-    return aiTools.stream().map(this::convertToAnthropicTool).toList();
+  private List<ToolUnion> convertToAnthropicTools(ToolCatalog catalog) {
+    List<ToolDefinition> definitions = List.copyOf(catalog.definitions());
+    List<ToolUnion> tools = new ArrayList<>();
+    for (int i = 0; i < definitions.size(); i++) {
+      // A breakpoint on the last tool caches all tool definitions as one prefix
+      tools.add(convertToAnthropicTool(definitions.get(i), i == definitions.size() - 1));
+    }
+    return List.copyOf(tools);
   }
 
-  private ToolUnion convertToAnthropicTool(AITool aiTool) {
-    Map<String, Object> properties = (Map<String, Object>) aiTool.inputSchema().get("properties");
+  private ToolUnion convertToAnthropicTool(ToolDefinition definition, boolean cacheBreakpoint) {
+    Map<String, Object> properties =
+        (Map<String, Object>) definition.inputSchema().get("properties");
     JsonValue propertiesJson = JsonValue.from(properties);
     Tool.InputSchema schema = Tool.InputSchema.builder().properties(propertiesJson).build();
 
-    Tool tool =
+    Tool.Builder tool =
         Tool.builder()
-            .name(aiTool.name())
-            .description(aiTool.description())
-            .inputSchema(schema)
-            .build();
+            .name(definition.name())
+            .description(definition.description())
+            .inputSchema(schema);
+    if (cacheBreakpoint) {
+      tool.cacheControl(CACHE_BREAKPOINT);
+    }
 
-    return ToolUnion.ofTool(tool);
+    return ToolUnion.ofTool(tool.build());
   }
 
-  private AIResponse convertToAIResponse(com.anthropic.models.messages.Message response) {
+  AIResponse convertToAIResponse(Message response) {
     StringBuilder textContent = new StringBuilder();
     List<AIToolUse> toolUses = new ArrayList<>();
+    List<MessageBlock> blocks = new ArrayList<>();
     boolean hasToolUse = false;
 
     for (ContentBlock block : response.content()) {
       // Extract text content
-      block.text().ifPresent(textBlock -> textContent.append(textBlock.text()));
+      block
+          .text()
+          .ifPresent(
+              textBlock -> {
+                textContent.append(textBlock.text());
+                blocks.add(new MessageBlock.Text(textBlock.text()));
+              });
 
       // Extract tool uses
       if (block.toolUse().isPresent()) {
@@ -149,62 +599,38 @@ public class AnthropicProvider implements AIProvider {
                   }
                 });
 
-        toolUses.add(new AIToolUse(toolName, parameters));
+        toolUses.add(new AIToolUse(toolName, parameters, toolUse.id()));
+        blocks.add(new MessageBlock.ToolUse(toolUse.id(), toolName, parameters));
       }
     }
 
-    return new AIResponse(textContent.toString(), toolUses, hasToolUse);
-  }
-
-  private List<AITool> convertRegistryToAITools() {
-    List<Map<String, Object>> toolDefinitions = toolRegistry.convertToClaudeFunctionDefinitions();
-    return toolDefinitions.stream()
-        .map(
-            toolDef ->
-                new AITool(
-                    (String) toolDef.get("name"),
-                    (String) toolDef.get("description"),
-                    (Map<String, Object>) toolDef.get("input_schema")))
-        .toList();
+    Usage usage = response.usage();
+    TokenUsage tokenUsage =
+        new TokenUsage(
+            usage.inputTokens(),
+            usage.outputTokens(),
+            usage.cacheCreationInputTokens().orElse(0L),
+            usage.cacheReadInputTokens().orElse(0L));
+    log.debug("Anthropic call usage: {}", tokenUsage);
+
+    return new AIResponse(
+        textContent.toString(),
+        toolUses,
+        hasToolUse,
+        tokenUsage,
+        List.of(ChatMessage.of(Role.ASSISTANT, blocks)));
   }
 
-  private AIResponse handleToolExecution(AIRequest originalRequest, AIResponse toolResponse) {
-    try {
-      // Execute all tools in the response
-      StringBuilder allResults = new StringBuilder();
-      log.debug("Starting tool execution for response");
-
-      for (AIToolUse toolUse : toolResponse.toolUses()) {
-        String toolName = toolUse.toolName();
-
-        // Execute the tool
-        log.info("Executing tool: {}", toolName);
-        log.debug("Tool parameters: {}", toolUse.parameters());
-        String result = toolRegistry.routeFunctionCall(toolName, toolUse.parameters());
-        log.debug("Tool {} executed successfully, result length: {}", toolName, result.length());
-        allResults.append(result);
-      }
-
-      // Create a new request with tool results
-      List<ChatMessage> updatedMessages = new ArrayList<>(originalRequest.messages());
-      updatedMessages.add(ChatMessage.assistant(toolResponse.textContent()));
-      updatedMessages.add(ChatMessage.user("Tool results: " + allResults.toString()));
-
-      AIRequest followUpRequest =
-          new AIRequest(
-              updatedMessages,
-              originalRequest.systemPrompt(),
-              null, // Don't pass tools again
-              originalRequest.maxTokens());
-
-      // Get final response from AI
-      log.debug("Sending tool results back to AI for final response");
-      return sendMessage(followUpRequest);
-
-    } catch (Exception e) {
-      log.error("Tool execution failed", e);
-      throw new RuntimeException("Tool execution failed", e);
+  private static ChatMessage toolResults(List<AIToolUse> toolUses, List<ToolOutcome> outcomes) {
+    List<MessageBlock.ToolResult> results = new ArrayList<>();
+    for (int i = 0; i < toolUses.size(); i++) {
+      AIToolUse toolUse = toolUses.get(i);
+      ToolOutcome outcome = outcomes.get(i);
+      results.add(
+          new MessageBlock.ToolResult(
+              toolUse.id(), toolUse.toolName(), outcome.toModelText(), outcome.isError()));
     }
+    return ChatMessage.toolResults(results);
   }
 
   private void logAnthropicError(Exception e) {
@@ -0,0 +1,191 @@
+package com.larseckart.adapters.ai;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import com.larseckart.ApiKey;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+
+/**
+ * Spreads calls over several API keys of one provider, so throughput is not capped by a single
+ * key's rate limit. Each call goes to the key with the most rate limit headroom, as last reported
+ * by the provider's response headers and discounted by the calls already running on it. Keys that
+ * are rejected for authentication or quota reasons are quarantined for a while.
+ */
+public class ApiKeyPool {
+
+  private static final Logger log = getLogger(ApiKeyPool.class);
+
+  /** Current view of one key, identified by its last characters only. */
+  public record KeyStatus(String label, double headroom, int inFlight, boolean quarantined) {}
+
+  private final List<KeyState> keys;
+  private final LongSupplier nanoTime;
+  // Where the search for the best key starts, so equal keys take turns
+  private int nextIndex;
+
+  private static final class KeyState {
+    private final ApiKey apiKey;
+    private final String label;
+    // Share of the key's rate limit still available, 1 until the provider reports otherwise
+    private double headroom = 1;
+    private int inFlight;
+    private long quarantinedUntilNanos;
+    private boolean quarantined;
+
+    private KeyState(ApiKey apiKey) {
+      this.apiKey = apiKey;
+      this.label = labelOf(apiKey);
+    }
+
+    private double score() {
+      return headroom / (1 + inFlight);
+    }
+  }
+
+  /** The key one call runs with. Closing it ends the call. */
+  public final class Lease implements AutoCloseable {
+
+    private final KeyState state;
+    private boolean closed;
+
+    private Lease(KeyState state) {
+      this.state = state;
+    }
+
+    public ApiKey key() {
+      return state.apiKey;
+    }
+
+    /** Records the share of the key's rate limit the provider reported as remaining. */
+    public void reportHeadroom(double remainingShare) {
+      synchronized (ApiKeyPool.this) {
+        state.headroom = Math.clamp(remainingShare, 0, 1);
+      }
+    }
+
+    /** Takes the key out of rotation for the given time. */
+    public void quarantine(Duration duration, String reason) {
+      synchronized (ApiKeyPool.this) {
+        state.quarantined = true;
+        state.quarantinedUntilNanos = nanoTime.getAsLong() + duration.toNanos();
+      }
+      log.warn("Quarantining API key {} for {} s: {}", state.label, duration.toSeconds(), reason);
+    }
+
+    @Override
+    public void close() {
+      synchronized (ApiKeyPool.this) {
+        if (!closed) {
+          closed = true;
+          state.inFlight--;
+        }
+      }
+    }
+  }
+
+  public ApiKeyPool(List<ApiKey> apiKeys) {
+    this(apiKeys, System::nanoTime);
+  }
+
+  ApiKeyPool(List<ApiKey> apiKeys, LongSupplier nanoTime) {
+    if (apiKeys.isEmpty()) {
+      throw new IllegalArgumentException("An API key pool needs at least one key");
+    }
+    this.keys = apiKeys.stream().map(KeyState::new).toList();
+    this.nanoTime = nanoTime;
+  }
+
+  public static ApiKeyPool of(ApiKey apiKey) {
+    return new ApiKeyPool(List.of(apiKey));
+  }
+
+  public List<ApiKey> keys() {
+    return keys.stream().map(state -> state.apiKey).toList();
+  }
+
+  public int size() {
+    return keys.size();
+  }
+
+  /**
+   * Picks the key with the most headroom per running call. If every key is quarantined the one
+   * released first is used anyway, so the caller gets the provider's real error instead of none.
+   */
+  public synchronized Lease acquire() {
+    long now = nanoTime.getAsLong();
+    KeyState best = null;
+    for (int i = 0; i < keys.size(); i++) {
+      KeyState candidate = keys.get((nextIndex + i) % keys.size());
+      if (isQuarantined(candidate, now)) {
+        continue;
+      }
+      if (best == null || candidate.score() > best.score()) {
+        best = candidate;
+      }
+    }
+    if (best == null) {
+      best =
+          keys.stream()
+              .min(Comparator.comparingLong(state -> state.quarantinedUntilNanos - now))
+              .orElseThrow();
+    }
+
+    nextIndex = (keys.indexOf(best) + 1) % keys.size();
+    best.inFlight++;
+    return new Lease(best);
+  }
+
+  /** Whether some key is currently out of quarantine. */
+  public synchronized boolean hasAvailableKey() {
+    long now = nanoTime.getAsLong();
+    return keys.stream().anyMatch(state -> !isQuarantined(state, now));
+  }
+
+  /**
+   * Runs a call with a leased key. If the call fails with an error that {@code quarantineFor} maps
+   * to a quarantine time, the key is quarantined before the error is passed on.
+   */
+  public <T> T call(
+      Function<Lease, T> apiCall, Function<RuntimeException, Optional<Duration>> quarantineFor) {
+    try (Lease lease = acquire()) {
+      try {
+        return apiCall.apply(lease);
+      } catch (RuntimeException e) {
+        quarantineFor.apply(e).ifPresent(duration -> lease.quarantine(duration, e.getMessage()));
+        throw e;
+      }
+    }
+  }
+
+  public synchronized List<KeyStatus> status() {
+    long now = nanoTime.getAsLong();
+    List<KeyStatus> status = new ArrayList<>();
+    for (KeyState state : keys) {
+      status.add(
+          new KeyStatus(state.label, state.headroom, state.inFlight, isQuarantined(state, now)));
+    }
+    return status;
+  }
+
+  private boolean isQuarantined(KeyState state, long now) {
+    if (state.quarantined && now - state.quarantinedUntilNanos >= 0) {
+      state.quarantined = false;
+      // Nothing is known about the key's limits after a quarantine
+      state.headroom = 1;
+      log.info("API key {} is back in rotation", state.label);
+    }
+    return state.quarantined;
+  }
+
+  private static String labelOf(ApiKey apiKey) {
+    String value = apiKey.getValue();
+    return "..." + value.substring(Math.max(0, value.length() - 4));
+  }
+}
@@ -0,0 +1,103 @@
+package com.larseckart.adapters.ai;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+
+/**
+ * Sheds calls to a provider that keeps failing. After {@code failureThreshold} consecutive
+ * failures the breaker opens and rejects calls immediately; once {@code openDuration} has passed a
+ * single trial call is let through, which closes the breaker on success and reopens it on failure.
+ */
+public class CircuitBreaker {
+
+  private static final Logger log = getLogger(CircuitBreaker.class);
+
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final String name;
+  private final int failureThreshold;
+  private final Duration openDuration;
+  private final LongSupplier nanoTime;
+
+  private State state = State.CLOSED;
+  private int consecutiveFailures;
+  private long openedAtNanos;
+  private boolean trialInFlight;
+
+  public CircuitBreaker(String name, int failureThreshold, Duration openDuration) {
+    this(name, failureThreshold, openDuration, System::nanoTime);
+  }
+
+  CircuitBreaker(String name, int failureThreshold, Duration openDuration, LongSupplier nanoTime) {
+    this.name = name;
+    this.failureThreshold = failureThreshold;
+    this.openDuration = openDuration;
+    this.nanoTime = nanoTime;
+  }
+
+  /** Returns whether a call may proceed now. Every permitted call must report its result. */
+  public synchronized boolean tryAcquire() {
+    if (state == State.OPEN && nanoTime.getAsLong() - openedAtNanos >= openDuration.toNanos()) {
+      transitionTo(State.HALF_OPEN);
+    }
+    return switch (state) {
+      case CLOSED -> true;
+      case OPEN -> false;
+      case HALF_OPEN -> {
+        if (trialInFlight) {
+          yield false;
+        }
+        trialInFlight = true;
+        yield true;
+      }
+    };
+  }
+
+  public synchronized void onSuccess() {
+    consecutiveFailures = 0;
+    trialInFlight = false;
+    if (state != State.CLOSED) {
+      transitionTo(State.CLOSED);
+    }
+  }
+
+  public synchronized void onFailure() {
+    consecutiveFailures++;
+    trialInFlight = false;
+    if (state == State.HALF_OPEN
+        || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+      openedAtNanos = nanoTime.getAsLong();
+      transitionTo(State.OPEN);
+    }
+  }
+
+  /** Reports a call whose failure says nothing about the provider, e.g. one rejected key. */
+  public synchronized void onIgnored() {
+    trialInFlight = false;
+  }
+
+  /** Time until an open breaker lets the next trial call through, zero otherwise. */
+  public synchronized Duration remainingOpenTime() {
+    if (state != State.OPEN) {
+      return Duration.ZERO;
+    }
+    long remaining = openDuration.toNanos() - (nanoTime.getAsLong() - openedAtNanos);
+    return Duration.ofNanos(Math.max(0, remaining));
+  }
+
+  public synchronized State state() {
+    return state;
+  }
+
+  private void transitionTo(State next) {
+    log.warn("Circuit breaker {} changed from {} to {}", name, state, next);
+    state = next;
+  }
+}
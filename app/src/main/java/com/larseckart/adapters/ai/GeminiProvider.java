@@ -2,93 +2,187 @@ package com.larseckart.adapters.ai;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
-import com.google.genai.Client;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.genai.errors.ApiException;
 import com.google.genai.types.Content;
+import com.google.genai.types.FunctionCall;
+import com.google.genai.types.FunctionCallingConfig;
+import com.google.genai.types.FunctionCallingConfigMode;
+import com.google.genai.types.FunctionDeclaration;
 import com.google.genai.types.GenerateContentConfig;
 import com.google.genai.types.GenerateContentResponse;
 import com.google.genai.types.Part;
+import com.google.genai.types.Schema;
 import com.google.genai.types.Tool;
+import com.google.genai.types.ToolConfig;
 import com.larseckart.ApiKey;
+import com.larseckart.adapters.ai.ResilientCaller.Failure;
 import com.larseckart.core.domain.ChatMessage;
+import com.larseckart.core.domain.MessageBlock;
+import com.larseckart.core.domain.PersistentVector;
+import com.larseckart.core.domain.Role;
 import com.larseckart.core.domain.ai.AIRequest;
 import com.larseckart.core.domain.ai.AIResponse;
 import com.larseckart.core.domain.ai.AIToolUse;
+import com.larseckart.core.domain.ai.TokenUsage;
 import com.larseckart.core.ports.AIProvider;
-import com.larseckart.tools.gemini.GeminiTools;
-import java.lang.reflect.Method;
+import com.larseckart.core.ports.StreamListener;
+import com.larseckart.core.services.ToolCatalog;
+import com.larseckart.core.services.ToolCatalog.ToolDefinition;
+import com.larseckart.core.services.ToolOutcome;
+import com.larseckart.core.services.ToolRegistry;
+import com.larseckart.core.services.ToolResultCache;
+import com.larseckart.core.services.ToolScheduler;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import org.slf4j.Logger;
 
 public class GeminiProvider implements AIProvider {
 
   private static final Logger log = getLogger(GeminiProvider.class);
-  private static final String DEFAULT_MODEL = "gemini-2.0-flash-001";
+  static final String DEFAULT_MODEL = "gemini-2.0-flash-001";
+  private static final String TOOL_VIEW_KEY = "gemini";
+  private static final int MAX_TOOL_ROUNDS = 10;
+  private static final Duration AUTH_QUARANTINE = Duration.ofMinutes(10);
+  private static final Duration QUOTA_QUARANTINE = Duration.ofMinutes(1);
 
-  private final Client client;
+  private final ApiKeyPool keys;
+  private final ObjectMapper objectMapper;
+  private final ToolRegistry toolRegistry;
+  private final ToolScheduler toolScheduler;
+  private final ResilientCaller resilience = ResilientCaller.forProvider("gemini");
+  private volatile CachedConfig cachedConfig;
+
+  /**
+   * The last config built, reused while the prompt, token limit, tool use and tool catalog are the
+   * same.
+   */
+  private record CachedConfig(
+      String systemPrompt,
+      int maxTokens,
+      boolean toolUse,
+      long catalogVersion,
+      GenerateContentConfig config) {
+
+    boolean matches(AIRequest request, long catalogVersion) {
+      return this.maxTokens == request.maxTokens()
+          && this.toolUse == request.toolUse()
+          && this.catalogVersion == catalogVersion
+          && Objects.equals(this.systemPrompt, request.systemPrompt());
+    }
+  }
 
   public GeminiProvider(ApiKey apiKey) {
+    this(apiKey, ToolRegistry.withDefaultTools());
+  }
+
+  public GeminiProvider(ApiKey apiKey, ToolRegistry toolRegistry) {
+    this(ApiKeyPool.of(apiKey), toolRegistry);
+  }
+
+  public GeminiProvider(ApiKeyPool keys, ToolRegistry toolRegistry) {
     log.info("Initializing GeminiProvider");
-    this.client = Client.builder().apiKey(apiKey.getValue()).build();
-    log.info("GeminiProvider initialized successfully");
+    this.keys = keys;
+    this.objectMapper = new ObjectMapper();
+    this.toolRegistry = toolRegistry;
+    this.toolScheduler = new ToolScheduler(toolRegistry);
+    log.info(
+        "GeminiProvider initialized successfully with {} tools",
+        toolRegistry.getAllTools().size());
   }
 
   @Override
   public AIResponse sendMessage(AIRequest request) {
-    try {
-      // Convert chat messages to Gemini Content format
-      List<Content> messages = convertToGeminiMessages(request.messages());
-
-      // Build configuration
-      GenerateContentConfig.Builder configBuilder = GenerateContentConfig.builder();
-
-      if (request.maxTokens() > 0) {
-        configBuilder.maxOutputTokens(request.maxTokens());
-      }
+    return streamMessage(request, StreamListener.NONE);
+  }
 
-      // Set system instruction if provided
-      if (request.systemPrompt() != null && !request.systemPrompt().isEmpty()) {
-        Content systemInstruction = Content.fromParts(Part.fromText(request.systemPrompt()));
-        configBuilder.systemInstruction(systemInstruction);
+  /**
+   * Runs the function calling loop, reporting tool calls to the listener as they happen. The reply
+   * text is delivered as a single delta once the model has finished.
+   */
+  @Override
+  public AIResponse streamMessage(AIRequest request, StreamListener listener) {
+    // Memoized tool results last for this turn only: files may change between turns, and
+    // concurrent conversations must neither see nor clear each other's results
+    ToolResultCache resultCache = new ToolResultCache();
+    try {
+      GenerateContentConfig config = configFor(request);
+      List<Content> contents = new ArrayList<>();
+      for (ChatMessage message : request.messages()) {
+        contents.add(convertToGeminiMessage(message));
       }
-
-      // Register Gemini tools
-      try {
-        log.info("Attempting to register Gemini tools");
-        Method listFilesMethod =
-            GeminiTools.class.getDeclaredMethod("listFiles", String.class, Boolean.class);
-        Method readFileMethod =
-            GeminiTools.class.getDeclaredMethod("readFile", String.class, String.class);
-        Method editFileMethod =
-            GeminiTools.class.getDeclaredMethod(
-                "editFile", String.class, String.class, String.class);
-        Method runTestsMethod = GeminiTools.class.getDeclaredMethod("runTests");
-        configBuilder.tools(
-            Tool.builder()
-                .functions(listFilesMethod, readFileMethod, editFileMethod, runTestsMethod));
-        log.info(
-            "Successfully registered listFiles, readFile, editFile, and runTests tools for Gemini");
-      } catch (NoSuchMethodException e) {
-        log.error("Failed to register Gemini tools", e);
+      if (contents.isEmpty()) {
+        contents.add(Content.builder().role("user").parts(Part.fromText("Hello")).build());
       }
+      List<ChatMessage> transcript = new ArrayList<>();
+      PersistentVector<ChatMessage> sent = PersistentVector.copyOf(request.messages());
 
-      GenerateContentConfig config = configBuilder.build();
+      for (int round = 0; round < MAX_TOOL_ROUNDS; round++) {
+        log.debug("Sending request to Gemini API");
+        long estimatedTokens =
+            RateLimits.estimateTokens(request.systemPrompt(), sent, request.maxTokens());
+        GenerateContentResponse response =
+            resilience.call(
+                () ->
+                    RateLimits.meter(
+                        DEFAULT_MODEL,
+                        estimatedTokens,
+                        () ->
+                            keys.call(
+                                lease ->
+                                    ProviderClients.gemini(lease.key())
+                                        .models
+                                        .generateContent(DEFAULT_MODEL, contents, config),
+                                GeminiProvider::quarantineFor),
+                        GeminiProvider::totalTokens),
+                e ->
+                    quarantineFor(e).isPresent() && keys.hasAvailableKey()
+                        ? Failure.keyRejected(Optional.empty())
+                        : classify(e));
 
-      log.debug("Sending request to Gemini API");
+        String text = textOf(response);
+        List<FunctionCall> functionCalls = response.functionCalls();
+        // Calls the model asked for in spite of the request are never run
+        if (functionCalls == null || functionCalls.isEmpty() || !request.toolUse()) {
+          if (!text.isEmpty()) {
+            listener.onTextDelta(text);
+          }
+          transcript.add(ChatMessage.assistant(text));
+          return new AIResponse(text, List.of(), false, TokenUsage.NONE, transcript);
+        }
 
-      // For simplicity, use the last message as the prompt
-      // In a full implementation, we'd need to handle conversation history properly
-      // TODO: Implement proper conversation history handling,
-      // https://github.com/googleapis/java-genai/blob/main/examples/src/main/java/com/google/genai/examples/ChatWithHistory.java
-      Content prompt =
-          messages.isEmpty()
-              ? Content.fromParts(Part.fromText("Hello"))
-              : messages.get(messages.size() - 1);
+        List<AIToolUse> toolUses = toToolUses(functionCalls, round);
+        List<MessageBlock> blocks = new ArrayList<>();
+        if (!text.isEmpty()) {
+          blocks.add(new MessageBlock.Text(text));
+        }
+        for (AIToolUse toolUse : toolUses) {
+          blocks.add(
+              new MessageBlock.ToolUse(toolUse.id(), toolUse.toolName(), toolUse.parameters()));
+        }
 
-      GenerateContentResponse response =
-          client.models.generateContent(DEFAULT_MODEL, prompt, config);
+        // Keep the model's function call turn in the history it is answered against
+        for (ChatMessage message :
+            List.of(
+                ChatMessage.of(Role.ASSISTANT, blocks),
+                executeFunctionCalls(toolUses, listener, resultCache))) {
+          transcript.add(message);
+          sent = sent.append(message);
+          contents.add(convertToGeminiMessage(message));
+        }
+      }
 
-      return convertToAIResponse(response);
+      log.warn("Gemini did not finish within {} tool rounds", MAX_TOOL_ROUNDS);
+      throw new IllegalStateException("Too many tool rounds: " + MAX_TOOL_ROUNDS);
 
     } catch (Exception e) {
       log.error("Error calling Gemini API", e);
@@ -96,30 +190,234 @@ public class GeminiProvider implements AIProvider {
     }
   }
 
+  @Override
+  public long fixedOverheadEstimate() {
+    return toolRegistry.getCatalog().rawEstimate();
+  }
+
   @Override
   public String getProviderName() {
     return "Google Gemini";
   }
 
-  private List<Content> convertToGeminiMessages(List<ChatMessage> messages) {
-    List<Content> geminiMessages = new ArrayList<>();
+  private GenerateContentConfig configFor(AIRequest request) {
+    ToolCatalog catalog = toolRegistry.getCatalog();
+    CachedConfig cached = cachedConfig;
+    if (cached != null && cached.matches(request, catalog.version())) {
+      return cached.config();
+    }
 
-    for (ChatMessage message : messages) {
-      Content content = Content.fromParts(Part.fromText(message.content()));
-      geminiMessages.add(content);
+    GenerateContentConfig.Builder configBuilder = GenerateContentConfig.builder();
+
+    if (request.maxTokens() > 0) {
+      configBuilder.maxOutputTokens(request.maxTokens());
+    }
+
+    // Set system instruction if provided
+    if (request.systemPrompt() != null && !request.systemPrompt().isEmpty()) {
+      Content systemInstruction = Content.fromParts(Part.fromText(request.systemPrompt()));
+      configBuilder.systemInstruction(systemInstruction);
+    }
+
+    // Function declarations are built once per catalog version
+    List<FunctionDeclaration> declarations =
+        catalog.providerView(TOOL_VIEW_KEY, this::convertToFunctionDeclarations);
+    if (!declarations.isEmpty()) {
+      configBuilder.tools(Tool.builder().functionDeclarations(declarations).build());
+      if (!request.toolUse()) {
+        // The declarations stay, the history may hold function calls that refer to them
+        configBuilder.toolConfig(
+            ToolConfig.builder()
+                .functionCallingConfig(
+                    FunctionCallingConfig.builder()
+                        .mode(FunctionCallingConfigMode.Known.NONE)
+                        .build())
+                .build());
+      }
     }
 
-    return geminiMessages;
+    GenerateContentConfig config = configBuilder.build();
+    cachedConfig =
+        new CachedConfig(
+            request.systemPrompt(),
+            request.maxTokens(),
+            request.toolUse(),
+            catalog.version(),
+            config);
+    return config;
   }
 
-  private AIResponse convertToAIResponse(GenerateContentResponse response) {
-    // Extract text content
-    String textContent = response.text();
+  private List<FunctionDeclaration> convertToFunctionDeclarations(ToolCatalog catalog) {
+    List<FunctionDeclaration> declarations = new ArrayList<>();
+    for (ToolDefinition definition : catalog.definitions()) {
+      FunctionDeclaration.Builder builder =
+          FunctionDeclaration.builder()
+              .name(definition.name())
+              .description(definition.description());
 
-    // For now, Gemini tool use is not implemented
+      // Gemini rejects object schemas without properties, so parameterless tools declare none
+      JsonNode properties = definition.schema().get("properties");
+      if (properties != null && properties.size() > 0) {
+        builder.parameters(convertToSchema(definition.schema()));
+      }
+      declarations.add(builder.build());
+    }
+    log.info("Built {} Gemini function declarations", declarations.size());
+    return List.copyOf(declarations);
+  }
+
+  static Schema convertToSchema(JsonNode node) {
+    Schema.Builder builder = Schema.builder();
+
+    JsonNode type = node.get("type");
+    if (type != null && type.isTextual()) {
+      builder.type(type.asText().toUpperCase());
+    }
+
+    JsonNode description = node.get("description");
+    if (description != null && description.isTextual()) {
+      builder.description(description.asText());
+    }
+
+    JsonNode properties = node.get("properties");
+    if (properties != null && properties.isObject()) {
+      Map<String, Schema> converted = new LinkedHashMap<>();
+      Iterator<Map.Entry<String, JsonNode>> fields = properties.fields();
+      while (fields.hasNext()) {
+        Map.Entry<String, JsonNode> field = fields.next();
+        converted.put(field.getKey(), convertToSchema(field.getValue()));
+      }
+      builder.properties(converted);
+    }
+
+    JsonNode required = node.get("required");
+    if (required != null && required.isArray() && !required.isEmpty()) {
+      List<String> names = new ArrayList<>();
+      required.forEach(name -> names.add(name.asText()));
+      builder.required(names);
+    }
+
+    JsonNode items = node.get("items");
+    if (items != null && items.isObject()) {
+      builder.items(convertToSchema(items));
+    }
+
+    JsonNode enumNode = node.get("enum");
+    if (enumNode != null && enumNode.isArray()) {
+      List<String> values = new ArrayList<>();
+      enumNode.forEach(value -> values.add(value.asText()));
+      builder.enum_(values);
+    }
+
+    return builder.build();
+  }
+
+  /**
+   * Timeouts and server errors are transient, other API errors are not. Rate limiting is retried
+   * too, but concerns the key rather than the provider's health.
+   */
+  static Failure classify(RuntimeException e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof ApiException apiException) {
+        int code = apiException.code();
+        if (code == 429) {
+          return Failure.keyRejected(Optional.empty());
+        }
+        return code == 408 || code >= 500
+            ? Failure.transientFailure(Optional.empty())
+            : Failure.permanent();
+      }
+      if (cause instanceof IOException || cause instanceof UncheckedIOException) {
+        return Failure.transientFailure(Optional.empty());
+      }
+    }
+    return Failure.permanent();
+  }
+
+  /**
+   * How long to take a key out of rotation after an error: invalid keys (401, 403) for a while,
+   * keys out of quota (429) for a minute.
+   */
+  static Optional<Duration> quarantineFor(RuntimeException e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof ApiException apiException) {
+        return switch (apiException.code()) {
+          case 401, 403 -> Optional.of(AUTH_QUARANTINE);
+          case 429 -> Optional.of(QUOTA_QUARANTINE);
+          default -> Optional.empty();
+        };
+      }
+    }
+    return Optional.empty();
+  }
+
+  private List<AIToolUse> toToolUses(List<FunctionCall> functionCalls, int round) {
     List<AIToolUse> toolUses = new ArrayList<>();
-    boolean hasToolUse = false;
+    for (FunctionCall call : functionCalls) {
+      String name = call.name().orElse("");
+      JsonNode parameters =
+          call.args()
+              .<JsonNode>map(objectMapper::valueToTree)
+              .orElseGet(objectMapper::createObjectNode);
+      // Gemini only sometimes assigns ids, results are matched to calls by position anyway
+      String id = call.id().orElse("call-" + round + "-" + toolUses.size());
+      toolUses.add(new AIToolUse(name, parameters, id));
+    }
+    return toolUses;
+  }
+
+  private ChatMessage executeFunctionCalls(
+      List<AIToolUse> toolUses, StreamListener listener, ToolResultCache resultCache) {
+    log.debug("Starting tool execution for {} function calls", toolUses.size());
+
+    List<ToolOutcome> outcomes = toolScheduler.executeAll(toolUses, listener, resultCache);
+    List<MessageBlock.ToolResult> results = new ArrayList<>();
+    for (int i = 0; i < toolUses.size(); i++) {
+      AIToolUse toolUse = toolUses.get(i);
+      ToolOutcome outcome = outcomes.get(i);
+      results.add(
+          new MessageBlock.ToolResult(
+              toolUse.id(), toolUse.toolName(), outcome.toModelText(), outcome.isError()));
+    }
+    return ChatMessage.toolResults(results);
+  }
+
+  private Content convertToGeminiMessage(ChatMessage message) {
+    String role =
+        switch (message.role()) {
+          case USER -> "user";
+          case ASSISTANT -> "model";
+        };
+
+    List<Part> parts = new ArrayList<>();
+    for (MessageBlock block : message.blocks()) {
+      parts.add(
+          switch (block) {
+            case MessageBlock.Text text -> Part.fromText(text.text());
+            case MessageBlock.ToolUse toolUse ->
+                Part.fromFunctionCall(
+                    toolUse.name(), objectMapper.convertValue(toolUse.input(), Map.class));
+            case MessageBlock.ToolResult result ->
+                Part.fromFunctionResponse(
+                    result.toolName(), Map.<String, Object>of("result", result.content()));
+          });
+    }
+    if (parts.isEmpty()) {
+      parts.add(Part.fromText(message.content() == null ? "" : message.content()));
+    }
+    return Content.builder().role(role).parts(parts).build();
+  }
+
+  private static String textOf(GenerateContentResponse response) {
+    String text = response.text();
+    return text == null ? "" : text;
+  }
 
-    return new AIResponse(textContent, toolUses, hasToolUse);
+  private static long totalTokens(GenerateContentResponse response) {
+    return response
+        .usageMetadata()
+        .flatMap(usage -> usage.totalTokenCount())
+        .map(Integer::longValue)
+        .orElse(0L);
   }
 }
@@ -0,0 +1,89 @@
+package com.larseckart.adapters.ai;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import com.anthropic.client.AnthropicClient;
+import com.anthropic.client.okhttp.AnthropicOkHttpClient;
+import com.google.genai.Client;
+import com.google.genai.types.HttpOptions;
+import com.larseckart.ApiKey;
+import com.larseckart.adapters.ai.AIProviderFactory.ProviderType;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+
+/**
+ * Hands out one SDK client per provider and API key for the whole process. Each client owns an
+ * HTTP connection pool, so sharing the client lets every session reuse the same warm keep-alive
+ * and HTTP/2 connections instead of paying DNS and TLS setup per provider instance.
+ */
+public final class ProviderClients {
+
+  private static final Logger log = getLogger(ProviderClients.class);
+  static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(5);
+  static final String PREWARM_VARIABLE = "AI_PREWARM";
+
+  private static final Map<String, AnthropicClient> anthropicClients = new ConcurrentHashMap<>();
+  private static final Map<String, Client> geminiClients = new ConcurrentHashMap<>();
+
+  private ProviderClients() {}
+
+  public static AnthropicClient anthropic(ApiKey apiKey) {
+    return anthropicClients.computeIfAbsent(
+        apiKey.getValue(),
+        key -> {
+          log.info("Creating shared Anthropic client");
+          // Retries are handled by ResilientCaller, which also honors retry-after
+          return AnthropicOkHttpClient.builder()
+              .apiKey(key)
+              .timeout(REQUEST_TIMEOUT)
+              .maxRetries(0)
+              .build();
+        });
+  }
+
+  public static Client gemini(ApiKey apiKey) {
+    return geminiClients.computeIfAbsent(
+        apiKey.getValue(),
+        key -> {
+          log.info("Creating shared Gemini client");
+          return Client.builder()
+              .apiKey(key)
+              .httpOptions(
+                  HttpOptions.builder().timeout((int) REQUEST_TIMEOUT.toMillis()).build())
+              .build();
+        });
+  }
+
+  /** Whether connections should be pre-warmed at startup, set with {@value #PREWARM_VARIABLE}. */
+  public static boolean prewarmEnabled() {
+    return Boolean.parseBoolean(System.getenv(PREWARM_VARIABLE));
+  }
+
+  /**
+   * Opens a connection to the provider in the background with a cheap metadata request, so DNS,
+   * TLS and HTTP/2 setup are done before the first user request. Failures are only logged: a
+   * rejected request still leaves a warm connection behind.
+   */
+  public static CompletableFuture<Void> prewarm(ProviderType type, ApiKey apiKey) {
+    return CompletableFuture.runAsync(
+        () -> {
+          long start = System.nanoTime();
+          try {
+            switch (type) {
+              case ANTHROPIC -> anthropic(apiKey).models().list();
+              case GEMINI -> gemini(apiKey).models.get(GeminiProvider.DEFAULT_MODEL, null);
+            }
+            log.info(
+                "Pre-warmed {} connection in {} ms",
+                type,
+                Duration.ofNanos(System.nanoTime() - start).toMillis());
+          } catch (RuntimeException e) {
+            log.info("Pre-warm request to {} failed, connection may still be warm", type, e);
+          }
+        },
+        runnable -> Thread.ofVirtual().name("provider-prewarm").start(runnable));
+  }
+}
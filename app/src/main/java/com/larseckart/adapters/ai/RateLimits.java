@@ -0,0 +1,114 @@
+package com.larseckart.adapters.ai;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import com.larseckart.adapters.ai.TokenBucketRateLimiter.Headroom;
+import com.larseckart.core.domain.ChatMessage;
+import com.larseckart.core.domain.TokenEstimator;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import org.slf4j.Logger;
+
+/**
+ * Process-wide rate limit budgets per model, shared by every session. Budgets are configured with
+ * {@value #LIMITS_VARIABLE} as comma separated {@code model=requestsPerMinute:tokensPerMinute}
+ * entries, e.g. {@code claude-haiku-4-5=50:50000}. Models without a budget are not limited.
+ */
+public final class RateLimits {
+
+  private static final Logger log = getLogger(RateLimits.class);
+  static final String LIMITS_VARIABLE = "AI_RATE_LIMITS";
+  static final Duration MAX_WAIT = Duration.ofSeconds(30);
+
+  private static final Map<String, TokenBucketRateLimiter> limiters =
+      new ConcurrentHashMap<>(parse(System.getenv(LIMITS_VARIABLE)));
+
+  private RateLimits() {}
+
+  /** Returns the limiter for a model, or empty if the model has no budget. */
+  public static Optional<TokenBucketRateLimiter> forModel(String model) {
+    return Optional.ofNullable(limiters.get(model));
+  }
+
+  /** Sets the budget of a model, replacing any configured one. */
+  public static void configure(String model, long requestsPerMinute, long tokensPerMinute) {
+    limiters.put(model, new TokenBucketRateLimiter(model, requestsPerMinute, tokensPerMinute));
+  }
+
+  /** Current headroom of every model with a budget. */
+  public static Map<String, Headroom> headroom() {
+    Map<String, Headroom> headroom = new TreeMap<>();
+    limiters.forEach((model, limiter) -> headroom.put(model, limiter.headroom()));
+    return headroom;
+  }
+
+  /**
+   * Runs a call within the model's budget: waits for a request slot and the estimated tokens, then
+   * settles the token bucket with the usage the call reports. A failed call keeps its charge, as
+   * the provider may well have counted it too.
+   */
+  public static <T> T meter(
+      String model, long estimatedTokens, Supplier<T> call, ToLongFunction<T> actualTokens) {
+    Optional<TokenBucketRateLimiter> limiter = forModel(model);
+    if (limiter.isEmpty()) {
+      return call.get();
+    }
+
+    limiter.get().acquire(estimatedTokens, MAX_WAIT);
+    T result = call.get();
+    long actual = actualTokens.applyAsLong(result);
+    if (actual > 0) {
+      limiter.get().settle(estimatedTokens, actual);
+    }
+    return result;
+  }
+
+  /**
+   * Estimates the tokens a call will use: the raw estimate of its prompt, corrected by the real
+   * usage after the call, plus the whole output allowance.
+   */
+  public static long estimateTokens(
+      String systemPrompt, List<ChatMessage> messages, int maxTokens) {
+    long tokens = TokenEstimator.rawEstimate(systemPrompt);
+    for (ChatMessage message : messages) {
+      tokens += TokenEstimator.rawEstimate(message);
+    }
+    return tokens + Math.max(0, maxTokens);
+  }
+
+  static Map<String, TokenBucketRateLimiter> parse(String config) {
+    Map<String, TokenBucketRateLimiter> parsed = new ConcurrentHashMap<>();
+    if (config == null || config.isBlank()) {
+      return parsed;
+    }
+
+    for (String entry : config.split(",")) {
+      String[] modelAndLimits = entry.trim().split("=");
+      String[] limits = modelAndLimits.length == 2 ? modelAndLimits[1].split(":") : new String[0];
+      if (limits.length != 2) {
+        log.warn("Ignoring malformed rate limit entry: {}", entry);
+        continue;
+      }
+      try {
+        String model = modelAndLimits[0].trim();
+        long requestsPerMinute = Long.parseLong(limits[0].trim());
+        long tokensPerMinute = Long.parseLong(limits[1].trim());
+        parsed.put(model, new TokenBucketRateLimiter(model, requestsPerMinute, tokensPerMinute));
+        log.info(
+            "Rate limit for {}: {} requests and {} tokens per minute",
+            model,
+            requestsPerMinute,
+            tokensPerMinute);
+      } catch (NumberFormatException e) {
+        log.warn("Ignoring malformed rate limit entry: {}", entry);
+      }
+    }
+    return parsed;
+  }
+}
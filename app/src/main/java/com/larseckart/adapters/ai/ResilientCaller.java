@@ -0,0 +1,227 @@
+package com.larseckart.adapters.ai;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+
+/**
+ * Runs provider API calls with jittered exponential backoff and a circuit breaker. Transient
+ * failures such as rate limiting, overload and server errors are retried, waiting at least as long
+ * as the provider's {@code retry-after} asks for. Consecutive failures of the provider open the
+ * breaker, which then rejects calls immediately instead of piling more load onto a provider that is
+ * down. Whether a failure may be retried and whether it counts against the provider are separate:
+ * a rejected or throttled key is retried without counting, and a provider failure that must not be
+ * repeated still counts.
+ */
+public class ResilientCaller {
+
+  private static final Logger log = getLogger(ResilientCaller.class);
+  private static final Map<String, ResilientCaller> shared = new ConcurrentHashMap<>();
+
+  /** What a failed call says about the provider, which is what the circuit breaker tracks. */
+  public enum Health {
+    /** The provider answered, it rejected the request itself. */
+    HEALTHY,
+    /** The provider is down, overloaded or unreachable. */
+    FAILING,
+    /** The failure concerns something else, such as a single rejected or throttled key. */
+    UNKNOWN
+  }
+
+  /** How a failed call should be handled. */
+  public record Failure(boolean retryable, Optional<Duration> retryAfter, Health health) {
+
+    public static Failure permanent() {
+      return new Failure(false, Optional.empty(), Health.HEALTHY);
+    }
+
+    public static Failure transientFailure(Optional<Duration> retryAfter) {
+      return new Failure(true, retryAfter, Health.FAILING);
+    }
+
+    /** A key was rejected or throttled; the call is retried, possibly with another key. */
+    public static Failure keyRejected(Optional<Duration> retryAfter) {
+      return new Failure(true, retryAfter, Health.UNKNOWN);
+    }
+
+    /** The same failure for a call that must not be repeated, e.g. after output escaped. */
+    public Failure notRepeatable() {
+      return new Failure(false, retryAfter, health);
+    }
+  }
+
+  /**
+   * Backoff settings. The n-th retry waits a random time up to {@code baseDelay * 2^(n-1)}, capped
+   * at {@code maxDelay}. A {@code retry-after} longer than {@code maxRetryAfter} is not waited for.
+   */
+  public record RetryPolicy(
+      int maxAttempts, Duration baseDelay, Duration maxDelay, Duration maxRetryAfter) {
+
+    public static final RetryPolicy DEFAULT =
+        new RetryPolicy(5, Duration.ofMillis(500), Duration.ofSeconds(20), Duration.ofSeconds(60));
+
+    Duration backoff(int retry) {
+      long cap = Math.min(maxDelay.toMillis(), baseDelay.toMillis() << Math.min(retry - 1, 20));
+      return Duration.ofMillis(ThreadLocalRandom.current().nextLong(cap + 1));
+    }
+  }
+
+  public record Stats(
+      long calls, long retries, long failures, long rejected, CircuitBreaker.State breakerState) {}
+
+  /** Thrown without calling the provider while its circuit breaker is open. */
+  public static class CircuitOpenException extends RuntimeException {
+    public CircuitOpenException(String name, Duration retryIn) {
+      super(name + " is temporarily unavailable, retry in " + retryIn.toSeconds() + " s");
+    }
+  }
+
+  @FunctionalInterface
+  interface Sleeper {
+    void sleep(Duration duration) throws InterruptedException;
+  }
+
+  private final String name;
+  private final RetryPolicy policy;
+  private final CircuitBreaker breaker;
+  private final Sleeper sleeper;
+  private final AtomicLong calls = new AtomicLong();
+  private final AtomicLong retries = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+
+  ResilientCaller(String name, RetryPolicy policy, CircuitBreaker breaker, Sleeper sleeper) {
+    this.name = name;
+    this.policy = policy;
+    this.breaker = breaker;
+    this.sleeper = sleeper;
+  }
+
+  /** Returns the caller shared by all instances of the named provider. */
+  public static ResilientCaller forProvider(String name) {
+    return shared.computeIfAbsent(
+        name,
+        key ->
+            new ResilientCaller(
+                key,
+                RetryPolicy.DEFAULT,
+                new CircuitBreaker(key, 5, Duration.ofSeconds(30)),
+                duration -> Thread.sleep(duration.toMillis())));
+  }
+
+  /**
+   * Runs the call, retrying failures the classifier marks as transient. The classifier also decides
+   * whether a call may be repeated at all, e.g. not once part of a streamed reply was delivered.
+   */
+  public <T> T call(Supplier<T> apiCall, Function<RuntimeException, Failure> classifier) {
+    calls.incrementAndGet();
+    for (int attempt = 1; ; attempt++) {
+      if (!breaker.tryAcquire()) {
+        rejected.incrementAndGet();
+        throw new CircuitOpenException(name, breaker.remainingOpenTime());
+      }
+
+      try {
+        T result = apiCall.get();
+        breaker.onSuccess();
+        return result;
+      } catch (RuntimeException e) {
+        Failure failure = classifier.apply(e);
+        switch (failure.health()) {
+          case HEALTHY -> breaker.onSuccess();
+          case FAILING -> breaker.onFailure();
+          case UNKNOWN -> breaker.onIgnored();
+        }
+        if (!failure.retryable()) {
+          failures.incrementAndGet();
+          throw e;
+        }
+
+        Optional<Duration> delay = delayBeforeRetry(attempt, failure);
+        // An interrupted caller, e.g. a disconnected client, is not worth retrying for
+        if (delay.isEmpty() || Thread.currentThread().isInterrupted()) {
+          failures.incrementAndGet();
+          throw e;
+        }
+
+        retries.incrementAndGet();
+        log.warn(
+            "{} call failed (attempt {}/{}), retrying in {} ms: {}",
+            name,
+            attempt,
+            policy.maxAttempts(),
+            delay.get().toMillis(),
+            e.getMessage());
+        sleep(delay.get(), e);
+      }
+    }
+  }
+
+  /** Parses a {@code retry-after} header given in seconds or as an HTTP date. */
+  public static Optional<Duration> parseRetryAfter(String value) {
+    try {
+      return Optional.of(Duration.ofMillis((long) (Double.parseDouble(value.trim()) * 1000)));
+    } catch (NumberFormatException notSeconds) {
+      try {
+        ZonedDateTime at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+        Duration untilThen = Duration.between(Instant.now(), at.toInstant());
+        return Optional.of(untilThen.isNegative() ? Duration.ZERO : untilThen);
+      } catch (DateTimeParseException notADate) {
+        return Optional.empty();
+      }
+    }
+  }
+
+  /** Parses a {@code retry-after-ms} header. */
+  public static Optional<Duration> parseRetryAfterMillis(String value) {
+    try {
+      return Optional.of(Duration.ofMillis((long) Double.parseDouble(value.trim())));
+    } catch (NumberFormatException e) {
+      return Optional.empty();
+    }
+  }
+
+  public Stats stats() {
+    return new Stats(calls.get(), retries.get(), failures.get(), rejected.get(), breaker.state());
+  }
+
+  private Optional<Duration> delayBeforeRetry(int attempt, Failure failure) {
+    if (attempt >= policy.maxAttempts()) {
+      return Optional.empty();
+    }
+    Duration backoff = policy.backoff(attempt);
+    if (failure.retryAfter().isEmpty()) {
+      return Optional.of(backoff);
+    }
+
+    Duration retryAfter = failure.retryAfter().get();
+    if (retryAfter.compareTo(policy.maxRetryAfter()) > 0) {
+      log.warn("{} asked to retry after {} s, giving up", name, retryAfter.toSeconds());
+      return Optional.empty();
+    }
+    // Jitter on top of retry-after keeps waiting callers from returning in lockstep
+    return Optional.of(retryAfter.plus(backoff.dividedBy(4)));
+  }
+
+  private void sleep(Duration delay, RuntimeException failure) {
+    try {
+      sleeper.sleep(delay);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      failures.incrementAndGet();
+      throw failure;
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package com.larseckart.adapters.ai;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import com.anthropic.models.messages.RawMessageStreamEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.larseckart.core.domain.ai.AIToolUse;
+import com.larseckart.core.ports.StreamListener;
+import com.larseckart.core.services.ToolOutcome;
+import com.larseckart.core.services.ToolResultCache;
+import com.larseckart.core.services.ToolScheduler;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+
+/**
+ * Starts tool calls while the message requesting them is still streaming. The input of each {@code
+ * tool_use} block is assembled from its {@code input_json_delta} events, and the call is submitted
+ * to a scheduler turn as soon as the block closes, so tool I/O overlaps with the rest of the
+ * model's output.
+ */
+class StreamingToolDispatcher implements AutoCloseable {
+
+  private static final Logger log = getLogger(StreamingToolDispatcher.class);
+
+  private final ToolScheduler toolScheduler;
+  private final ObjectMapper objectMapper;
+  private final StreamListener listener;
+  private final ToolResultCache resultCache;
+  // Tool use blocks that have started but not yet closed, by content block index
+  private final Map<Long, PendingToolUse> pending = new HashMap<>();
+  // Content block index of every dispatched call, in the order the calls were submitted
+  private final List<Long> dispatched = new ArrayList<>();
+  private ToolScheduler.Turn turn;
+  private boolean awaited;
+
+  private record PendingToolUse(String id, String name, StringBuilder inputJson) {}
+
+  StreamingToolDispatcher(
+      ToolScheduler toolScheduler,
+      ObjectMapper objectMapper,
+      StreamListener listener,
+      ToolResultCache resultCache) {
+    this.toolScheduler = toolScheduler;
+    this.objectMapper = objectMapper;
+    this.listener = listener;
+    this.resultCache = resultCache;
+  }
+
+  void accept(RawMessageStreamEvent event) {
+    event
+        .contentBlockStart()
+        .ifPresent(
+            start ->
+                start
+                    .contentBlock()
+                    .toolUse()
+                    .ifPresent(
+                        toolUse ->
+                            pending.put(
+                                start.index(),
+                                new PendingToolUse(
+                                    toolUse.id(), toolUse.name(), new StringBuilder()))));
+
+    event
+        .contentBlockDelta()
+        .ifPresent(
+            blockDelta -> {
+              PendingToolUse toolUse = pending.get(blockDelta.index());
+              if (toolUse != null) {
+                blockDelta
+                    .delta()
+                    .inputJson()
+                    .ifPresent(json -> toolUse.inputJson().append(json.partialJson()));
+              }
+            });
+
+    event
+        .contentBlockStop()
+        .ifPresent(
+            stop -> {
+              PendingToolUse toolUse = pending.remove(stop.index());
+              if (toolUse != null) {
+                dispatch(stop.index(), toolUse);
+              }
+            });
+  }
+
+  /** Whether any tool call was started from the stream. */
+  boolean hasDispatched() {
+    return turn != null;
+  }
+
+  /** Waits for every dispatched call and returns their outcomes in the order of the blocks. */
+  List<ToolOutcome> awaitOutcomes() {
+    if (turn == null) {
+      return List.of();
+    }
+    List<ToolOutcome> submitted = turn.awaitOutcomes();
+    awaited = true;
+    // Outcomes are matched to the message's tool uses by position, whatever order blocks closed in
+    Map<Long, ToolOutcome> byIndex = new TreeMap<>();
+    for (int i = 0; i < submitted.size(); i++) {
+      byIndex.put(dispatched.get(i), submitted.get(i));
+    }
+    return List.copyOf(byIndex.values());
+  }
+
+  private void dispatch(long index, PendingToolUse toolUse) {
+    if (turn == null) {
+      turn = toolScheduler.openTurn(listener, resultCache);
+    }
+    log.debug("Dispatching tool {} while the response is still streaming", toolUse.name());
+    JsonNode parameters = parse(toolUse.inputJson().toString());
+    turn.submit(new AIToolUse(toolUse.name(), parameters, toolUse.id()));
+    dispatched.add(index);
+  }
+
+  private JsonNode parse(String inputJson) {
+    if (inputJson.isBlank()) {
+      return objectMapper.createObjectNode();
+    }
+    try {
+      return objectMapper.readTree(inputJson);
+    } catch (JsonProcessingException e) {
+      // Let schema validation report the unusable input back to the model
+      log.warn("Could not parse streamed tool input: {}", inputJson, e);
+      return objectMapper.createObjectNode();
+    }
+  }
+
+  /** Ends the turn, cancelling calls whose outcomes were never awaited, e.g. after a failure. */
+  @Override
+  public void close() {
+    if (turn == null) {
+      return;
+    }
+    if (!awaited) {
+      turn.cancel();
+    }
+    turn.close();
+  }
+}
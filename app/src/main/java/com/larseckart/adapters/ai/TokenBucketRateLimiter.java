@@ -0,0 +1,160 @@
+package com.larseckart.adapters.ai;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+
+/**
+ * Meters calls to one model against a requests-per-minute and a tokens-per-minute budget. Both are
+ * token buckets that hold at most one minute's worth and refill continuously, so throughput at the
+ * limit is smooth instead of a burst at the start of every minute.
+ *
+ * <p>Callers are served in arrival order: the first waiter holds a fair lock while it waits for
+ * its tokens, and everyone behind it queues on the lock. A caller whose wait would exceed its bound
+ * fails right away instead of holding up the queue.
+ */
+public class TokenBucketRateLimiter {
+
+  private static final Logger log = getLogger(TokenBucketRateLimiter.class);
+  private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+  /** What is left of the budget right now. */
+  public record Headroom(
+      long requestsAvailable, long tokensAvailable, long requestsPerMinute, long tokensPerMinute) {}
+
+  /** Thrown when a call cannot be admitted within its maximum wait. */
+  public static class RateLimitExceededException extends RuntimeException {
+    public RateLimitExceededException(String model, Duration wait) {
+      super("Rate limit for " + model + " reached, next slot in " + wait.toMillis() + " ms");
+    }
+  }
+
+  @FunctionalInterface
+  interface Sleeper {
+    void sleepNanos(long nanos) throws InterruptedException;
+  }
+
+  private final String model;
+  private final long requestsPerMinute;
+  private final long tokensPerMinute;
+  private final LongSupplier nanoTime;
+  private final Sleeper sleeper;
+  private final ReentrantLock queue = new ReentrantLock(true);
+
+  // Guarded by this; tokens may go negative when a call used more than estimated
+  private double requests;
+  private double tokens;
+  private long refilledAtNanos;
+
+  public TokenBucketRateLimiter(String model, long requestsPerMinute, long tokensPerMinute) {
+    this(
+        model,
+        requestsPerMinute,
+        tokensPerMinute,
+        System::nanoTime,
+        nanos -> TimeUnit.NANOSECONDS.sleep(nanos));
+  }
+
+  TokenBucketRateLimiter(
+      String model,
+      long requestsPerMinute,
+      long tokensPerMinute,
+      LongSupplier nanoTime,
+      Sleeper sleeper) {
+    this.model = model;
+    this.requestsPerMinute = requestsPerMinute;
+    this.tokensPerMinute = tokensPerMinute;
+    this.nanoTime = nanoTime;
+    this.sleeper = sleeper;
+    this.requests = requestsPerMinute;
+    this.tokens = tokensPerMinute;
+    this.refilledAtNanos = nanoTime.getAsLong();
+  }
+
+  /**
+   * Waits until one request and the estimated tokens are available and takes them. Estimates
+   * larger than the whole budget only wait for a full bucket, so they can still run.
+   *
+   * @throws RateLimitExceededException if that takes longer than {@code maxWait}
+   */
+  public void acquire(long estimatedTokens, Duration maxWait) {
+    long deadline = nanoTime.getAsLong() + maxWait.toNanos();
+    try {
+      if (!queue.tryLock(maxWait.toNanos(), TimeUnit.NANOSECONDS)) {
+        throw new RateLimitExceededException(model, maxWait);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RateLimitExceededException(model, maxWait);
+    }
+
+    try {
+      double needed = Math.min(estimatedTokens, tokensPerMinute);
+      while (true) {
+        long waitNanos = takeOrWaitTime(needed, estimatedTokens);
+        if (waitNanos == 0) {
+          return;
+        }
+        long now = nanoTime.getAsLong();
+        if (now + waitNanos > deadline) {
+          throw new RateLimitExceededException(model, Duration.ofNanos(waitNanos));
+        }
+        log.debug("Waiting {} ms for rate limit budget of {}", waitNanos / 1_000_000, model);
+        try {
+          sleeper.sleepNanos(waitNanos);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RateLimitExceededException(model, Duration.ofNanos(waitNanos));
+        }
+      }
+    } finally {
+      queue.unlock();
+    }
+  }
+
+  /**
+   * Corrects the token bucket once the real usage of an admitted call is known, refunding an
+   * overestimate or charging what the estimate missed.
+   */
+  public synchronized void settle(long estimatedTokens, long actualTokens) {
+    refill();
+    tokens = Math.min(tokensPerMinute, tokens + estimatedTokens - actualTokens);
+  }
+
+  public synchronized Headroom headroom() {
+    refill();
+    return new Headroom(
+        (long) requests, (long) Math.max(0, tokens), requestsPerMinute, tokensPerMinute);
+  }
+
+  // Takes the budget and returns 0, or returns how long until it will be available
+  private synchronized long takeOrWaitTime(double needed, long charged) {
+    refill();
+    double missingRequests = Math.max(0, 1 - requests);
+    double missingTokens = Math.max(0, needed - tokens);
+    if (missingRequests == 0 && missingTokens == 0) {
+      requests -= 1;
+      tokens -= charged;
+      return 0;
+    }
+    long requestWait = (long) Math.ceil(missingRequests * NANOS_PER_MINUTE / requestsPerMinute);
+    long tokenWait = (long) Math.ceil(missingTokens * NANOS_PER_MINUTE / tokensPerMinute);
+    return Math.max(1, Math.max(requestWait, tokenWait));
+  }
+
+  private void refill() {
+    long now = nanoTime.getAsLong();
+    long elapsed = now - refilledAtNanos;
+    refilledAtNanos = now;
+    requests = Math.min(requestsPerMinute, requests + refilled(elapsed, requestsPerMinute));
+    tokens = Math.min(tokensPerMinute, tokens + refilled(elapsed, tokensPerMinute));
+  }
+
+  private static double refilled(long elapsedNanos, long perMinute) {
+    return (double) elapsedNanos * perMinute / NANOS_PER_MINUTE;
+  }
+}
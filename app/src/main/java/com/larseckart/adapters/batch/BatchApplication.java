@@ -0,0 +1,143 @@
+package com.larseckart.adapters.batch;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.larseckart.adapters.ai.AIProviderFactory;
+import com.larseckart.core.domain.ai.BatchPrompt;
+import com.larseckart.core.services.BatchService;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+
+/**
+ * Answers the prompts of a JSONL file offline, one JSON object per line with an {@code id} and a
+ * {@code prompt}. Files in the backlog format with {@code request_id}, {@code title} and {@code
+ * body} are read as well. Results are appended to {@code <input>.results.jsonl} unless another
+ * path is given, and running again continues with the prompts that have no successful result.
+ *
+ * <p>Usage: {@code -Dapp.mode=batch <prompts.jsonl> [results.jsonl]}
+ */
+public class BatchApplication {
+
+  private static final Logger log = getLogger(BatchApplication.class);
+  static final String CONCURRENCY_VARIABLE = "AI_BATCH_CONCURRENCY";
+  private static final int DEFAULT_CONCURRENCY = 8;
+  // Custom ids accepted by the Anthropic Message Batches API
+  private static final int MAX_ID_LENGTH = 64;
+
+  public static void main(String[] args) {
+    System.setProperty("app.mode", "batch");
+    if (args.length < 1) {
+      System.err.println("Usage: -Dapp.mode=batch <prompts.jsonl> [results.jsonl]");
+      System.exit(2);
+    }
+
+    Path input = Path.of(args[0]);
+    Path output =
+        args.length > 1
+            ? Path.of(args[1])
+            : input.resolveSibling(input.getFileName() + ".results.jsonl");
+    List<BatchPrompt> prompts = readPrompts(input);
+
+    BatchService.Summary summary;
+    try (JsonlBatchJournal journal = new JsonlBatchJournal(output)) {
+      BatchService batchService =
+          new BatchService(AIProviderFactory.createFromEnvironment(), journal, concurrency());
+      summary = batchService.run(prompts);
+    }
+
+    System.out.printf(
+        "%d prompts: %d succeeded, %d failed, %d answered by earlier runs. Results: %s%n",
+        prompts.size(), summary.succeeded(), summary.failed(), summary.skipped(), output);
+    if (summary.failed() > 0) {
+      System.exit(1);
+    }
+  }
+
+  static List<BatchPrompt> readPrompts(Path input) {
+    ObjectMapper objectMapper = new ObjectMapper();
+    List<BatchPrompt> prompts = new ArrayList<>();
+    // Results are matched to prompts by id, so two prompts must never share one
+    Map<String, Integer> lineById = new HashMap<>();
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(input);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not read prompts from " + input, e);
+    }
+
+    for (int i = 0; i < lines.size(); i++) {
+      String line = lines.get(i);
+      if (line.isBlank()) {
+        continue;
+      }
+      JsonNode node;
+      try {
+        node = objectMapper.readTree(line);
+      } catch (JsonProcessingException e) {
+        throw new IllegalArgumentException("Line " + (i + 1) + " of " + input + " is not JSON", e);
+      }
+
+      String id = firstText(node, "id", "custom_id", "request_id");
+      String prompt = firstText(node, "prompt", "body");
+      if (prompt == null) {
+        throw new IllegalArgumentException("Line " + (i + 1) + " of " + input + " has no prompt");
+      }
+      if (node.hasNonNull("title")) {
+        prompt = node.get("title").asText() + "\n\n" + prompt;
+      }
+      String batchId = toBatchId(id, i + 1);
+      Integer earlier = lineById.putIfAbsent(batchId, i + 1);
+      if (earlier != null) {
+        throw new IllegalArgumentException(
+            "Line %d of %s has id %s, which line %d already uses"
+                .formatted(i + 1, input, batchId, earlier));
+      }
+      prompts.add(new BatchPrompt(batchId, prompt));
+    }
+    return prompts;
+  }
+
+  /**
+   * Restricts ids to letters, digits, {@code _} and {@code -}, as batch APIs require. Different ids
+   * may end up the same, which {@link #readPrompts} rejects.
+   */
+  static String toBatchId(String id, int lineNumber) {
+    if (id == null || id.isBlank()) {
+      return "line-" + lineNumber;
+    }
+    String sanitized = id.replaceAll("[^A-Za-z0-9_-]", "_");
+    return sanitized.length() > MAX_ID_LENGTH ? sanitized.substring(0, MAX_ID_LENGTH) : sanitized;
+  }
+
+  private static String firstText(JsonNode node, String... fields) {
+    for (String field : fields) {
+      if (node.hasNonNull(field)) {
+        return node.get(field).asText();
+      }
+    }
+    return null;
+  }
+
+  private static int concurrency() {
+    String value = System.getenv(CONCURRENCY_VARIABLE);
+    if (value == null || value.isBlank()) {
+      return DEFAULT_CONCURRENCY;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      log.warn("Ignoring invalid {}: {}", CONCURRENCY_VARIABLE, value);
+      return DEFAULT_CONCURRENCY;
+    }
+  }
+}
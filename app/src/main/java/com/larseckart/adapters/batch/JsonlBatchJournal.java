@@ -0,0 +1,173 @@
+package com.larseckart.adapters.batch;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.larseckart.core.domain.ai.BatchResult;
+import com.larseckart.core.domain.ai.TokenUsage;
+import com.larseckart.core.ports.batch.BatchJournal;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.slf4j.Logger;
+
+/**
+ * Keeps batch progress next to the results: every result is appended to a JSONL file as soon as it
+ * is known, and the ids of provider batches still to be collected are kept in a {@code
+ * .checkpoint} file beside it. The last result line of a prompt wins, so a rerun can retry failed
+ * prompts by appending to the same file.
+ */
+public class JsonlBatchJournal implements BatchJournal, AutoCloseable {
+
+  private static final Logger log = getLogger(JsonlBatchJournal.class);
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final Path checkpoint;
+  private final Set<String> succeededIds = new HashSet<>();
+  private final Set<String> openBatchIds = new LinkedHashSet<>();
+  private final BufferedWriter results;
+
+  public JsonlBatchJournal(Path resultsFile) {
+    this.checkpoint = resultsFile.resolveSibling(resultsFile.getFileName() + ".checkpoint");
+    try {
+      if (Files.exists(resultsFile)) {
+        readResults(resultsFile);
+      }
+      if (Files.exists(checkpoint)) {
+        Files.readAllLines(checkpoint).stream()
+            .map(String::trim)
+            .filter(line -> !line.isEmpty())
+            .forEach(openBatchIds::add);
+      }
+      this.results =
+          Files.newBufferedWriter(
+              resultsFile,
+              StandardCharsets.UTF_8,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.APPEND);
+      if (endsInPartialLine(resultsFile)) {
+        results.newLine();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not open batch results " + resultsFile, e);
+    }
+  }
+
+  @Override
+  public synchronized Set<String> succeededIds() {
+    return Set.copyOf(succeededIds);
+  }
+
+  @Override
+  public synchronized List<String> openBatchIds() {
+    return new ArrayList<>(openBatchIds);
+  }
+
+  @Override
+  public synchronized void batchSubmitted(String batchId) {
+    openBatchIds.add(batchId);
+    writeCheckpoint();
+  }
+
+  @Override
+  public synchronized void batchCollected(String batchId) {
+    openBatchIds.remove(batchId);
+    writeCheckpoint();
+  }
+
+  @Override
+  public synchronized void record(BatchResult result) {
+    ObjectNode line = objectMapper.createObjectNode();
+    line.put("id", result.id());
+    line.put("status", result.isSucceeded() ? "succeeded" : "failed");
+    if (result.isSucceeded()) {
+      TokenUsage usage = result.response().usage();
+      line.put("text", result.response().textContent());
+      line.put("input_tokens", usage.totalTokens() - usage.outputTokens());
+      line.put("output_tokens", usage.outputTokens());
+      succeededIds.add(result.id());
+    } else {
+      line.put("error", result.error());
+      succeededIds.remove(result.id());
+    }
+
+    try {
+      results.write(objectMapper.writeValueAsString(line));
+      results.newLine();
+      // Flushed per line, so a crash loses at most the result being written
+      results.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not write batch result " + result.id(), e);
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    try {
+      results.close();
+    } catch (IOException e) {
+      log.warn("Could not close batch results", e);
+    }
+  }
+
+  private void readResults(Path resultsFile) throws IOException {
+    for (String line : Files.readAllLines(resultsFile)) {
+      if (line.isBlank()) {
+        continue;
+      }
+      try {
+        JsonNode result = objectMapper.readTree(line);
+        String id = result.path("id").asText();
+        if ("succeeded".equals(result.path("status").asText())) {
+          succeededIds.add(id);
+        } else {
+          succeededIds.remove(id);
+        }
+      } catch (JsonProcessingException e) {
+        // A line cut short by a crash; its prompt is simply answered again
+        log.warn("Skipping unreadable result line: {}", line);
+      }
+    }
+  }
+
+  // A crash while writing leaves a line without its newline, the next result starts a new one
+  private static boolean endsInPartialLine(Path resultsFile) throws IOException {
+    try (SeekableByteChannel channel = Files.newByteChannel(resultsFile)) {
+      if (channel.size() == 0) {
+        return false;
+      }
+      ByteBuffer last = ByteBuffer.allocate(1);
+      channel.position(channel.size() - 1).read(last);
+      return last.get(0) != '\n';
+    }
+  }
+
+  private void writeCheckpoint() {
+    try {
+      Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+      Files.write(temporary, openBatchIds);
+      Files.move(
+          temporary,
+          checkpoint,
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not write batch checkpoint " + checkpoint, e);
+    }
+  }
+}
@@ -19,4 +19,21 @@ public class ConsoleOutputAdapter implements OutputPort {
     System.out.print("\u001b[95mTheAgent\u001b[0m: ");
     System.out.println("\u001b[92m" + response + "\u001b[0m");
   }
+
+  @Override
+  public void beginAssistantResponse() {
+    System.out.print("\u001b[95mTheAgent\u001b[0m: \u001b[92m");
+    System.out.flush();
+  }
+
+  @Override
+  public void displayAssistantDelta(String delta) {
+    System.out.print(delta);
+    System.out.flush();
+  }
+
+  @Override
+  public void endAssistantResponse() {
+    System.out.println("\u001b[0m");
+  }
 }
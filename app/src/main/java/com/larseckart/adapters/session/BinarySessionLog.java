@@ -0,0 +1,411 @@
+package com.larseckart.adapters.session;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import com.larseckart.core.domain.ChatMessage;
+import com.larseckart.core.domain.MessageCodec;
+import com.larseckart.core.ports.session.SessionLog;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import org.slf4j.Logger;
+
+/**
+ * Keeps one append-only file per session in a directory. After a short header, the file is a
+ * sequence of records, each framed as its length, a CRC32C checksum and the message in {@link
+ * MessageCodec} form. A crash can only leave a torn last record, which fails its checksum and is
+ * cut off when the session is loaded again.
+ *
+ * <p>A single writer thread takes every pending record, writes them and forces each touched file
+ * once, so concurrent sessions share their syncs (group commit). A session's file stays open until
+ * the session is released. Loading maps the file into memory
+ * and decodes it in one pass. Rewriting a session writes a new file and moves it over the old one.
+ */
+public class BinarySessionLog implements SessionLog, AutoCloseable {
+
+  private static final Logger log = getLogger(BinarySessionLog.class);
+  private static final String SUFFIX = ".log";
+  private static final int MAGIC = 0x43454153; // "CEAS"
+  // Version 2 records leave out the message content, which is derived from the blocks
+  private static final byte VERSION = 2;
+  private static final int HEADER_BYTES = Integer.BYTES + 1;
+  private static final int FRAME_BYTES = 2 * Integer.BYTES;
+
+  private enum Kind {
+    APPEND,
+    REWRITE,
+    RELEASE,
+    FLUSH
+  }
+
+  /** Work for the writer thread. */
+  private record Pending(
+      Kind kind, String sessionId, List<byte[]> records, CompletableFuture<Void> done) {}
+
+  private final Path directory;
+  private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+  // Touched by the writer thread only
+  private final Map<String, FileChannel> channels = new HashMap<>();
+  // Sessions whose file lacks a record that failed to be written
+  private final Set<String> broken = ConcurrentHashMap.newKeySet();
+  private final Thread writer;
+  private volatile boolean closed;
+
+  public BinarySessionLog(Path directory) {
+    this.directory = directory;
+    try {
+      Files.createDirectories(directory);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not create session directory " + directory, e);
+    }
+    this.writer = Thread.ofPlatform().daemon().name("session-log-writer").start(this::writeLoop);
+  }
+
+  @Override
+  public List<ChatMessage> load(String sessionId) {
+    // Pending appends of the session have to be on disk before it is read
+    flush();
+    // What is read now is all there is, so later appends follow it without a gap
+    broken.remove(sessionId);
+    Path file = fileOf(sessionId);
+    if (!Files.exists(file)) {
+      return List.of();
+    }
+    try (FileChannel channel =
+        FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      long size = channel.size();
+      if (size < HEADER_BYTES) {
+        channel.truncate(0);
+        return List.of();
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+        throw new IOException("Not a session log of a supported version");
+      }
+
+      List<ChatMessage> messages = new ArrayList<>();
+      int validEnd = buffer.position();
+      while (buffer.remaining() >= FRAME_BYTES) {
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+          break;
+        }
+        ByteBuffer payload = buffer.slice(buffer.position(), length);
+        if (checksum(payload) != checksum) {
+          break;
+        }
+        byte[] encoded = new byte[length];
+        buffer.get(encoded);
+        messages.add(MessageCodec.decode(encoded));
+        validEnd = buffer.position();
+      }
+      if (validEnd < size) {
+        log.warn(
+            "Cutting off a torn record at the end of session {} ({} of {} bytes valid)",
+            sessionId,
+            validEnd,
+            size);
+        channel.truncate(validEnd);
+      }
+      return messages;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not load session " + sessionId, e);
+    }
+  }
+
+  @Override
+  public CompletableFuture<Void> append(String sessionId, ChatMessage message) {
+    return enqueue(
+        new Pending(Kind.APPEND, sessionId, List.of(frame(message)), new CompletableFuture<>()));
+  }
+
+  @Override
+  public CompletableFuture<Void> rewrite(String sessionId, List<ChatMessage> messages) {
+    List<byte[]> records = new ArrayList<>(messages.size());
+    for (ChatMessage message : messages) {
+      records.add(frame(message));
+    }
+    return enqueue(new Pending(Kind.REWRITE, sessionId, records, new CompletableFuture<>()));
+  }
+
+  @Override
+  public void flush() {
+    CompletableFuture<Void> done = new CompletableFuture<>();
+    enqueue(new Pending(Kind.FLUSH, null, List.of(), done));
+    try {
+      done.join();
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof RuntimeException cause ? cause : e;
+    }
+  }
+
+  @Override
+  public void release(String sessionId) {
+    enqueue(new Pending(Kind.RELEASE, sessionId, List.of(), new CompletableFuture<>()));
+  }
+
+  @Override
+  public Set<String> sessionIds() {
+    try (Stream<Path> files = Files.list(directory)) {
+      Set<String> ids = new TreeSet<>();
+      files
+          .map(file -> file.getFileName().toString())
+          .filter(name -> name.endsWith(SUFFIX))
+          .forEach(name -> ids.add(name.substring(0, name.length() - SUFFIX.length())));
+      return ids;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not list sessions in " + directory, e);
+    }
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    flush();
+    closed = true;
+    // Wakes the writer up to see that it is closed
+    queue.add(new Pending(Kind.FLUSH, null, List.of(), new CompletableFuture<>()));
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private CompletableFuture<Void> enqueue(Pending pending) {
+    if (closed) {
+      throw new IllegalStateException("The session log is closed");
+    }
+    queue.add(pending);
+    return pending.done();
+  }
+
+  private void writeLoop() {
+    List<Pending> batch = new ArrayList<>();
+    try {
+      while (!closed) {
+        batch.add(queue.take());
+        queue.drainTo(batch);
+        commit(batch);
+        batch.clear();
+      }
+    } catch (InterruptedException e) {
+      log.warn("Session log writer was interrupted, later appends are not written");
+    } finally {
+      channels.values().forEach(BinarySessionLog::closeQuietly);
+      channels.clear();
+    }
+  }
+
+  /**
+   * Writes every record of the batch in order, then syncs each touched file once. A failure only
+   * fails the writes of its own session, and its partial record is cut off again.
+   */
+  private void commit(List<Pending> batch) {
+    // Appends that are written but not yet synced, by session
+    Map<String, List<Pending>> unsynced = new LinkedHashMap<>();
+    List<Pending> flushes = new ArrayList<>();
+    for (Pending pending : batch) {
+      String sessionId = pending.sessionId();
+      try {
+        switch (pending.kind()) {
+          case APPEND -> {
+            appendRecords(sessionId, pending.records());
+            unsynced.computeIfAbsent(sessionId, id -> new ArrayList<>()).add(pending);
+            continue;
+          }
+          case REWRITE -> {
+            replaceFile(sessionId, pending.records());
+            broken.remove(sessionId);
+            // Appends before the rewrite are part of the new file, which is synced already
+            List<Pending> superseded = unsynced.remove(sessionId);
+            if (superseded != null) {
+              superseded.forEach(append -> append.done().complete(null));
+            }
+          }
+          case RELEASE -> {
+            // Appends of this batch are synced before their channel goes
+            sync(sessionId, unsynced.remove(sessionId));
+            closeChannel(sessionId);
+          }
+          case FLUSH -> {
+            flushes.add(pending);
+            continue;
+          }
+        }
+        pending.done().complete(null);
+      } catch (IOException e) {
+        log.error("Could not write session {}", sessionId, e);
+        pending.done().completeExceptionally(new UncheckedIOException(e));
+      }
+    }
+    unsynced.forEach(this::sync);
+    // Failures were reported to the writes they concern
+    flushes.forEach(flush -> flush.done().complete(null));
+  }
+
+  /**
+   * Appends the records to the session's file. If that fails, the file is cut back to where it
+   * ended before, since a partial record would hide every later one from {@link #load}, and the
+   * session takes no more appends until it is rewritten or loaded again, so its file never has a
+   * gap.
+   */
+  private void appendRecords(String sessionId, List<byte[]> records) throws IOException {
+    if (broken.contains(sessionId)) {
+      throw new IOException("An earlier record is missing, the session has to be rewritten");
+    }
+    try {
+      FileChannel channel = channelOf(sessionId);
+      long end = channel.size();
+      try {
+        for (byte[] record : records) {
+          writeFully(channel, ByteBuffer.wrap(record));
+        }
+      } catch (IOException e) {
+        try {
+          channel.truncate(end);
+        } catch (IOException truncateFailure) {
+          e.addSuppressed(truncateFailure);
+          closeQuietly(channels.remove(sessionId));
+        }
+        throw e;
+      }
+    } catch (IOException e) {
+      broken.add(sessionId);
+      throw e;
+    }
+  }
+
+  /** Syncs the session's file and completes its appends, or fails them if the sync fails. */
+  private void sync(String sessionId, List<Pending> appends) {
+    if (appends == null) {
+      return;
+    }
+    FileChannel channel = channels.get(sessionId);
+    try {
+      if (channel == null) {
+        throw new IOException("The file was closed after a failed write");
+      }
+      channel.force(false);
+      appends.forEach(pending -> pending.done().complete(null));
+    } catch (IOException e) {
+      log.error("Could not sync session {}", sessionId, e);
+      // What reached the disk is unknown, so only a rewrite makes the file trustworthy again
+      broken.add(sessionId);
+      if (channel != null) {
+        closeQuietly(channels.remove(sessionId));
+      }
+      appends.forEach(pending -> pending.done().completeExceptionally(new UncheckedIOException(e)));
+    }
+  }
+
+  private void replaceFile(String sessionId, List<byte[]> records) throws IOException {
+    closeChannel(sessionId);
+    Path file = fileOf(sessionId);
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel channel =
+        FileChannel.open(
+            temporary,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      writeFully(channel, header());
+      for (byte[] record : records) {
+        writeFully(channel, ByteBuffer.wrap(record));
+      }
+      channel.force(false);
+    }
+    Files.move(
+        temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    log.debug("Rewrote session {} with {} records", sessionId, records.size());
+  }
+
+  private void closeChannel(String sessionId) throws IOException {
+    FileChannel open = channels.remove(sessionId);
+    if (open != null) {
+      open.close();
+    }
+  }
+
+  private FileChannel channelOf(String sessionId) throws IOException {
+    FileChannel channel = channels.get(sessionId);
+    if (channel == null) {
+      channel =
+          FileChannel.open(
+              fileOf(sessionId),
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.APPEND);
+      try {
+        if (channel.size() == 0) {
+          writeFully(channel, header());
+        }
+      } catch (IOException e) {
+        closeQuietly(channel);
+        throw e;
+      }
+      channels.put(sessionId, channel);
+    }
+    return channel;
+  }
+
+  private Path fileOf(String sessionId) {
+    return directory.resolve(sessionId + SUFFIX);
+  }
+
+  private static byte[] frame(ChatMessage message) {
+    byte[] encoded = MessageCodec.encode(message);
+    ByteBuffer record = ByteBuffer.allocate(FRAME_BYTES + encoded.length);
+    record.putInt(encoded.length);
+    record.putInt(checksum(ByteBuffer.wrap(encoded)));
+    record.put(encoded);
+    return record.array();
+  }
+
+  private static ByteBuffer header() {
+    return ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).put(VERSION).flip();
+  }
+
+  private static int checksum(ByteBuffer bytes) {
+    CRC32C crc = new CRC32C();
+    crc.update(bytes.duplicate());
+    return (int) crc.getValue();
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private static void closeQuietly(FileChannel channel) {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      log.warn("Could not close a session file", e);
+    }
+  }
+}
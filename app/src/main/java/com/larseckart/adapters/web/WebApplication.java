@@ -1,9 +1,18 @@
 package com.larseckart.adapters.web;
 
+import static org.slf4j.LoggerFactory.getLogger;
+
 import com.larseckart.ApiKey;
-import com.larseckart.adapters.ai.AnthropicProvider;
-import com.larseckart.core.domain.ConversationContext;
+import com.larseckart.adapters.ai.AIProviderFactory;
+import com.larseckart.adapters.ai.ApiKeyPool;
+import com.larseckart.adapters.session.BinarySessionLog;
+import com.larseckart.core.ports.AIProvider;
 import com.larseckart.core.services.ConversationService;
+import com.larseckart.core.services.SessionRegistry;
+import com.larseckart.core.services.SessionStore;
+import java.nio.file.Path;
+import java.time.Duration;
+import org.slf4j.Logger;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
@@ -11,23 +20,72 @@ import org.springframework.context.annotation.Bean;
 @SpringBootApplication
 public class WebApplication {
 
+  private static final Logger log = getLogger(WebApplication.class);
+  private static final String SESSION_DIRECTORY_VARIABLE = "AI_SESSION_DIR";
+  private static final String SESSION_IDLE_MINUTES_VARIABLE = "AI_SESSION_IDLE_MINUTES";
+  private static final String SESSION_MEMORY_MB_VARIABLE = "AI_SESSION_MEMORY_MB";
+  private static final long DEFAULT_SESSION_IDLE_MINUTES = 30;
+  private static final long DEFAULT_SESSION_MEMORY_MB = 256;
+  private static final Duration SESSION_EVICTION_INTERVAL = Duration.ofMinutes(1);
+
   public static void main(String[] args) {
     System.setProperty("app.mode", "web");
     SpringApplication.run(WebApplication.class, args);
   }
 
   @Bean
-  public ConversationContext conversationContext() {
-    return new ConversationContext();
+  public BinarySessionLog sessionLog() {
+    String directory = System.getenv(SESSION_DIRECTORY_VARIABLE);
+    return new BinarySessionLog(
+        Path.of(directory == null || directory.isBlank() ? "sessions" : directory));
+  }
+
+  @Bean
+  public SessionStore sessionStore(BinarySessionLog sessionLog) {
+    return new SessionStore(sessionLog);
   }
 
   @Bean
-  public ApiKey apiKey() {
-    return ApiKey.fromEnvironment("ANTHROPIC_API_KEY");
+  public ApiKeyPool apiKeys() {
+    return new ApiKeyPool(ApiKey.allFromEnvironment("ANTHROPIC_API_KEY"));
   }
 
   @Bean
-  public ConversationService conversationService(ConversationContext context, ApiKey apiKey) {
-    return new ConversationService(context, new AnthropicProvider(apiKey));
+  public AIProvider aiProvider(ApiKeyPool apiKeys) {
+    return AIProviderFactory.create(AIProviderFactory.ProviderType.ANTHROPIC, apiKeys);
+  }
+
+  /**
+   * One conversation per client session, resumed from the session log when it was evicted. The ids
+   * of logged sessions were issued before a restart and stay valid. Idle sessions are evicted
+   * every minute; the registry is closed, stopping that, on shutdown.
+   */
+  @Bean
+  public SessionRegistry sessionRegistry(SessionStore sessionStore, AIProvider aiProvider) {
+    SessionRegistry registry =
+        new SessionRegistry(
+            sessionId -> new ConversationService(sessionStore.open(sessionId), aiProvider),
+            sessionStore::release,
+            Duration.ofMinutes(
+                longFromEnvironment(SESSION_IDLE_MINUTES_VARIABLE, DEFAULT_SESSION_IDLE_MINUTES)),
+            longFromEnvironment(SESSION_MEMORY_MB_VARIABLE, DEFAULT_SESSION_MEMORY_MB)
+                * 1024
+                * 1024);
+    registry.addIssued(sessionStore.sessionIds());
+    registry.evictEvery(SESSION_EVICTION_INTERVAL);
+    return registry;
+  }
+
+  private static long longFromEnvironment(String variable, long defaultValue) {
+    String value = System.getenv(variable);
+    if (value == null || value.isBlank()) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      log.warn("Ignoring invalid {}: {}", variable, value);
+      return defaultValue;
+    }
   }
 }
@@ -1,32 +1,132 @@
 package com.larseckart.adapters.web.controllers;
 
+import com.larseckart.adapters.ai.RateLimits;
+import com.larseckart.adapters.ai.TokenBucketRateLimiter.Headroom;
 import com.larseckart.adapters.web.dto.ChatRequest;
 import com.larseckart.adapters.web.dto.ChatResponse;
-import com.larseckart.core.services.ConversationService;
+import com.larseckart.adapters.web.dto.MemoryReport;
+import com.larseckart.core.services.SessionRegistry;
+import jakarta.annotation.PreDestroy;
 import jakarta.validation.Valid;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/chat")
 public class ChatController {
 
   private static final Logger logger = LoggerFactory.getLogger(ChatController.class);
-  private final ConversationService conversationService;
+  private static final Duration STREAM_TIMEOUT = Duration.ofMinutes(10);
+  private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
 
-  public ChatController(ConversationService conversationService) {
-    this.conversationService = conversationService;
+  private final SessionRegistry sessions;
+  // Turns run off the servlet thread, so a long tool loop does not hold a request thread
+  private final ExecutorService turns = Executors.newVirtualThreadPerTaskExecutor();
+  private final ScheduledExecutorService heartbeats =
+      Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().factory());
+
+  public ChatController(SessionRegistry sessions) {
+    this.sessions = sessions;
   }
 
   @PostMapping("/message")
   public ChatResponse sendMessage(@Valid @RequestBody ChatRequest request) {
     logger.info("POST /api/chat/message called with message: {}", request.message());
-    String response = conversationService.sendMessage(request.message());
+    String sessionId = sessionIdOf(request);
+    String response =
+        sessions.withSession(sessionId, service -> service.sendMessage(request.message()));
     logger.info("Response generated with length: {} characters", response.length());
-    return new ChatResponse(response);
+    return new ChatResponse(response, sessionId);
+  }
+
+  /** Rate limit budget left per model, for models that have one configured. */
+  @GetMapping("/headroom")
+  public Map<String, Headroom> headroom() {
+    return RateLimits.headroom();
+  }
+
+  /** Approximate heap held by all open sessions, split into recent and compressed turns. */
+  @GetMapping("/memory")
+  public MemoryReport memory() {
+    return new MemoryReport(sessions.size(), sessions.memoryUsage());
+  }
+
+  /**
+   * Streams a reply as Server-Sent Events: {@code delta} for reply text, {@code tool_start} and
+   * {@code tool_end} around tool calls, then {@code message} with the full reply or {@code error}.
+   * Closing the connection interrupts the turn, which cancels its running tool calls. The {@code
+   * message} event carries the session id, which is new if the request had none.
+   */
+  @PostMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter streamMessage(@Valid @RequestBody ChatRequest request) {
+    logger.info("POST /api/chat/stream called with message: {}", request.message());
+    String sessionId = sessionIdOf(request);
+    SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT.toMillis());
+    SseChatStream stream = new SseChatStream(emitter, sessionId);
+
+    Future<?> turn =
+        turns.submit(
+            () -> {
+              try {
+                String response =
+                    sessions.withSession(
+                        sessionId, service -> service.sendMessage(request.message(), stream));
+                logger.info("Streamed response with length: {} characters", response.length());
+                stream.complete(response);
+              } catch (RuntimeException e) {
+                stream.fail(e);
+              }
+            });
+    ScheduledFuture<?> heartbeat =
+        heartbeats.scheduleAtFixedRate(
+            stream::heartbeat,
+            HEARTBEAT_INTERVAL.toMillis(),
+            HEARTBEAT_INTERVAL.toMillis(),
+            TimeUnit.MILLISECONDS);
+
+    Runnable cleanup =
+        () -> {
+          stream.close();
+          heartbeat.cancel(false);
+          turn.cancel(true);
+        };
+    emitter.onCompletion(cleanup);
+    emitter.onTimeout(cleanup);
+    emitter.onError(error -> cleanup.run());
+    return emitter;
+  }
+
+  // Only ids this server issued are accepted, so a client cannot pick a session to take over
+  private String sessionIdOf(ChatRequest request) {
+    if (request.sessionId() == null) {
+      return sessions.newSessionId();
+    }
+    if (!sessions.isIssued(request.sessionId())) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown session id");
+    }
+    return request.sessionId();
+  }
+
+  @PreDestroy
+  void shutdown() {
+    heartbeats.shutdownNow();
+    turns.shutdownNow();
   }
 }
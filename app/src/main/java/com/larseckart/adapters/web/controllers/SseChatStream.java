@@ -0,0 +1,103 @@
+package com.larseckart.adapters.web.controllers;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import com.larseckart.adapters.web.dto.ChatResponse;
+import com.larseckart.core.ports.StreamListener;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Forwards the events of one chat turn to a Server-Sent Events response. Once the client has gone
+ * away every further event fails fast, which stops the provider from streaming into the void.
+ */
+class SseChatStream implements StreamListener {
+
+  private static final Logger log = getLogger(SseChatStream.class);
+
+  private final SseEmitter emitter;
+  private final String sessionId;
+  private boolean closed;
+
+  SseChatStream(SseEmitter emitter, String sessionId) {
+    this.emitter = emitter;
+    this.sessionId = sessionId;
+  }
+
+  @Override
+  public void onTextDelta(String delta) {
+    send("delta", Map.of("text", delta));
+  }
+
+  @Override
+  public void onToolStart(String toolName) {
+    send("tool_start", Map.of("tool", toolName));
+  }
+
+  @Override
+  public void onToolEnd(String toolName, String status, Duration elapsed) {
+    send("tool_end", Map.of("tool", toolName, "status", status, "elapsed_ms", elapsed.toMillis()));
+  }
+
+  /** Sends the final reply and ends the response. */
+  synchronized void complete(String response) {
+    if (closed) {
+      return;
+    }
+    send("message", new ChatResponse(response, sessionId));
+    closed = true;
+    emitter.complete();
+  }
+
+  /** Reports a failed turn to the client, if it is still listening, and ends the response. */
+  synchronized void fail(Exception e) {
+    if (closed) {
+      log.debug("Chat turn ended after the client disconnected", e);
+      return;
+    }
+    log.error("Chat turn failed", e);
+    try {
+      send("error", Map.of("message", "Failed to get a response"));
+    } catch (UncheckedIOException ignored) {
+      // The client is gone, there is nobody left to tell
+    }
+    closed = true;
+    emitter.complete();
+  }
+
+  /** Sends a comment line so proxies and the client keep the idle connection open. */
+  synchronized void heartbeat() {
+    if (closed) {
+      return;
+    }
+    try {
+      emitter.send(SseEmitter.event().comment("keep-alive"));
+    } catch (IOException | IllegalStateException e) {
+      closed = true;
+    }
+  }
+
+  synchronized void close() {
+    closed = true;
+  }
+
+  private synchronized void send(String name, Object data) {
+    if (closed) {
+      throw new UncheckedIOException(new IOException("Client disconnected"));
+    }
+    try {
+      emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+    } catch (IOException e) {
+      closed = true;
+      throw new UncheckedIOException(e);
+    } catch (IllegalStateException e) {
+      closed = true;
+      throw new UncheckedIOException(new IOException("Response already completed", e));
+    }
+  }
+}
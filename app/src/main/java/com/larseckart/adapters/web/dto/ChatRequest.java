@@ -1,5 +1,13 @@
 package com.larseckart.adapters.web.dto;
 
+import com.larseckart.core.services.SessionStore;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
 
-public record ChatRequest(@NotBlank String message) {}
+/**
+ * A message for a session; without a session id a new session is started. A session id must be one
+ * the server issued in an earlier reply.
+ */
+public record ChatRequest(
+    @NotBlank String message,
+    @Pattern(regexp = SessionStore.SESSION_ID_PATTERN) String sessionId) {}
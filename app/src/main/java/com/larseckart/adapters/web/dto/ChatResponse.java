@@ -1,3 +1,3 @@
 package com.larseckart.adapters.web.dto;
 
-public record ChatResponse(String response) {}
+public record ChatResponse(String response, String sessionId) {}
@@ -0,0 +1,6 @@
+package com.larseckart.adapters.web.dto;
+
+import com.larseckart.core.domain.MemoryUsage;
+
+/** Heap held by the open sessions together, without naming them. */
+public record MemoryReport(int openSessions, MemoryUsage usage) {}
@@ -0,0 +1,90 @@
+package com.larseckart.core.domain;
+
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * Content-addressed storage for large texts such as tool outputs. Equal texts are stored once:
+ * interning returns the instance already held for the same content, so a file read five times
+ * takes the heap of one read. Blobs are held weakly and disappear with the last message using them.
+ *
+ * <p>Compressed messages refer to their blobs by digest and hold a {@link ColdBlob}, which is
+ * deflated once per digest and shared by all of them. Thawing a cold blob interns its text again,
+ * so the messages inflated from it share one instance too.
+ */
+public final class BlobStore {
+
+  /** A stored text and the SHA-256 digest it is addressed by. */
+  public record Blob(String digest, String content) {}
+
+  private static final int SWEEP_INTERVAL = 64;
+
+  private final Map<String, WeakReference<String>> blobs = new HashMap<>();
+  // Held strongly by the compressed messages using them, weakly here to share them
+  private final Map<String, WeakReference<ColdBlob>> coldBlobs = new HashMap<>();
+  private int insertions;
+
+  public synchronized Blob intern(String content) {
+    return intern(digest(content), content);
+  }
+
+  /** Interns a text whose digest is already known, e.g. from a logged message. */
+  public synchronized Blob intern(String digest, String content) {
+    WeakReference<String> stored = blobs.get(digest);
+    String existing = stored == null ? null : stored.get();
+    if (existing != null) {
+      return new Blob(digest, existing);
+    }
+    // Entries of collected blobs are swept now and then, not tracked with a reference queue
+    if (++insertions % SWEEP_INTERVAL == 0) {
+      blobs.values().removeIf(reference -> reference.get() == null);
+      coldBlobs.values().removeIf(reference -> reference.get() == null);
+    }
+    blobs.put(digest, new WeakReference<>(content));
+    return new Blob(digest, content);
+  }
+
+  /** The compressed form of a blob, deflated only if no compressed message holds it yet. */
+  synchronized ColdBlob freeze(String digest, String content) {
+    WeakReference<ColdBlob> stored = coldBlobs.get(digest);
+    ColdBlob existing = stored == null ? null : stored.get();
+    if (existing != null) {
+      return existing;
+    }
+    ColdBlob cold = ColdBlob.of(digest, content);
+    coldBlobs.put(digest, new WeakReference<>(cold));
+    return cold;
+  }
+
+  /** The text of a cold blob, shared with every message still holding it uncompressed. */
+  synchronized String thaw(ColdBlob cold) {
+    WeakReference<String> stored = blobs.get(cold.digest());
+    String existing = stored == null ? null : stored.get();
+    if (existing != null) {
+      return existing;
+    }
+    String content = cold.inflate();
+    blobs.put(cold.digest(), new WeakReference<>(content));
+    return content;
+  }
+
+  /** The number of distinct texts still in use. */
+  public synchronized int size() {
+    blobs.values().removeIf(reference -> reference.get() == null);
+    return blobs.size();
+  }
+
+  static String digest(String content) {
+    try {
+      MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(sha256.digest(content.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+}
@@ -1,8 +1,25 @@
 package com.larseckart.core.domain;
 
 import java.io.Serializable;
+import java.util.List;
 
-public record ChatMessage(Role role, String content) implements Serializable {
+/**
+ * A message of the conversation. {@code content} is the plain text of the message, {@code blocks}
+ * its full structure including tool uses and tool results.
+ */
+public record ChatMessage(Role role, String content, List<MessageBlock> blocks)
+    implements Serializable {
+
+  public ChatMessage {
+    blocks = List.copyOf(blocks);
+  }
+
+  public ChatMessage(Role role, String content) {
+    this(
+        role,
+        content,
+        content == null || content.isEmpty() ? List.of() : List.of(new MessageBlock.Text(content)));
+  }
 
   public static ChatMessage user(String content) {
     return new ChatMessage(Role.USER, content);
@@ -11,4 +28,38 @@ public record ChatMessage(Role role, String content) implements Serializable {
   public static ChatMessage assistant(String content) {
     return new ChatMessage(Role.ASSISTANT, content);
   }
+
+  /**
+   * Creates a message from structured blocks, its content being the text of its text blocks. The
+   * text of a single text block is used as it is, so the message holds it once.
+   */
+  public static ChatMessage of(Role role, List<MessageBlock> blocks) {
+    String first = null;
+    StringBuilder joined = null;
+    for (MessageBlock block : blocks) {
+      if (block instanceof MessageBlock.Text textBlock) {
+        if (first == null) {
+          first = textBlock.text();
+        } else {
+          if (joined == null) {
+            joined = new StringBuilder(first);
+          }
+          joined.append(textBlock.text());
+        }
+      }
+    }
+    String content = joined != null ? joined.toString() : first;
+    return new ChatMessage(role, content == null ? "" : content, blocks);
+  }
+
+  /** Whether this message only answers tool uses, as opposed to starting a new turn. */
+  public boolean isToolResults() {
+    return !blocks.isEmpty()
+        && blocks.stream().allMatch(block -> block instanceof MessageBlock.ToolResult);
+  }
+
+  /** Creates the user message that answers the tool uses of the previous assistant message. */
+  public static ChatMessage toolResults(List<MessageBlock.ToolResult> results) {
+    return new ChatMessage(Role.USER, "", List.copyOf(results));
+  }
 }
@@ -0,0 +1,39 @@
+package com.larseckart.core.domain;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+
+/** A tool output kept deflated for the compressed messages using it, see {@link BlobStore}. */
+final class ColdBlob implements Serializable {
+
+  // Array header, fields and object header of this wrapper
+  private static final int OVERHEAD_BYTES = 48;
+
+  private final String digest;
+  private final byte[] deflated;
+  private final int encodedLength;
+
+  private ColdBlob(String digest, byte[] deflated, int encodedLength) {
+    this.digest = digest;
+    this.deflated = deflated;
+    this.encodedLength = encodedLength;
+  }
+
+  static ColdBlob of(String digest, String content) {
+    byte[] encoded = content.getBytes(StandardCharsets.UTF_8);
+    return new ColdBlob(digest, CompressedMessage.deflate(encoded), encoded.length);
+  }
+
+  String digest() {
+    return digest;
+  }
+
+  String inflate() {
+    return new String(CompressedMessage.inflate(deflated, encodedLength), StandardCharsets.UTF_8);
+  }
+
+  /** Approximate heap size in bytes. */
+  long bytes() {
+    return deflated.length + OVERHEAD_BYTES;
+  }
+}
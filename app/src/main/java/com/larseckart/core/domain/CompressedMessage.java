@@ -0,0 +1,140 @@
+package com.larseckart.core.domain;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A message kept deflated in its {@link MessageCodec} form, for turns that are rarely read. Tool
+ * outputs interned in a {@link BlobStore} are encoded by their digest only; their text is held in
+ * a shared {@link ColdBlob}, so an output repeated across old turns is compressed and kept once.
+ */
+final class CompressedMessage implements Serializable {
+
+  // Array header, length field and object header of this wrapper
+  private static final int OVERHEAD_BYTES = 32;
+
+  private final byte[] deflated;
+  private final int encodedLength;
+  private final List<ColdBlob> blobs;
+
+  private CompressedMessage(byte[] deflated, int encodedLength, List<ColdBlob> blobs) {
+    this.deflated = deflated;
+    this.encodedLength = encodedLength;
+    this.blobs = blobs;
+  }
+
+  static CompressedMessage of(ChatMessage message) {
+    return of(message, null);
+  }
+
+  /** Compresses the message, keeping its interned tool outputs as cold blobs of the store. */
+  static CompressedMessage of(ChatMessage message, BlobStore store) {
+    List<ColdBlob> blobs = new ArrayList<>();
+    ChatMessage encodable = message;
+    if (store != null && message.isToolResults()) {
+      List<MessageBlock> blocks = new ArrayList<>(message.blocks().size());
+      for (MessageBlock block : message.blocks()) {
+        MessageBlock.ToolResult result = (MessageBlock.ToolResult) block;
+        if (result.digest() != null && result.content() != null) {
+          blobs.add(store.freeze(result.digest(), result.content()));
+          result =
+              new MessageBlock.ToolResult(
+                  result.toolUseId(), result.toolName(), null, result.isError(), result.digest());
+        }
+        blocks.add(result);
+      }
+      if (!blobs.isEmpty()) {
+        encodable = new ChatMessage(message.role(), message.content(), blocks);
+      }
+    }
+    byte[] encoded = MessageCodec.encode(encodable);
+    return new CompressedMessage(deflate(encoded), encoded.length, List.copyOf(blobs));
+  }
+
+  ChatMessage inflate() {
+    return inflate(null);
+  }
+
+  /** Inflates the message, taking the text of its cold blobs from the store's interned ones. */
+  ChatMessage inflate(BlobStore store) {
+    ChatMessage message = MessageCodec.decode(inflate(deflated, encodedLength));
+    if (blobs.isEmpty()) {
+      return message;
+    }
+    List<MessageBlock> blocks = new ArrayList<>(message.blocks().size());
+    for (MessageBlock block : message.blocks()) {
+      if (block instanceof MessageBlock.ToolResult result && result.content() == null) {
+        ColdBlob blob = blobOf(result.digest());
+        block =
+            new MessageBlock.ToolResult(
+                result.toolUseId(),
+                result.toolName(),
+                store == null ? blob.inflate() : store.thaw(blob),
+                result.isError(),
+                result.digest());
+      }
+      blocks.add(block);
+    }
+    return new ChatMessage(message.role(), message.content(), blocks);
+  }
+
+  /** Approximate heap size in bytes, counting shared cold blobs with every message using them. */
+  long bytes() {
+    long bytes = deflated.length + OVERHEAD_BYTES;
+    for (ColdBlob blob : blobs) {
+      bytes += blob.bytes();
+    }
+    return bytes;
+  }
+
+  private ColdBlob blobOf(String digest) {
+    for (ColdBlob blob : blobs) {
+      if (blob.digest().equals(digest)) {
+        return blob;
+      }
+    }
+    throw new IllegalStateException("Compressed message lacks the output " + digest);
+  }
+
+  static byte[] deflate(byte[] encoded) {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(encoded);
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, encoded.length / 4));
+      byte[] buffer = new byte[8192];
+      while (!deflater.finished()) {
+        out.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return out.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  static byte[] inflate(byte[] deflated, int encodedLength) {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(deflated);
+      byte[] encoded = new byte[encodedLength];
+      int length = 0;
+      while (length < encodedLength && !inflater.finished()) {
+        int inflated = inflater.inflate(encoded, length, encodedLength - length);
+        if (inflated == 0 && inflater.needsInput()) {
+          throw new IllegalStateException("Truncated compressed data");
+        }
+        length += inflated;
+      }
+      return encoded;
+    } catch (DataFormatException e) {
+      throw new IllegalStateException("Corrupt compressed data", e);
+    } finally {
+      inflater.end();
+    }
+  }
+}
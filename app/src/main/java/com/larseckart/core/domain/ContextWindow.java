@@ -0,0 +1,17 @@
+package com.larseckart.core.domain;
+
+import java.util.List;
+
+/**
+ * The part of a conversation sent with a request: its most recent whole turns.
+ *
+ * @param estimatedTokens raw estimate of the messages, see {@link TokenEstimator}
+ * @param omittedMessages how many older messages did not fit
+ */
+public record ContextWindow(
+    List<ChatMessage> messages, long estimatedTokens, int omittedMessages) {
+
+  public ContextWindow {
+    messages = PersistentVector.copyOf(messages);
+  }
+}
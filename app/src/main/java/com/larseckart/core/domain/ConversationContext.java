@@ -1,29 +1,361 @@
 package com.larseckart.core.domain;
 
 import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
 
+/**
+ * The messages of one conversation. A raw token estimate is kept as a running sum per message, so
+ * the size of the whole history or of any recent part of it is known without counting again. The
+ * messages are kept in a {@link PersistentVector}, so the history handed to a request is a snapshot
+ * that costs nothing to take and is not affected by the messages added later. For the same reason
+ * a conversation can be {@linkplain #fork() forked}: the fork shares everything said so far with
+ * its parent and both grow independently from there. Large tool outputs are interned in a {@link
+ * BlobStore} shared with the forks, so repeated equal outputs are held once, in either tier.
+ *
+ * <p>Only the most recent turns are kept as they are. Older messages are compressed as they fall
+ * out of that hot tier and inflated again only when a caller actually reads them, as long sessions
+ * mostly resend their recent turns while the older ones sit idle. Once requests are sent as
+ * {@linkplain #getStableWindow(long) stable windows}, the turns of the window are resent with every
+ * request, so they stay hot as well and only the turns before its start are compressed.
+ */
 public class ConversationContext implements Serializable {
 
-  private final List<ChatMessage> history = new ArrayList<>();
+  // Outputs of this size and up are interned; smaller ones cost less than their digest
+  static final int BLOB_MIN_CHARS = 1024;
+  public static final int DEFAULT_HOT_TURNS = 8;
+
+  // The messages before index cold.size() are compressed, the others are in hot
+  private PersistentVector<CompressedMessage> cold;
+  private PersistentVector<ChatMessage> hot;
+  private long coldBytes;
+  // Raw estimate of the messages before each index, with the total at the end
+  private PersistentVector<Long> tokensBefore;
+  // Indexes of the user messages that start a turn, i.e. that are not tool results
+  private PersistentVector<Integer> turnStarts;
+  private final BlobStore blobs;
+  private final int hotTurns;
+  private HistoryListener listener;
+  // First message of the window sent with the last request, see getStableWindow
+  private int windowStart;
+  // Whether requests are sent as stable windows, which keeps the turns of the window hot
+  private boolean windowed;
+
+  public ConversationContext() {
+    this(DEFAULT_HOT_TURNS);
+  }
+
+  /** A conversation that keeps its last {@code hotTurns} turns uncompressed. */
+  public ConversationContext(int hotTurns) {
+    this(
+        PersistentVector.empty(),
+        PersistentVector.empty(),
+        0,
+        PersistentVector.<Long>empty().append(0L),
+        PersistentVector.empty(),
+        new BlobStore(),
+        hotTurns);
+    if (hotTurns < 1) {
+      throw new IllegalArgumentException("At least one turn must be kept hot, was " + hotTurns);
+    }
+  }
+
+  private ConversationContext(
+      PersistentVector<CompressedMessage> cold,
+      PersistentVector<ChatMessage> hot,
+      long coldBytes,
+      PersistentVector<Long> tokensBefore,
+      PersistentVector<Integer> turnStarts,
+      BlobStore blobs,
+      int hotTurns) {
+    this.cold = cold;
+    this.hot = hot;
+    this.coldBytes = coldBytes;
+    this.tokensBefore = tokensBefore;
+    this.turnStarts = turnStarts;
+    this.blobs = blobs;
+    this.hotTurns = hotTurns;
+  }
 
   public void addUserMessage(ChatMessage user) {
-    history.add(user);
+    addMessage(user);
   }
 
   public void addAssistantMessage(ChatMessage assistant) {
-    history.add(assistant);
+    addMessage(assistant);
+  }
+
+  public void addMessage(ChatMessage message) {
+    boolean startsTurn = message.role() == Role.USER && !message.isToolResults();
+    if (startsTurn) {
+      turnStarts = turnStarts.append(size());
+    }
+    ChatMessage interned = internToolOutputs(message);
+    hot = hot.append(interned);
+    tokensBefore =
+        tokensBefore.append(tokensBefore.getLast() + TokenEstimator.rawEstimate(message));
+    if (startsTurn) {
+      compressColdTurns();
+    }
+    if (listener != null) {
+      listener.appended(interned);
+    }
+  }
+
+  /**
+   * Sets the listener told about every later change of the history. Forks do not inherit it.
+   *
+   * @param listener the listener, or null for none
+   */
+  public void setHistoryListener(HistoryListener listener) {
+    this.listener = listener;
+  }
+
+  /** A new conversation that continues from this point, sharing all messages so far. */
+  public ConversationContext fork() {
+    ConversationContext fork =
+        new ConversationContext(cold, hot, coldBytes, tokensBefore, turnStarts, blobs, hotTurns);
+    fork.windowStart = windowStart;
+    fork.windowed = windowed;
+    return fork;
+  }
+
+  /**
+   * A new conversation that continues after the first {@code turns} turns of this one, e.g. to try
+   * a different answer to the turn after them. The kept turns are shared, not copied.
+   */
+  public ConversationContext forkAtTurn(int turns) {
+    if (turns < 0 || turns > turnStarts.size()) {
+      throw new IllegalArgumentException(
+          "Cannot fork at turn " + turns + " of a conversation with " + turnStarts.size());
+    }
+    int end = turns == turnStarts.size() ? size() : turnStarts.get(turns);
+    PersistentVector<CompressedMessage> forkCold = cold;
+    PersistentVector<ChatMessage> forkHot = hot.take(Math.max(0, end - cold.size()));
+    long forkColdBytes = coldBytes;
+    if (end < cold.size()) {
+      forkCold = cold.take(end);
+      forkColdBytes = 0;
+      for (CompressedMessage message : forkCold) {
+        forkColdBytes += message.bytes();
+      }
+    }
+    ConversationContext fork =
+        new ConversationContext(
+            forkCold,
+            forkHot,
+            forkColdBytes,
+            tokensBefore.take(end + 1),
+            turnStarts.take(turns),
+            blobs,
+            hotTurns);
+    fork.windowStart = windowStart <= end ? windowStart : 0;
+    fork.windowed = windowed;
+    return fork;
+  }
+
+  /** The number of turns, i.e. of user messages that are not tool results. */
+  public int turnCount() {
+    return turnStarts.size();
   }
 
+  /**
+   * A read-only snapshot of the history, taken in constant time. Compressed messages are inflated
+   * each time they are read.
+   */
   public List<ChatMessage> getHistory() {
-    return List.copyOf(history);
+    return new Snapshot(cold, hot, blobs);
+  }
+
+  /** Approximate heap held by the messages, by tier. */
+  public MemoryUsage memoryUsage() {
+    long hotBytes = 0;
+    for (ChatMessage message : hot) {
+      hotBytes += MemoryUsage.bytesOf(message);
+    }
+    return new MemoryUsage(hot.size(), hotBytes, cold.size(), coldBytes);
+  }
+
+  /** Raw token estimate of the whole history. */
+  public long estimatedTokens() {
+    return tokensBefore.getLast();
+  }
+
+  /**
+   * Returns the most recent whole turns that fit into the raw token budget. Turns are kept whole,
+   * so every tool use stays together with its result. The latest turn is always included, even if
+   * it is larger than the budget on its own.
+   */
+  public ContextWindow getRecentHistory(long tokenBudget) {
+    if (size() == 0) {
+      return new ContextWindow(List.of(), 0, 0);
+    }
+    int start = 0;
+    if (estimatedTokens() > tokenBudget && !turnStarts.isEmpty()) {
+      start = firstTurnWithin(tokenBudget);
+    }
+    return new ContextWindow(
+        messagesFrom(start), estimatedTokens() - tokensBefore.get(start), start);
+  }
+
+  /**
+   * Returns the window to send with the next request. Its start stays where it was for the last
+   * request as long as the history from there fits into the raw token budget, so every request
+   * repeats the previous one as its prefix and can read it from the prompt cache. Once it does not
+   * fit, the oldest whole turns are left out in one batch, until the rest fits into half the
+   * budget, which leaves room for the turns to come before the start has to move again.
+   */
+  public ContextWindow getStableWindow(long tokenBudget) {
+    windowed = true;
+    if (size() == 0) {
+      return new ContextWindow(List.of(), 0, 0);
+    }
+    int start = windowStart;
+    if (estimatedTokens() - tokensBefore.get(start) > tokenBudget && !turnStarts.isEmpty()) {
+      start = Math.max(start, firstTurnWithin(tokenBudget / 2));
+      windowStart = start;
+    }
+    return new ContextWindow(
+        messagesFrom(start), estimatedTokens() - tokensBefore.get(start), start);
+  }
+
+  /** Index of the first message of the last {@code turns} turns, 0 if there are not that many. */
+  public int startOfRecentTurns(int turns) {
+    if (turns <= 0) {
+      return size();
+    }
+    return turns >= turnStarts.size() ? 0 : turnStarts.get(turnStarts.size() - turns);
+  }
+
+  /**
+   * Replaces the oldest messages with a shorter version of them, e.g. a summary. Nothing changes
+   * unless the history still starts with messages equal to {@code prefix}.
+   *
+   * @return whether the prefix was replaced
+   */
+  public boolean replacePrefix(List<ChatMessage> prefix, List<ChatMessage> replacement) {
+    if (prefix.size() > size()) {
+      return false;
+    }
+    List<ChatMessage> history = getHistory();
+    for (int i = 0; i < prefix.size(); i++) {
+      if (!Objects.equals(history.get(i), prefix.get(i))) {
+        return false;
+      }
+    }
+
+    List<ChatMessage> rest = messagesFrom(prefix.size());
+    HistoryListener notified = listener;
+    listener = null;
+    cold = PersistentVector.empty();
+    hot = PersistentVector.empty();
+    coldBytes = 0;
+    tokensBefore = tokensBefore.take(1);
+    turnStarts = PersistentVector.empty();
+    windowStart = 0;
+    replacement.forEach(this::addMessage);
+    rest.forEach(this::addMessage);
+    listener = notified;
+    if (listener != null) {
+      listener.replaced(getHistory());
+    }
+    return true;
+  }
+
+  private int size() {
+    return cold.size() + hot.size();
+  }
+
+  /** The messages from {@code start} on, sharing the hot ones and inflating the cold ones. */
+  private PersistentVector<ChatMessage> messagesFrom(int start) {
+    if (start >= cold.size()) {
+      return hot.drop(start - cold.size());
+    }
+    PersistentVector<ChatMessage> messages = PersistentVector.empty();
+    for (int i = start; i < cold.size(); i++) {
+      messages = messages.append(cold.get(i).inflate(blobs));
+    }
+    for (ChatMessage message : hot) {
+      messages = messages.append(message);
+    }
+    return messages;
+  }
+
+  /**
+   * Moves the turns before the last {@code hotTurns} ones to the compressed tier, except those in
+   * the stable window, which the next request sends again.
+   */
+  private void compressColdTurns() {
+    int end = startOfRecentTurns(hotTurns);
+    if (windowed) {
+      end = Math.min(end, windowStart);
+    }
+    int moving = end - cold.size();
+    if (moving <= 0) {
+      return;
+    }
+    for (ChatMessage message : hot.subList(0, moving)) {
+      CompressedMessage compressed = CompressedMessage.of(message, blobs);
+      cold = cold.append(compressed);
+      coldBytes += compressed.bytes();
+    }
+    // Copied rather than dropped, so the tree no longer holds on to the moved messages
+    hot = PersistentVector.copyOf(new ArrayList<>(hot.subList(moving, hot.size())));
+  }
+
+  // The suffix from a turn start shrinks as the start moves on, so the first fitting one is found
+  // by binary search
+  private int firstTurnWithin(long tokenBudget) {
+    int low = 0;
+    int high = turnStarts.size() - 1;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (estimatedTokens() - tokensBefore.get(turnStarts.get(middle)) <= tokenBudget) {
+        high = middle;
+      } else {
+        low = middle + 1;
+      }
+    }
+    return turnStarts.get(low);
+  }
+
+  private ChatMessage internToolOutputs(ChatMessage message) {
+    if (!message.isToolResults()) {
+      return message;
+    }
+    List<MessageBlock> blocks = new ArrayList<>(message.blocks().size());
+    boolean interned = false;
+    for (MessageBlock block : message.blocks()) {
+      MessageBlock.ToolResult result = (MessageBlock.ToolResult) block;
+      if (result.content() != null && result.content().length() >= BLOB_MIN_CHARS) {
+        // Results read back from a log already carry their digest, which is reused
+        BlobStore.Blob blob =
+            result.digest() == null
+                ? blobs.intern(result.content())
+                : blobs.intern(result.digest(), result.content());
+        if (blob.content() != result.content() || result.digest() == null) {
+          result =
+              new MessageBlock.ToolResult(
+                  result.toolUseId(),
+                  result.toolName(),
+                  blob.content(),
+                  result.isError(),
+                  blob.digest());
+          interned = true;
+        }
+      }
+      blocks.add(result);
+    }
+    return interned ? new ChatMessage(message.role(), message.content(), blocks) : message;
   }
 
   @Override
   public String toString() {
     StringBuilder builder = new StringBuilder();
-    for (ChatMessage message : history) {
+    for (ChatMessage message : getHistory()) {
       String roleName = message.role().name().toLowerCase();
       builder
           .append(roleName.substring(0, 1).toUpperCase())
@@ -34,4 +366,33 @@ public class ConversationContext implements Serializable {
     }
     return builder.toString();
   }
+
+  /** An immutable view of the two tiers as they were when it was taken. */
+  private static final class Snapshot extends AbstractList<ChatMessage> implements RandomAccess {
+    private final PersistentVector<CompressedMessage> cold;
+    private final PersistentVector<ChatMessage> hot;
+    private final BlobStore blobs;
+
+    private Snapshot(
+        PersistentVector<CompressedMessage> cold,
+        PersistentVector<ChatMessage> hot,
+        BlobStore blobs) {
+      this.cold = cold;
+      this.hot = hot;
+      this.blobs = blobs;
+    }
+
+    @Override
+    public ChatMessage get(int index) {
+      if (index < 0 || index >= size()) {
+        throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size());
+      }
+      return index < cold.size() ? cold.get(index).inflate(blobs) : hot.get(index - cold.size());
+    }
+
+    @Override
+    public int size() {
+      return cold.size() + hot.size();
+    }
+  }
 }
@@ -0,0 +1,13 @@
+package com.larseckart.core.domain;
+
+import java.util.List;
+
+/** Told about every change to the history of a {@link ConversationContext}, e.g. to persist it. */
+public interface HistoryListener {
+
+  /** A message was added at the end of the history. */
+  void appended(ChatMessage message);
+
+  /** The history was rewritten, e.g. when older turns were replaced by a summary. */
+  void replaced(List<ChatMessage> history);
+}
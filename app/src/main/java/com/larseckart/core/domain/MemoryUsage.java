@@ -0,0 +1,52 @@
+package com.larseckart.core.domain;
+
+/**
+ * Approximate heap held by the messages of a conversation, split into the recent turns kept as
+ * they are and the older ones kept compressed. Interned tool outputs are counted with every
+ * message using them, so the figures are an upper bound.
+ */
+public record MemoryUsage(int hotMessages, long hotBytes, int coldMessages, long coldBytes) {
+
+  public static final MemoryUsage NONE = new MemoryUsage(0, 0, 0, 0);
+
+  // Object headers and fields of a message, its block list and a block
+  private static final int MESSAGE_OVERHEAD_BYTES = 64;
+  private static final int BLOCK_OVERHEAD_BYTES = 48;
+
+  public long totalBytes() {
+    return hotBytes + coldBytes;
+  }
+
+  public MemoryUsage plus(MemoryUsage other) {
+    return new MemoryUsage(
+        hotMessages + other.hotMessages,
+        hotBytes + other.hotBytes,
+        coldMessages + other.coldMessages,
+        coldBytes + other.coldBytes);
+  }
+
+  /** Approximate heap size of a message, counting two bytes per character. */
+  static long bytesOf(ChatMessage message) {
+    long bytes = MESSAGE_OVERHEAD_BYTES;
+    for (MessageBlock block : message.blocks()) {
+      bytes +=
+          BLOCK_OVERHEAD_BYTES
+              + switch (block) {
+                case MessageBlock.Text text -> charBytes(text.text());
+                case MessageBlock.ToolUse toolUse ->
+                    charBytes(toolUse.id())
+                        + charBytes(toolUse.name())
+                        + charBytes(String.valueOf(toolUse.input()));
+                case MessageBlock.ToolResult result ->
+                    charBytes(result.toolUseId())
+                        + charBytes(result.toolName())
+                        + charBytes(result.content());
+              };
+    }
+    return bytes;
+  }
+
+  private static long charBytes(String text) {
+    return text == null ? 0 : 2L * text.length();
+  }
+}
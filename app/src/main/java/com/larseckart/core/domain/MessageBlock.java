@@ -0,0 +1,33 @@
+package com.larseckart.core.domain;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.Serializable;
+
+/**
+ * A piece of structured message content. Tool results refer to the tool use they answer by id, so
+ * a conversation with tool calls can be replayed to a provider exactly as it happened.
+ */
+public sealed interface MessageBlock extends Serializable {
+
+  record Text(String text) implements MessageBlock {}
+
+  record ToolUse(String id, String name, JsonNode input) implements MessageBlock {}
+
+  /**
+   * The output of a tool. Large outputs are kept in a {@link BlobStore}; {@code digest} is their
+   * address there, and null for outputs that are not stored.
+   */
+  record ToolResult(
+      String toolUseId, String toolName, String content, boolean isError, String digest)
+      implements MessageBlock {
+
+    public ToolResult(String toolUseId, String toolName, String content, boolean isError) {
+      this(toolUseId, toolName, content, isError, null);
+    }
+
+    /** The same result with other content, e.g. a short note in place of a stale output. */
+    public ToolResult withContent(String replacement) {
+      return new ToolResult(toolUseId, toolName, replacement, isError, null);
+    }
+  }
+}
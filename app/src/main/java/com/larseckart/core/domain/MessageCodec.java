@@ -0,0 +1,139 @@
+package com.larseckart.core.domain;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compact binary form of {@link ChatMessage}: the role and every block, with strings as
+ * length-prefixed UTF-8 and tool inputs as JSON text. Much smaller and faster than Java
+ * serialization, and independent of the class layout. The content is not written, it is the text
+ * of the text blocks and is derived from them again when reading, so it is not held twice.
+ */
+public final class MessageCodec {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final byte TEXT = 0;
+  private static final byte TOOL_USE = 1;
+  private static final byte TOOL_RESULT = 2;
+  private static final int NULL_LENGTH = -1;
+
+  private MessageCodec() {}
+
+  public static byte[] encode(ChatMessage message) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      write(message, out);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  public static ChatMessage decode(byte[] encoded) {
+    try {
+      return read(new DataInputStream(new ByteArrayInputStream(encoded)));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Invalid encoded message", e);
+    }
+  }
+
+  public static void write(ChatMessage message, DataOutput out) throws IOException {
+    out.writeByte(message.role().ordinal());
+    out.writeInt(message.blocks().size());
+    for (MessageBlock block : message.blocks()) {
+      switch (block) {
+        case MessageBlock.Text text -> {
+          out.writeByte(TEXT);
+          writeString(text.text(), out);
+        }
+        case MessageBlock.ToolUse toolUse -> {
+          out.writeByte(TOOL_USE);
+          writeString(toolUse.id(), out);
+          writeString(toolUse.name(), out);
+          writeString(toolUse.input() == null ? null : toolUse.input().toString(), out);
+        }
+        case MessageBlock.ToolResult result -> {
+          out.writeByte(TOOL_RESULT);
+          writeString(result.toolUseId(), out);
+          writeString(result.toolName(), out);
+          writeString(result.content(), out);
+          out.writeBoolean(result.isError());
+          writeString(result.digest(), out);
+        }
+      }
+    }
+  }
+
+  public static ChatMessage read(DataInput in) throws IOException {
+    int role = in.readUnsignedByte();
+    if (role >= Role.values().length) {
+      throw new IOException("Unknown role " + role);
+    }
+    int blockCount = in.readInt();
+    if (blockCount < 0) {
+      throw new IOException("Invalid block count " + blockCount);
+    }
+    List<MessageBlock> blocks = new ArrayList<>(Math.min(blockCount, 64));
+    for (int i = 0; i < blockCount; i++) {
+      byte tag = in.readByte();
+      blocks.add(
+          switch (tag) {
+            case TEXT -> new MessageBlock.Text(readString(in));
+            case TOOL_USE -> new MessageBlock.ToolUse(readString(in), readString(in), readJson(in));
+            case TOOL_RESULT ->
+                new MessageBlock.ToolResult(
+                    readString(in),
+                    readString(in),
+                    readString(in),
+                    in.readBoolean(),
+                    readString(in));
+            default -> throw new IOException("Unknown block type " + tag);
+          });
+    }
+    return ChatMessage.of(Role.values()[role], blocks);
+  }
+
+  private static void writeString(String value, DataOutput out) throws IOException {
+    if (value == null) {
+      out.writeInt(NULL_LENGTH);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInput in) throws IOException {
+    int length = in.readInt();
+    if (length == NULL_LENGTH) {
+      return null;
+    }
+    if (length < 0) {
+      throw new IOException("Invalid string length " + length);
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static JsonNode readJson(DataInput in) throws IOException {
+    String json = readString(in);
+    try {
+      return json == null ? null : MAPPER.readTree(json);
+    } catch (JsonProcessingException e) {
+      throw new IOException("Invalid tool input", e);
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package com.larseckart.core.domain;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list that is cheap to append to. Elements live in a tree of 32-wide nodes plus a
+ * tail of up to 32 elements; appending copies the tail, or the path to the rightmost leaf once the
+ * tail is full, and shares everything else with the original. A history can so hand out snapshots
+ * in O(1) and grow without ever copying the messages it already has.
+ *
+ * <p>All mutators of {@link java.util.List} throw {@link UnsupportedOperationException}.
+ */
+public final class PersistentVector<E> extends AbstractList<E>
+    implements RandomAccess, Serializable {
+
+  private static final int BITS = 5;
+  private static final int WIDTH = 1 << BITS;
+  private static final int MASK = WIDTH - 1;
+  private static final Object[] NO_ELEMENTS = new Object[0];
+  private static final PersistentVector<?> EMPTY =
+      new PersistentVector<>(0, 0, BITS, NO_ELEMENTS, NO_ELEMENTS);
+
+  // Leading elements hidden by drop(); they stay in the tree so the rest is still shared
+  private final int offset;
+  private final int count;
+  private final int shift;
+  private final Object[] root;
+  private final Object[] tail;
+
+  private PersistentVector(int offset, int count, int shift, Object[] root, Object[] tail) {
+    this.offset = offset;
+    this.count = count;
+    this.shift = shift;
+    this.root = root;
+    this.tail = tail;
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <E> PersistentVector<E> empty() {
+    return (PersistentVector<E>) EMPTY;
+  }
+
+  /** Returns the elements as a vector, without copying if they already are one. */
+  @SuppressWarnings("unchecked")
+  public static <E> PersistentVector<E> copyOf(Collection<? extends E> elements) {
+    if (elements instanceof PersistentVector<?> vector) {
+      return (PersistentVector<E>) vector;
+    }
+    PersistentVector<E> vector = empty();
+    for (E element : elements) {
+      vector = vector.append(element);
+    }
+    return vector;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E get(int index) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size());
+    }
+    int position = offset + index;
+    return (E) leafFor(position)[position & MASK];
+  }
+
+  @Override
+  public int size() {
+    return count - offset;
+  }
+
+  /** A new vector with the element added at the end; this one is left unchanged. */
+  public PersistentVector<E> append(E element) {
+    if (count - tailOffset() < WIDTH) {
+      Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+      newTail[tail.length] = element;
+      return new PersistentVector<>(offset, count + 1, shift, root, newTail);
+    }
+
+    // The tail is full: it becomes a leaf of the tree and a new tail starts
+    Object[] newRoot;
+    int newShift = shift;
+    if ((count >>> BITS) > (1 << shift)) {
+      newRoot = new Object[] {root, newPath(shift, tail)};
+      newShift += BITS;
+    } else {
+      newRoot = pushTail(shift, root, tail);
+    }
+    return new PersistentVector<>(offset, count + 1, newShift, newRoot, new Object[] {element});
+  }
+
+  /** A vector without the first {@code n} elements, sharing all others with this one. */
+  public PersistentVector<E> drop(int n) {
+    if (n < 0 || n > size()) {
+      throw new IndexOutOfBoundsException("Cannot drop " + n + " of " + size() + " elements");
+    }
+    return n == 0 ? this : new PersistentVector<>(offset + n, count, shift, root, tail);
+  }
+
+  /**
+   * A vector of the first {@code n} elements, sharing the tree with this one. Elements beyond
+   * {@code n} stay referenced by the shared tree until appends to the new vector replace them.
+   */
+  public PersistentVector<E> take(int n) {
+    if (n < 0 || n > size()) {
+      throw new IndexOutOfBoundsException("Cannot take " + n + " of " + size() + " elements");
+    }
+    if (n == size()) {
+      return this;
+    }
+    if (n == 0) {
+      return empty();
+    }
+    int newCount = offset + n;
+    int newTailOffset = tailOffset(newCount);
+    Object[] newTail = Arrays.copyOfRange(leafFor(newTailOffset), 0, newCount - newTailOffset);
+    return new PersistentVector<>(offset, newCount, shift, root, newTail);
+  }
+
+  private int tailOffset() {
+    return tailOffset(count);
+  }
+
+  private static int tailOffset(int count) {
+    return count < WIDTH ? 0 : ((count - 1) >>> BITS) << BITS;
+  }
+
+  private Object[] leafFor(int position) {
+    if (position >= tailOffset()) {
+      return tail;
+    }
+    Object[] node = root;
+    for (int level = shift; level > 0; level -= BITS) {
+      node = (Object[]) node[(position >>> level) & MASK];
+    }
+    return node;
+  }
+
+  private Object[] pushTail(int level, Object[] parent, Object[] leaf) {
+    int child = ((count - 1) >>> level) & MASK;
+    Object[] copy = Arrays.copyOf(parent, Math.max(parent.length, child + 1));
+    if (level == BITS) {
+      copy[child] = leaf;
+    } else {
+      copy[child] =
+          child < parent.length
+              ? pushTail(level - BITS, (Object[]) parent[child], leaf)
+              : newPath(level - BITS, leaf);
+    }
+    return copy;
+  }
+
+  private static Object[] newPath(int level, Object[] leaf) {
+    return level == 0 ? leaf : new Object[] {newPath(level - BITS, leaf)};
+  }
+}
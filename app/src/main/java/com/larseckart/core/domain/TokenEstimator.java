@@ -0,0 +1,61 @@
+package com.larseckart.core.domain;
+
+/**
+ * Estimates token counts locally, without a round trip to the provider. Raw estimates count about
+ * four characters per token plus a small overhead per message; they are deterministic, so they can
+ * be stored and summed up. A calibration factor learned from the usage the provider reports turns
+ * them into estimates for the provider's actual tokenizer.
+ */
+public class TokenEstimator {
+
+  private static final int CHARS_PER_TOKEN = 4;
+  // Role markers and block framing the provider adds around every message
+  private static final int MESSAGE_OVERHEAD = 4;
+  // Weight of the latest observation, so the factor follows drift without jumping around
+  private static final double SMOOTHING = 0.2;
+  private static final double MIN_FACTOR = 0.25;
+  private static final double MAX_FACTOR = 4;
+
+  private volatile double factor = 1;
+
+  public static long rawEstimate(String text) {
+    return text == null ? 0 : (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+  }
+
+  public static long rawEstimate(ChatMessage message) {
+    long tokens = MESSAGE_OVERHEAD;
+    for (MessageBlock block : message.blocks()) {
+      tokens +=
+          switch (block) {
+            case MessageBlock.Text text -> rawEstimate(text.text());
+            case MessageBlock.ToolUse toolUse ->
+                rawEstimate(toolUse.name()) + rawEstimate(String.valueOf(toolUse.input()));
+            case MessageBlock.ToolResult result -> rawEstimate(result.content());
+          };
+    }
+    return tokens;
+  }
+
+  /** Converts a raw estimate into provider tokens. */
+  public long toTokens(long rawEstimate) {
+    return Math.round(rawEstimate * factor);
+  }
+
+  /** Converts a provider token budget into the raw estimate that fills it. */
+  public long toRawEstimate(long tokens) {
+    return (long) (tokens / factor);
+  }
+
+  /** Learns from a request whose raw estimate and actual input token count are both known. */
+  public synchronized void calibrate(long rawEstimate, long actualTokens) {
+    if (rawEstimate <= 0 || actualTokens <= 0) {
+      return;
+    }
+    double observed = Math.clamp((double) actualTokens / rawEstimate, MIN_FACTOR, MAX_FACTOR);
+    factor = factor + SMOOTHING * (observed - factor);
+  }
+
+  public double factor() {
+    return factor;
+  }
+}
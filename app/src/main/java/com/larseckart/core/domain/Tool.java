@@ -1,6 +1,9 @@
 package com.larseckart.core.domain;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
 
 /**
  * Represents a tool that can be used by the AI agent to perform specific tasks. Tools encapsulate
@@ -51,4 +54,37 @@ public interface Tool {
    * @throws IllegalArgumentException if parameters are null or do not conform to the schema
    */
   void validate(JsonNode parameters);
+
+  /**
+   * Returns whether this tool only reads state. Read-only tools may run concurrently with each
+   * other and with mutating tools that touch unrelated paths.
+   *
+   * @return true if executing this tool never modifies anything, false by default
+   */
+  default boolean isReadOnly() {
+    return false;
+  }
+
+  /**
+   * Returns the filesystem path an invocation with the given parameters operates on. Calls on
+   * overlapping paths are ordered when at least one of them mutates. An empty result means the
+   * call may touch anything and is ordered against every conflicting call.
+   *
+   * @param parameters the execution parameters, may be null
+   * @return the absolute, normalized target path, or empty if unknown
+   */
+  default Optional<Path> targetPath(JsonNode parameters) {
+    return Optional.empty();
+  }
+
+  /**
+   * Returns how long a single execution of this tool may take. Executions running longer are
+   * interrupted, so long running tools should respond to interruption by releasing resources and
+   * stopping any child processes.
+   *
+   * @return the maximum execution time, 30 seconds by default
+   */
+  default Duration timeout() {
+    return Duration.ofSeconds(30);
+  }
 }
@@ -3,5 +3,25 @@ package com.larseckart.core.domain.ai;
 import com.larseckart.core.domain.ChatMessage;
 import java.util.List;
 
+/**
+ * A request to the model. Without {@code toolUse} the model must answer in text: its tools stay
+ * defined, since the history may refer to them, but it may not call them and calls it asks for
+ * anyway are never run.
+ */
 public record AIRequest(
-    List<ChatMessage> messages, String systemPrompt, List<AITool> tools, int maxTokens) {}
+    List<ChatMessage> messages,
+    String systemPrompt,
+    List<AITool> tools,
+    int maxTokens,
+    boolean toolUse) {
+
+  public AIRequest(
+      List<ChatMessage> messages, String systemPrompt, List<AITool> tools, int maxTokens) {
+    this(messages, systemPrompt, tools, maxTokens, true);
+  }
+
+  /** The same request, answered in text only. */
+  public AIRequest withoutToolUse() {
+    return new AIRequest(messages, systemPrompt, tools, maxTokens, false);
+  }
+}
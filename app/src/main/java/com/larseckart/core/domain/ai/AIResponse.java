@@ -1,5 +1,31 @@
 package com.larseckart.core.domain.ai;
 
+import com.larseckart.core.domain.ChatMessage;
 import java.util.List;
 
-public record AIResponse(String textContent, List<AIToolUse> toolUses, boolean hasToolUse) {}
+/**
+ * The reply to a request. {@code transcript} holds every message the provider added to the
+ * conversation while producing it, tool uses and tool results included, ending with the final
+ * assistant message. It is empty for providers that only report the final text.
+ */
+public record AIResponse(
+    String textContent,
+    List<AIToolUse> toolUses,
+    boolean hasToolUse,
+    TokenUsage usage,
+    List<ChatMessage> transcript) {
+
+  public AIResponse(String textContent, List<AIToolUse> toolUses, boolean hasToolUse) {
+    this(textContent, toolUses, hasToolUse, TokenUsage.NONE);
+  }
+
+  public AIResponse(
+      String textContent, List<AIToolUse> toolUses, boolean hasToolUse, TokenUsage usage) {
+    this(textContent, toolUses, hasToolUse, usage, List.of());
+  }
+
+  /** Returns this response with the usage of earlier calls of the same turn added to its own. */
+  public AIResponse plusUsage(TokenUsage earlier) {
+    return new AIResponse(textContent, toolUses, hasToolUse, usage.plus(earlier), transcript);
+  }
+}
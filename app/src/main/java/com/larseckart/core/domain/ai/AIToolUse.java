@@ -2,4 +2,10 @@ package com.larseckart.core.domain.ai;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
-public record AIToolUse(String toolName, JsonNode parameters) {}
+/** A tool call requested by the model. The id links it to the result sent back for it. */
+public record AIToolUse(String toolName, JsonNode parameters, String id) {
+
+  public AIToolUse(String toolName, JsonNode parameters) {
+    this(toolName, parameters, null);
+  }
+}
@@ -0,0 +1,4 @@
+package com.larseckart.core.domain.ai;
+
+/** One prompt of an offline batch, answered independently of all others. */
+public record BatchPrompt(String id, String prompt) {}
@@ -0,0 +1,17 @@
+package com.larseckart.core.domain.ai;
+
+/** The outcome of one batch prompt: the response, or the error that prevented one. */
+public record BatchResult(String id, AIResponse response, String error) {
+
+  public static BatchResult succeeded(String id, AIResponse response) {
+    return new BatchResult(id, response, null);
+  }
+
+  public static BatchResult failed(String id, String error) {
+    return new BatchResult(id, null, error);
+  }
+
+  public boolean isSucceeded() {
+    return response != null;
+  }
+}
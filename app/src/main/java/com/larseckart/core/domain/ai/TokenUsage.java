@@ -0,0 +1,30 @@
+package com.larseckart.core.domain.ai;
+
+/**
+ * Token counts reported by a provider. Cache writes and cache reads are counted separately from
+ * the uncached input tokens, as the Anthropic API reports them.
+ */
+public record TokenUsage(
+    long inputTokens, long outputTokens, long cacheWriteTokens, long cacheReadTokens) {
+
+  public static final TokenUsage NONE = new TokenUsage(0, 0, 0, 0);
+
+  public TokenUsage plus(TokenUsage other) {
+    return new TokenUsage(
+        inputTokens + other.inputTokens,
+        outputTokens + other.outputTokens,
+        cacheWriteTokens + other.cacheWriteTokens,
+        cacheReadTokens + other.cacheReadTokens);
+  }
+
+  /** All tokens of the call, cached or not. */
+  public long totalTokens() {
+    return inputTokens + outputTokens + cacheWriteTokens + cacheReadTokens;
+  }
+
+  /** Share of all input tokens that were served from the prompt cache. */
+  public double cacheHitRate() {
+    long total = inputTokens + cacheWriteTokens + cacheReadTokens;
+    return total == 0 ? 0 : (double) cacheReadTokens / total;
+  }
+}
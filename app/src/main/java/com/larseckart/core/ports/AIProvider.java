@@ -2,10 +2,37 @@ package com.larseckart.core.ports;
 
 import com.larseckart.core.domain.ai.AIRequest;
 import com.larseckart.core.domain.ai.AIResponse;
+import com.larseckart.core.ports.batch.MessageBatches;
+import java.util.Optional;
 
 public interface AIProvider {
 
   AIResponse sendMessage(AIRequest request);
 
+  /**
+   * Sends a request and reports the reply text to the listener as it is generated. Providers
+   * without a streaming API deliver the whole reply as a single delta once it is complete.
+   */
+  default AIResponse streamMessage(AIRequest request, StreamListener listener) {
+    AIResponse response = sendMessage(request);
+    if (response.textContent() != null && !response.textContent().isEmpty()) {
+      listener.onTextDelta(response.textContent());
+    }
+    return response;
+  }
+
+  /**
+   * Raw estimate, see {@link com.larseckart.core.domain.TokenEstimator}, of what the provider adds
+   * to every request besides the messages and the system prompt, such as its tool definitions.
+   */
+  default long fixedOverheadEstimate() {
+    return 0;
+  }
+
+  /** The provider's bulk API for offline workloads, if it has one. */
+  default Optional<MessageBatches> messageBatches() {
+    return Optional.empty();
+  }
+
   String getProviderName();
 }
@@ -0,0 +1,27 @@
+package com.larseckart.core.ports;
+
+import java.time.Duration;
+
+/**
+ * Receives a model reply piece by piece while it is being generated, along with the tool calls
+ * made on the way to it. Tool events of one turn may arrive concurrently from different threads.
+ */
+@FunctionalInterface
+public interface StreamListener {
+
+  /** A listener that ignores every event. */
+  StreamListener NONE = delta -> {};
+
+  /** Called with each chunk of reply text as soon as the provider has produced it. */
+  void onTextDelta(String delta);
+
+  /** Called when a tool call starts executing. */
+  default void onToolStart(String toolName) {}
+
+  /**
+   * Called when a tool call has finished.
+   *
+   * @param status the outcome of the call, e.g. {@code completed} or {@code timed_out}
+   */
+  default void onToolEnd(String toolName, String status, Duration elapsed) {}
+}
@@ -0,0 +1,23 @@
+package com.larseckart.core.ports.batch;
+
+import com.larseckart.core.domain.ai.BatchResult;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Durable progress of a batch run, so an interrupted run continues where it stopped: prompts with
+ * a successful result are not sent again, and submitted provider batches are collected instead of
+ * being submitted twice. Implementations must accept results from several threads.
+ */
+public interface BatchJournal {
+
+  Set<String> succeededIds();
+
+  List<String> openBatchIds();
+
+  void batchSubmitted(String batchId);
+
+  void batchCollected(String batchId);
+
+  void record(BatchResult result);
+}
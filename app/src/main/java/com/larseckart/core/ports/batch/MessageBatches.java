@@ -0,0 +1,23 @@
+package com.larseckart.core.ports.batch;
+
+import com.larseckart.core.domain.ai.AIRequest;
+import com.larseckart.core.domain.ai.BatchResult;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A provider's asynchronous bulk API. Requests are processed at the provider's pace, typically
+ * within hours, without holding a connection per request. Each request is a single model call, so
+ * a response may end in tool uses that still have to be answered.
+ */
+public interface MessageBatches {
+
+  /** Most requests a single batch takes. */
+  int maxBatchSize();
+
+  /** Submits requests by prompt id and returns the id of the batch. */
+  String submit(Map<String, AIRequest> requests);
+
+  /** Waits until the batch has ended and returns a result for every request in it. */
+  List<BatchResult> awaitResults(String batchId);
+}
@@ -6,4 +6,10 @@ public interface OutputPort {
   void promptForUserInput();
 
   void displayAssistantResponse(String response);
+
+  void beginAssistantResponse();
+
+  void displayAssistantDelta(String delta);
+
+  void endAssistantResponse();
 }
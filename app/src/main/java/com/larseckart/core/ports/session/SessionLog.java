@@ -0,0 +1,40 @@
+package com.larseckart.core.ports.session;
+
+import com.larseckart.core.domain.ChatMessage;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Durable history of conversations by session id, so sessions survive a restart. Appends may be
+ * buffered for a moment and committed in groups; {@link #flush()} waits until everything appended
+ * so far is durable. Implementations must accept calls from several threads.
+ */
+public interface SessionLog {
+
+  /** The messages of the session, empty for an unknown session. */
+  List<ChatMessage> load(String sessionId);
+
+  /**
+   * Appends a message to the log of the session. The returned future completes once the message is
+   * durable, or exceptionally if it could not be written; the session then takes no more appends
+   * until it is rewritten or loaded again, so its log never has a gap.
+   */
+  CompletableFuture<Void> append(String sessionId, ChatMessage message);
+
+  /**
+   * Replaces the whole log of the session, dropping the records it no longer needs. The returned
+   * future completes once the new log is durable.
+   */
+  CompletableFuture<Void> rewrite(String sessionId, List<ChatMessage> messages);
+
+  void flush();
+
+  /**
+   * Releases what is held open for the session, such as its file, once the session has left
+   * memory. A later call for the session opens it again.
+   */
+  void release(String sessionId);
+
+  Set<String> sessionIds();
+}
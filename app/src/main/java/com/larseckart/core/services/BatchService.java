@@ -0,0 +1,279 @@
+package com.larseckart.core.services;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import com.larseckart.core.domain.ChatMessage;
+import com.larseckart.core.domain.MessageBlock;
+import com.larseckart.core.domain.Role;
+import com.larseckart.core.domain.ai.AIRequest;
+import com.larseckart.core.domain.ai.AIResponse;
+import com.larseckart.core.domain.ai.AIToolUse;
+import com.larseckart.core.domain.ai.BatchPrompt;
+import com.larseckart.core.domain.ai.BatchResult;
+import com.larseckart.core.ports.AIProvider;
+import com.larseckart.core.ports.batch.BatchJournal;
+import com.larseckart.core.ports.batch.MessageBatches;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+
+/**
+ * Answers a set of independent prompts offline. Prompts go through the provider's batch API when it
+ * has one, and through a bounded pool of concurrent agent loops otherwise. Batch responses that
+ * stop to use tools are finished locally, since only this process can run tools: the tools are run
+ * and the local agent loop continues from the batch's reply, so the batched call is not repeated.
+ * Progress is kept in a {@link BatchJournal}, so an interrupted run can simply be started again.
+ */
+public class BatchService {
+
+  private static final Logger log = getLogger(BatchService.class);
+
+  /** How a run went. Failed prompts are sent again by the next run. */
+  public record Summary(int skipped, int succeeded, int failed, int viaBatchApi) {}
+
+  /** A prompt the local agent loop answers, continuing from its batch response if it has one. */
+  private record Unfinished(BatchPrompt prompt, AIResponse batched) {}
+
+  private static final class Counts {
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger viaBatchApi = new AtomicInteger();
+  }
+
+  private final AIProvider aiProvider;
+  private final ToolScheduler toolScheduler;
+  private final BatchJournal journal;
+  private final int concurrency;
+
+  /** A service running the tools batch responses ask for from the default tool set. */
+  public BatchService(AIProvider aiProvider, BatchJournal journal, int concurrency) {
+    this(aiProvider, new ToolScheduler(ToolRegistry.withDefaultTools()), journal, concurrency);
+  }
+
+  public BatchService(
+      AIProvider aiProvider, ToolScheduler toolScheduler, BatchJournal journal, int concurrency) {
+    if (concurrency < 1) {
+      throw new IllegalArgumentException("Concurrency must be at least 1, was " + concurrency);
+    }
+    this.aiProvider = aiProvider;
+    this.toolScheduler = toolScheduler;
+    this.journal = journal;
+    this.concurrency = concurrency;
+  }
+
+  public Summary run(List<BatchPrompt> prompts) {
+    Set<String> done = journal.succeededIds();
+    Map<String, BatchPrompt> pending = new LinkedHashMap<>();
+    for (BatchPrompt prompt : prompts) {
+      if (!done.contains(prompt.id())) {
+        pending.put(prompt.id(), prompt);
+      }
+    }
+    int skipped = prompts.size() - pending.size();
+    log.info("Batch of {} prompts, {} already answered", prompts.size(), skipped);
+
+    Counts counts = new Counts();
+    Optional<MessageBatches> batches = aiProvider.messageBatches();
+    List<Unfinished> local = new ArrayList<>();
+    if (batches.isPresent()) {
+      local.addAll(runBatches(batches.get(), pending, counts));
+    } else {
+      // Batches left open by a provider that is no longer configured cannot be collected
+      pending.values().forEach(prompt -> local.add(new Unfinished(prompt, null)));
+    }
+    runLocally(local, counts);
+
+    Summary summary =
+        new Summary(skipped, counts.succeeded.get(), counts.failed.get(), counts.viaBatchApi.get());
+    log.info(
+        "Batch finished: {} skipped, {} succeeded ({} via batch API), {} failed",
+        summary.skipped(),
+        summary.succeeded(),
+        summary.viaBatchApi(),
+        summary.failed());
+    return summary;
+  }
+
+  /**
+   * Collects batches submitted by an earlier run, submits the remaining prompts and collects them
+   * too. Returns the prompts whose responses wait for tools, for the local agent loop to finish.
+   */
+  private List<Unfinished> runBatches(
+      MessageBatches batches, Map<String, BatchPrompt> pending, Counts counts) {
+    List<Unfinished> needTools = new ArrayList<>();
+    for (String batchId : journal.openBatchIds()) {
+      log.info("Collecting batch {} submitted by an earlier run", batchId);
+      collect(batches, batchId, pending, needTools, counts);
+    }
+
+    List<BatchPrompt> unsubmitted = new ArrayList<>(pending.values());
+    List<String> submitted = new ArrayList<>();
+    for (int start = 0; start < unsubmitted.size(); start += batches.maxBatchSize()) {
+      List<BatchPrompt> chunk =
+          unsubmitted.subList(start, Math.min(unsubmitted.size(), start + batches.maxBatchSize()));
+      Map<String, AIRequest> requests =
+          chunk.stream()
+              .collect(
+                  Collectors.toMap(
+                      BatchPrompt::id,
+                      BatchService::requestFor,
+                      (first, second) -> first,
+                      LinkedHashMap::new));
+      String batchId = batches.submit(requests);
+      journal.batchSubmitted(batchId);
+      submitted.add(batchId);
+      log.info("Submitted batch {} with {} prompts", batchId, chunk.size());
+    }
+    for (String batchId : submitted) {
+      collect(batches, batchId, pending, needTools, counts);
+    }
+    return needTools;
+  }
+
+  private void collect(
+      MessageBatches batches,
+      String batchId,
+      Map<String, BatchPrompt> pending,
+      List<Unfinished> needTools,
+      Counts counts) {
+    for (BatchResult result : batches.awaitResults(batchId)) {
+      BatchPrompt prompt = pending.remove(result.id());
+      if (prompt == null) {
+        // Answered by an earlier run, or no longer part of the input
+        continue;
+      }
+      if (result.isSucceeded() && result.response().hasToolUse()) {
+        needTools.add(new Unfinished(prompt, result.response()));
+      } else {
+        record(result, counts);
+        if (result.isSucceeded()) {
+          counts.viaBatchApi.incrementAndGet();
+        }
+      }
+    }
+    journal.batchCollected(batchId);
+  }
+
+  private void runLocally(List<Unfinished> prompts, Counts counts) {
+    if (prompts.isEmpty()) {
+      return;
+    }
+    log.info("Answering {} prompts locally, {} at a time", prompts.size(), concurrency);
+
+    try (ExecutorService executor =
+        Executors.newFixedThreadPool(concurrency, Thread.ofVirtual().name("batch-", 0).factory())) {
+      List<Future<?>> futures =
+          prompts.stream()
+              .<Future<?>>map(
+                  unfinished -> executor.submit(() -> record(answer(unfinished), counts)))
+              .toList();
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          executor.shutdownNow();
+          throw new IllegalStateException("Batch run was interrupted", e);
+        } catch (ExecutionException e) {
+          throw new IllegalStateException("Could not record a batch result", e.getCause());
+        }
+      }
+    }
+  }
+
+  private BatchResult answer(Unfinished unfinished) {
+    BatchPrompt prompt = unfinished.prompt();
+    try {
+      AIResponse response =
+          unfinished.batched() == null
+              ? aiProvider.sendMessage(requestFor(prompt))
+              : continueAfterTools(prompt, unfinished.batched());
+      return BatchResult.succeeded(prompt.id(), response);
+    } catch (RuntimeException e) {
+      log.warn("Prompt {} failed: {}", prompt.id(), e.getMessage());
+      return BatchResult.failed(prompt.id(), rootMessage(e));
+    }
+  }
+
+  /**
+   * Runs the tools a batch response asked for and sends their results to the agent loop, with the
+   * batch's reply as the conversation so far. The response covers the whole exchange.
+   */
+  private AIResponse continueAfterTools(BatchPrompt prompt, AIResponse batched) {
+    ChatMessage assistant = assistantMessageOf(batched);
+    List<ToolOutcome> outcomes = toolScheduler.executeAll(batched.toolUses());
+    List<MessageBlock.ToolResult> results = new ArrayList<>();
+    for (int i = 0; i < outcomes.size(); i++) {
+      AIToolUse toolUse = batched.toolUses().get(i);
+      ToolOutcome outcome = outcomes.get(i);
+      results.add(
+          new MessageBlock.ToolResult(
+              toolUse.id(), toolUse.toolName(), outcome.toModelText(), outcome.isError()));
+    }
+    ChatMessage toolResults = ChatMessage.toolResults(results);
+
+    AIRequest request = requestFor(prompt);
+    AIResponse continued =
+        aiProvider.sendMessage(
+            new AIRequest(
+                List.of(request.messages().getFirst(), assistant, toolResults),
+                request.systemPrompt(),
+                request.tools(),
+                request.maxTokens()));
+
+    List<ChatMessage> transcript = new ArrayList<>(List.of(assistant, toolResults));
+    transcript.addAll(continued.transcript());
+    return new AIResponse(
+        continued.textContent(),
+        continued.toolUses(),
+        continued.hasToolUse(),
+        continued.usage().plus(batched.usage()),
+        transcript);
+  }
+
+  // Providers put the assistant message in the transcript; it is rebuilt for those that do not
+  private static ChatMessage assistantMessageOf(AIResponse response) {
+    if (!response.transcript().isEmpty()) {
+      return response.transcript().getLast();
+    }
+    List<MessageBlock> blocks = new ArrayList<>();
+    if (response.textContent() != null && !response.textContent().isEmpty()) {
+      blocks.add(new MessageBlock.Text(response.textContent()));
+    }
+    for (AIToolUse toolUse : response.toolUses()) {
+      blocks.add(new MessageBlock.ToolUse(toolUse.id(), toolUse.toolName(), toolUse.parameters()));
+    }
+    return ChatMessage.of(Role.ASSISTANT, blocks);
+  }
+
+  private void record(BatchResult result, Counts counts) {
+    journal.record(result);
+    (result.isSucceeded() ? counts.succeeded : counts.failed).incrementAndGet();
+  }
+
+  private static AIRequest requestFor(BatchPrompt prompt) {
+    return new AIRequest(
+        List.of(ChatMessage.user(prompt.prompt())),
+        ConversationService.SYSTEM_PROMPT,
+        null,
+        ConversationService.MAX_TOKENS);
+  }
+
+  private static String rootMessage(Throwable e) {
+    Throwable root = e;
+    while (root.getCause() != null) {
+      root = root.getCause();
+    }
+    return root.getMessage() == null ? root.getClass().getSimpleName() : root.getMessage();
+  }
+}
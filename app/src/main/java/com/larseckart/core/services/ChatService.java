@@ -1,5 +1,6 @@
 package com.larseckart.core.services;
 
+import com.larseckart.core.ports.StreamListener;
 import com.larseckart.core.ports.input.InputPort;
 import com.larseckart.core.ports.output.OutputPort;
 
@@ -29,10 +30,35 @@ public class ChatService {
         continue;
       }
 
-      String response = conversationService.sendMessage(userInput);
+      StreamingOutput output = new StreamingOutput();
+      try {
+        conversationService.sendMessage(userInput, output);
+      } finally {
+        output.end();
+      }
+    }
+  }
+
+  /** Renders reply text as it streams in, opening the reply only once there is text to show. */
+  private class StreamingOutput implements StreamListener {
+
+    private boolean started;
+
+    @Override
+    public void onTextDelta(String delta) {
+      if (delta.isEmpty()) {
+        return;
+      }
+      if (!started) {
+        outputPort.beginAssistantResponse();
+        started = true;
+      }
+      outputPort.displayAssistantDelta(delta);
+    }
 
-      if (!response.isEmpty()) {
-        outputPort.displayAssistantResponse(response);
+    void end() {
+      if (started) {
+        outputPort.endAssistantResponse();
       }
     }
   }
@@ -0,0 +1,254 @@
+package com.larseckart.core.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A JSON schema compiled into a flat list of checks, so validating tool parameters does not
+ * re-interpret the schema document on every call. Supports the subset of JSON Schema used by tool
+ * parameter schemas: {@code type}, {@code properties}, {@code required}, {@code
+ * additionalProperties}, {@code items}, {@code enum}, {@code minimum}, {@code maximum}, {@code
+ * minLength} and {@code maxLength}. Other keywords are ignored.
+ */
+public final class CompiledSchema {
+
+  private static final CompiledSchema ANYTHING = new CompiledSchema(List.of());
+
+  @FunctionalInterface
+  private interface Check {
+    void apply(JsonNode value, String location, List<String> errors);
+  }
+
+  private final List<Check> checks;
+
+  private CompiledSchema(List<Check> checks) {
+    this.checks = checks;
+  }
+
+  public static CompiledSchema compile(JsonNode schema) {
+    if (schema == null || !schema.isObject()) {
+      return ANYTHING;
+    }
+
+    List<Check> checks = new ArrayList<>();
+    compileType(schema.get("type"), checks);
+    compileEnum(schema.get("enum"), checks);
+    compileNumberBounds(schema, checks);
+    compileLengthBounds(schema, checks);
+    compileObject(schema, checks);
+    compileItems(schema.get("items"), checks);
+    return checks.isEmpty() ? ANYTHING : new CompiledSchema(List.copyOf(checks));
+  }
+
+  /**
+   * Validates a value against this schema.
+   *
+   * @return human readable error messages, empty if the value is valid
+   */
+  public List<String> validate(JsonNode value) {
+    List<String> errors = new ArrayList<>();
+    apply(value, "parameters", errors);
+    return errors;
+  }
+
+  private void apply(JsonNode value, String location, List<String> errors) {
+    for (Check check : checks) {
+      check.apply(value, location, errors);
+    }
+  }
+
+  private static void compileType(JsonNode type, List<Check> checks) {
+    if (type == null) {
+      return;
+    }
+
+    List<String> allowed = new ArrayList<>();
+    if (type.isArray()) {
+      type.forEach(t -> allowed.add(t.asText()));
+    } else {
+      allowed.add(type.asText());
+    }
+    String expected = String.join(" or ", allowed);
+
+    checks.add(
+        (value, location, errors) -> {
+          for (String candidate : allowed) {
+            if (hasType(value, candidate)) {
+              return;
+            }
+          }
+          errors.add(location + " must be of type " + expected + " but was " + typeOf(value));
+        });
+  }
+
+  private static void compileEnum(JsonNode enumNode, List<Check> checks) {
+    if (enumNode == null || !enumNode.isArray()) {
+      return;
+    }
+
+    Set<JsonNode> allowed = new HashSet<>();
+    enumNode.forEach(allowed::add);
+    checks.add(
+        (value, location, errors) -> {
+          if (value != null && !allowed.contains(value)) {
+            errors.add(location + " must be one of " + enumNode + " but was " + value);
+          }
+        });
+  }
+
+  private static void compileNumberBounds(JsonNode schema, List<Check> checks) {
+    JsonNode minimum = schema.get("minimum");
+    if (minimum != null && minimum.isNumber()) {
+      double bound = minimum.asDouble();
+      checks.add(
+          (value, location, errors) -> {
+            if (value != null && value.isNumber() && value.asDouble() < bound) {
+              errors.add(location + " must be at least " + minimum + " but was " + value);
+            }
+          });
+    }
+
+    JsonNode maximum = schema.get("maximum");
+    if (maximum != null && maximum.isNumber()) {
+      double bound = maximum.asDouble();
+      checks.add(
+          (value, location, errors) -> {
+            if (value != null && value.isNumber() && value.asDouble() > bound) {
+              errors.add(location + " must be at most " + maximum + " but was " + value);
+            }
+          });
+    }
+  }
+
+  private static void compileLengthBounds(JsonNode schema, List<Check> checks) {
+    JsonNode minLength = schema.get("minLength");
+    if (minLength != null && minLength.canConvertToInt()) {
+      int bound = minLength.asInt();
+      checks.add(
+          (value, location, errors) -> {
+            if (value != null && value.isTextual() && value.asText().length() < bound) {
+              errors.add(location + " must be at least " + bound + " characters long");
+            }
+          });
+    }
+
+    JsonNode maxLength = schema.get("maxLength");
+    if (maxLength != null && maxLength.canConvertToInt()) {
+      int bound = maxLength.asInt();
+      checks.add(
+          (value, location, errors) -> {
+            if (value != null && value.isTextual() && value.asText().length() > bound) {
+              errors.add(location + " must be at most " + bound + " characters long");
+            }
+          });
+    }
+  }
+
+  private static void compileObject(JsonNode schema, List<Check> checks) {
+    Map<String, CompiledSchema> properties = new LinkedHashMap<>();
+    JsonNode propertiesNode = schema.get("properties");
+    if (propertiesNode != null && propertiesNode.isObject()) {
+      Iterator<Map.Entry<String, JsonNode>> fields = propertiesNode.fields();
+      while (fields.hasNext()) {
+        Map.Entry<String, JsonNode> field = fields.next();
+        properties.put(field.getKey(), compile(field.getValue()));
+      }
+    }
+
+    List<String> required = new ArrayList<>();
+    JsonNode requiredNode = schema.get("required");
+    if (requiredNode != null && requiredNode.isArray()) {
+      requiredNode.forEach(name -> required.add(name.asText()));
+    }
+
+    JsonNode additional = schema.get("additionalProperties");
+    boolean additionalAllowed =
+        additional == null || !additional.isBoolean() || additional.asBoolean();
+    CompiledSchema additionalSchema =
+        additional != null && additional.isObject() ? compile(additional) : ANYTHING;
+
+    if (properties.isEmpty()
+        && required.isEmpty()
+        && additionalAllowed
+        && additionalSchema == ANYTHING) {
+      return;
+    }
+
+    checks.add(
+        (value, location, errors) -> {
+          if (value == null || !value.isObject()) {
+            return;
+          }
+
+          for (String name : required) {
+            if (!value.has(name)) {
+              errors.add("missing required property " + location + "." + name);
+            }
+          }
+
+          Iterator<Map.Entry<String, JsonNode>> fields = value.fields();
+          while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            String fieldLocation = location + "." + field.getKey();
+            CompiledSchema propertySchema = properties.get(field.getKey());
+            if (propertySchema != null) {
+              propertySchema.apply(field.getValue(), fieldLocation, errors);
+            } else if (!additionalAllowed) {
+              errors.add("unexpected property " + fieldLocation);
+            } else {
+              additionalSchema.apply(field.getValue(), fieldLocation, errors);
+            }
+          }
+        });
+  }
+
+  private static void compileItems(JsonNode items, List<Check> checks) {
+    if (items == null || !items.isObject()) {
+      return;
+    }
+
+    CompiledSchema itemSchema = compile(items);
+    checks.add(
+        (value, location, errors) -> {
+          if (value == null || !value.isArray()) {
+            return;
+          }
+          for (int i = 0; i < value.size(); i++) {
+            itemSchema.apply(value.get(i), location + "[" + i + "]", errors);
+          }
+        });
+  }
+
+  private static boolean hasType(JsonNode value, String type) {
+    if (value == null) {
+      return false;
+    }
+    return switch (type) {
+      case "object" -> value.isObject();
+      case "array" -> value.isArray();
+      case "string" -> value.isTextual();
+      case "boolean" -> value.isBoolean();
+      // Whole floats such as 3.0 are rejected too, as the tools read integers with isInt()
+      case "integer" -> value.isIntegralNumber();
+      case "number" -> value.isNumber();
+      case "null" -> value.isNull();
+      default -> true;
+    };
+  }
+
+  private static String typeOf(JsonNode value) {
+    if (value == null || value.isMissingNode()) {
+      return "missing";
+    }
+    if (value.isIntegralNumber()) {
+      return "integer";
+    }
+    return value.getNodeType().name().toLowerCase();
+  }
+}
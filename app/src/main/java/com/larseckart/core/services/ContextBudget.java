@@ -0,0 +1,39 @@
+package com.larseckart.core.services;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import org.slf4j.Logger;
+
+/**
+ * How much of the model's context window a request may fill. {@code reserved} is kept free for
+ * the tool definitions and for estimation error. Once the history grows beyond {@code
+ * compactionThreshold} tokens, its older turns are summarized in the background.
+ */
+public record ContextBudget(long contextWindow, long reserved, long compactionThreshold) {
+
+  private static final Logger log = getLogger(ContextBudget.class);
+  static final String COMPACTION_THRESHOLD_VARIABLE = "AI_COMPACTION_THRESHOLD";
+
+  /** The 200k token window of the Claude models, with room for the tool catalog. */
+  public static final ContextBudget DEFAULT = new ContextBudget(200_000, 16_000, 100_000);
+
+  /** The default budget, compacting above {@value #COMPACTION_THRESHOLD_VARIABLE} if it is set. */
+  public static ContextBudget fromEnvironment() {
+    String threshold = System.getenv(COMPACTION_THRESHOLD_VARIABLE);
+    if (threshold == null || threshold.isBlank()) {
+      return DEFAULT;
+    }
+    try {
+      return new ContextBudget(
+          DEFAULT.contextWindow(), DEFAULT.reserved(), Long.parseLong(threshold.trim()));
+    } catch (NumberFormatException e) {
+      log.warn("Ignoring invalid {}: {}", COMPACTION_THRESHOLD_VARIABLE, threshold);
+      return DEFAULT;
+    }
+  }
+
+  /** Tokens left for the conversation history once the fixed parts of a request are counted. */
+  public long forHistory(long systemPromptTokens, int maxOutputTokens) {
+    return Math.max(0, contextWindow - reserved - systemPromptTokens - maxOutputTokens);
+  }
+}
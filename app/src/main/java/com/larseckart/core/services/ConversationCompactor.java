@@ -0,0 +1,127 @@
+package com.larseckart.core.services;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import com.larseckart.core.domain.ChatMessage;
+import com.larseckart.core.domain.ConversationContext;
+import com.larseckart.core.domain.ai.AIRequest;
+import com.larseckart.core.ports.AIProvider;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import org.slf4j.Logger;
+
+/**
+ * Summarizes the older turns of a long conversation in the background. Once the history passes the
+ * threshold, everything but the most recent turns is sent to the model to be summarized, while the
+ * conversation goes on. The finished summary replaces those turns at the start of a later turn, so
+ * no user request ever waits for it and the context only changes between turns.
+ */
+public class ConversationCompactor {
+
+  private static final Logger log = getLogger(ConversationCompactor.class);
+  static final String SUMMARY_PREFIX = "Summary of the earlier conversation:\n\n";
+  private static final String SUMMARY_ACKNOWLEDGEMENT = "Understood, I'll continue from there.";
+  private static final String SUMMARIZE_INSTRUCTION =
+      "Summarize the conversation so far for your own later reference. Keep every decision, file"
+          + " path, code change, open question and fact about the user that may matter later."
+          + " Answer with the summary only and do not use any tools.";
+  private static final int SUMMARY_MAX_TOKENS = 2 * 1024;
+
+  /** A summary ready to replace the messages it was made from. */
+  private record Compaction(List<ChatMessage> replaced, List<ChatMessage> summary) {}
+
+  private final AIProvider aiProvider;
+  private final long thresholdTokens;
+  private final int keepRecentTurns;
+  private final Executor executor;
+  // Touched by the conversation's own thread only, between and around turns
+  private CompletableFuture<Compaction> running;
+
+  public ConversationCompactor(AIProvider aiProvider, long thresholdTokens, int keepRecentTurns) {
+    this(
+        aiProvider,
+        thresholdTokens,
+        keepRecentTurns,
+        task -> Thread.ofVirtual().name("conversation-compaction").start(task));
+  }
+
+  ConversationCompactor(
+      AIProvider aiProvider, long thresholdTokens, int keepRecentTurns, Executor executor) {
+    this.aiProvider = aiProvider;
+    this.thresholdTokens = thresholdTokens;
+    this.keepRecentTurns = keepRecentTurns;
+    this.executor = executor;
+  }
+
+  /**
+   * Swaps a finished summary into the context. A summary that is still being written is left
+   * alone, and one whose messages are no longer at the start of the history is dropped.
+   */
+  public void applyFinished(ConversationContext context) {
+    if (running == null || !running.isDone()) {
+      return;
+    }
+    CompletableFuture<Compaction> finished = running;
+    running = null;
+    if (finished.isCompletedExceptionally()) {
+      // Already logged; the next turn over the threshold tries again
+      return;
+    }
+
+    Compaction compaction = finished.join();
+    long before = context.estimatedTokens();
+    if (context.replacePrefix(compaction.replaced(), compaction.summary())) {
+      log.info(
+          "Compacted {} messages into a summary, history estimate {} -> {} tokens",
+          compaction.replaced().size(),
+          before,
+          context.estimatedTokens());
+    } else {
+      log.info("Discarding a summary of history that has changed since");
+    }
+  }
+
+  /** Starts summarizing the older turns if the history is over the threshold. */
+  public void startIfNeeded(ConversationContext context, long estimatedTokens) {
+    if (running != null || estimatedTokens <= thresholdTokens) {
+      return;
+    }
+    int recentStart = context.startOfRecentTurns(keepRecentTurns);
+    if (recentStart == 0) {
+      return;
+    }
+
+    List<ChatMessage> older = context.getHistory().subList(0, recentStart);
+    log.info(
+        "History of ~{} tokens is over {}, summarizing the oldest {} messages in the background",
+        estimatedTokens,
+        thresholdTokens,
+        older.size());
+    running = CompletableFuture.supplyAsync(() -> summarize(older), executor);
+  }
+
+  private Compaction summarize(List<ChatMessage> older) {
+    try {
+      List<ChatMessage> messages = new ArrayList<>(older);
+      messages.add(ChatMessage.user(SUMMARIZE_INSTRUCTION));
+      // Compaction runs next to the user's turn, so it must never run a tool itself
+      AIRequest request =
+          new AIRequest(messages, ConversationService.SYSTEM_PROMPT, null, SUMMARY_MAX_TOKENS)
+              .withoutToolUse();
+      String summary = aiProvider.sendMessage(request).textContent();
+      if (summary == null || summary.isBlank()) {
+        throw new IllegalStateException("The model returned an empty summary");
+      }
+      return new Compaction(
+          older,
+          List.of(
+              ChatMessage.user(SUMMARY_PREFIX + summary),
+              ChatMessage.assistant(SUMMARY_ACKNOWLEDGEMENT)));
+    } catch (RuntimeException e) {
+      log.warn("Could not summarize the conversation: {}", e.getMessage(), e);
+      throw e;
+    }
+  }
+}
@@ -3,54 +3,173 @@ package com.larseckart.core.services;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import com.larseckart.core.domain.ChatMessage;
+import com.larseckart.core.domain.ContextWindow;
 import com.larseckart.core.domain.ConversationContext;
+import com.larseckart.core.domain.MemoryUsage;
+import com.larseckart.core.domain.TokenEstimator;
 import com.larseckart.core.domain.ai.AIRequest;
 import com.larseckart.core.domain.ai.AIResponse;
+import com.larseckart.core.domain.ai.TokenUsage;
 import com.larseckart.core.ports.AIProvider;
+import com.larseckart.core.ports.StreamListener;
 import org.slf4j.Logger;
 
 public class ConversationService {
 
   private static final Logger log = getLogger(ConversationService.class);
+  static final String SYSTEM_PROMPT =
+      "You're from Germany, even when you reply in English, let some German words slip in. You're a huge fan of Estonia, mention or make references to Estonia whenever you can.";
+  static final int MAX_TOKENS = 4 * 1024;
+  private static final int TURNS_KEPT_BY_COMPACTION = 4;
 
   private final ConversationContext context;
   private final AIProvider aiProvider;
+  private final ContextBudget budget;
+  private final ConversationCompactor compactor;
+  private final TokenEstimator estimator = new TokenEstimator();
 
   public ConversationService(ConversationContext context, AIProvider aiProvider) {
+    this(context, aiProvider, ContextBudget.fromEnvironment());
+  }
+
+  ConversationService(ConversationContext context, AIProvider aiProvider, ContextBudget budget) {
+    this(
+        context,
+        aiProvider,
+        budget,
+        new ConversationCompactor(
+            aiProvider, budget.compactionThreshold(), TURNS_KEPT_BY_COMPACTION));
+  }
+
+  ConversationService(
+      ConversationContext context,
+      AIProvider aiProvider,
+      ContextBudget budget,
+      ConversationCompactor compactor) {
     log.info("Initializing ConversationService");
     this.context = context;
     this.aiProvider = aiProvider;
+    this.budget = budget;
+    this.compactor = compactor;
     log.debug("ConversationService initialized successfully");
   }
 
+  /**
+   * A new session that continues from the current point, e.g. to try two approaches side by side.
+   * The history is shared rather than copied. Both sessions send the same prefix, so its cached
+   * prompt can be read by the first request of either.
+   */
+  public ConversationService fork() {
+    return new ConversationService(context.fork(), aiProvider, budget);
+  }
+
+  /** A new session that continues after the first {@code turns} turns of this one. */
+  public ConversationService forkAtTurn(int turns) {
+    return new ConversationService(context.forkAtTurn(turns), aiProvider, budget);
+  }
+
+  /** Approximate heap held by this session's history. */
+  public MemoryUsage memoryUsage() {
+    return context.memoryUsage();
+  }
+
   public String sendMessage(String userInput) {
+    return sendMessage(userInput, null);
+  }
+
+  /**
+   * Sends a message and streams the reply text to the listener while it is generated. The complete
+   * reply is returned and recorded in the conversation once the provider is done.
+   */
+  public String sendMessage(String userInput, StreamListener listener) {
     log.info(
         "Processing user message: {}",
         userInput.length() > 100 ? userInput.substring(0, 100) + "..." : userInput);
+    // A summary finished in the background only replaces history between turns
+    compactor.applyFinished(context);
     context.addUserMessage(ChatMessage.user(userInput));
 
     try {
+      ContextWindow window = recentHistory();
       AIRequest request =
           new AIRequest(
-              context.getHistory(),
-              "You're from Germany, even when you reply in English, let some German words slip in. You're a huge fan of Estonia, mention or make references to Estonia whenever you can.",
+              window.messages(),
+              SYSTEM_PROMPT,
               null, // AI providers handle their own tools
-              4 * 1024);
+              MAX_TOKENS);
 
       log.debug(
-          "Sending request to AI provider with {} history messages", context.getHistory().size());
-      AIResponse response = aiProvider.sendMessage(request);
+          "Sending request to AI provider with {} history messages", window.messages().size());
+      AIResponse response =
+          listener == null
+              ? aiProvider.sendMessage(request)
+              : aiProvider.streamMessage(request, listener);
       log.debug("Received response from AI provider");
+      calibrate(window, response);
 
-      // Add response to context
+      // Add response to context, with the tool uses and results that led to it
       String text = response.textContent();
-      if (!text.isEmpty()) {
+      if (!response.transcript().isEmpty()) {
+        response.transcript().forEach(context::addMessage);
+      } else if (!text.isEmpty()) {
         context.addAssistantMessage(ChatMessage.assistant(text));
       }
+      compactor.startIfNeeded(context, estimator.toTokens(context.estimatedTokens()));
       return text;
     } catch (Exception e) {
       log.error("Error processing message", e);
       throw new RuntimeException(e);
     }
   }
+
+  /**
+   * Selects the most recent turns that fit the context window, so a long session keeps working
+   * instead of being rejected once its history outgrows the model. Tool outputs repeated later in
+   * the window are sent once. Both only change what is sent for earlier turns now and then, in
+   * batches, so the requests of consecutive turns share a cacheable prefix.
+   */
+  private ContextWindow recentHistory() {
+    long systemPromptTokens = TokenEstimator.rawEstimate(SYSTEM_PROMPT);
+    long historyBudget =
+        estimator.toRawEstimate(
+            budget.forHistory(estimator.toTokens(systemPromptTokens), MAX_TOKENS));
+    ContextWindow window = context.getStableWindow(historyBudget);
+    if (window.omittedMessages() > 0) {
+      log.info(
+          "History of ~{} tokens exceeds the budget of ~{}, leaving out the oldest {} messages",
+          estimator.toTokens(context.estimatedTokens()),
+          estimator.toTokens(historyBudget),
+          window.omittedMessages());
+    }
+    // Turns are settled for elision in whole batches; the current batch is sent as it is
+    int unsettledTurns = (context.turnCount() - 1) % StaleToolOutputs.BATCH_TURNS + 1;
+    int settled = context.startOfRecentTurns(unsettledTurns) - window.omittedMessages();
+    ContextWindow elided = StaleToolOutputs.elide(window, settled);
+    if (elided != window) {
+      log.debug(
+          "Replaced stale tool outputs, saving ~{} tokens",
+          estimator.toTokens(window.estimatedTokens() - elided.estimatedTokens()));
+    }
+    return elided;
+  }
+
+  /**
+   * Compares the estimate with the input tokens the provider counted. Only turns answered with a
+   * single model call are used, as the usage of a tool loop covers several requests. The counted
+   * tokens include the tool definitions, so they are estimated too: in a short session they are
+   * most of the request and would otherwise be taken for an underestimate of the history.
+   */
+  private void calibrate(ContextWindow window, AIResponse response) {
+    TokenUsage usage = response.usage();
+    if (usage == null || response.transcript().size() > 1) {
+      return;
+    }
+    long inputTokens = usage.totalTokens() - usage.outputTokens();
+    estimator.calibrate(
+        window.estimatedTokens()
+            + TokenEstimator.rawEstimate(SYSTEM_PROMPT)
+            + aiProvider.fixedOverheadEstimate(),
+        inputTokens);
+    log.debug("Token estimate calibration factor is now {}", estimator.factor());
+  }
 }
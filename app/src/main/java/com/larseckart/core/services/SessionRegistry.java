@@ -0,0 +1,301 @@
+package com.larseckart.core.services;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import com.larseckart.core.domain.MemoryUsage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+
+/**
+ * Holds one conversation per session for a server with many clients. Sessions are opened on first
+ * use and run one turn at a time; turns of different sessions run in parallel.
+ *
+ * <p>Sessions idle for longer than the idle timeout are evicted, and while the open sessions hold
+ * more than the memory cap, the least recently used idle ones are evicted too. Eviction runs after
+ * every turn and, once {@link #evictEvery} is called, periodically, so sessions also leave when no
+ * more turns come. A session that is in a turn is never evicted. Eviction drops the session from
+ * memory and releases what it holds elsewhere, such as an open log file: the opener is expected to
+ * bring it back with its history, e.g. from a {@link SessionStore}, the next time it is used.
+ *
+ * <p>A session id is the only credential of a session, so clients cannot choose their own: only ids
+ * issued by {@link #newSessionId()}, or registered with {@link #addIssued} after a restart, are
+ * accepted. An issued id is only remembered for good once its session has been opened; one that is
+ * not used within the idle timeout is forgotten, and so is the id of a session evicted without any
+ * history, since there is nothing left to resume.
+ */
+public class SessionRegistry implements AutoCloseable {
+
+  private static final Logger log = getLogger(SessionRegistry.class);
+
+  private final Function<String, ConversationService> opener;
+  private final Consumer<String> releaser;
+  private final long idleTimeoutNanos;
+  private final long memoryCapBytes;
+  private final LongSupplier nanoTime;
+  private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+  // Ids issued but not used yet, with the time they were issued
+  private final Map<String, Long> pending = new ConcurrentHashMap<>();
+  // Ids of sessions that were opened or have a history to resume
+  private final Set<String> known = ConcurrentHashMap.newKeySet();
+  private final ScheduledExecutorService evictor =
+      Executors.newSingleThreadScheduledExecutor(
+          Thread.ofPlatform().daemon().name("session-eviction").factory());
+
+  /**
+   * @param opener creates the conversation of a session id that is not open
+   * @param releaser releases what an evicted session holds outside the heap, e.g. its log file
+   * @param idleTimeout how long a session may go unused before it is evicted
+   * @param memoryCapBytes the heap all open sessions may hold, as counted by {@link MemoryUsage}
+   */
+  public SessionRegistry(
+      Function<String, ConversationService> opener,
+      Consumer<String> releaser,
+      Duration idleTimeout,
+      long memoryCapBytes) {
+    this(opener, releaser, idleTimeout, memoryCapBytes, System::nanoTime);
+  }
+
+  SessionRegistry(
+      Function<String, ConversationService> opener,
+      Consumer<String> releaser,
+      Duration idleTimeout,
+      long memoryCapBytes,
+      LongSupplier nanoTime) {
+    this.opener = opener;
+    this.releaser = releaser;
+    this.idleTimeoutNanos = idleTimeout.toNanos();
+    this.memoryCapBytes = memoryCapBytes;
+    this.nanoTime = nanoTime;
+  }
+
+  /** Issues a fresh, unguessable id for a client that does not have a session yet. */
+  public String newSessionId() {
+    String sessionId = UUID.randomUUID().toString();
+    pending.put(sessionId, nanoTime.getAsLong());
+    return sessionId;
+  }
+
+  /** Accepts ids issued before a restart, e.g. those of the sessions in a {@link SessionStore}. */
+  public void addIssued(Collection<String> sessionIds) {
+    known.addAll(sessionIds);
+  }
+
+  public boolean isIssued(String sessionId) {
+    return sessionId != null && (known.contains(sessionId) || pending.containsKey(sessionId));
+  }
+
+  /**
+   * Runs a turn on the conversation of the session, opening it if needed. Turns of the same
+   * session wait for each other, since a conversation takes one message at a time.
+   *
+   * @throws IllegalArgumentException if the session id was never issued
+   * @throws CancellationException if the thread is interrupted while waiting for an earlier turn
+   */
+  public <T> T withSession(String sessionId, Function<ConversationService, T> turn) {
+    if (!isIssued(sessionId)) {
+      throw new IllegalArgumentException("Unknown session id: " + sessionId);
+    }
+    Session session = acquire(sessionId);
+    try {
+      ConversationService service;
+      try {
+        service = session.opened.get();
+        session.lock.lockInterruptibly();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new CancellationException("Cancelled while waiting for session " + sessionId);
+      } catch (ExecutionException e) {
+        throw e.getCause() instanceof RuntimeException cause
+            ? cause
+            : new IllegalStateException("Could not open session " + sessionId, e.getCause());
+      }
+      try {
+        T result = turn.apply(service);
+        session.usage = service.memoryUsage();
+        return result;
+      } finally {
+        session.lock.unlock();
+      }
+    } finally {
+      release(sessionId, session);
+      evict();
+    }
+  }
+
+  /**
+   * Memory held by all open sessions together, as of the end of their last turns. It is not broken
+   * down by session, since that would give away the ids of the sessions.
+   */
+  public MemoryUsage memoryUsage() {
+    return sessions.values().stream()
+        .map(session -> session.usage)
+        .reduce(MemoryUsage.NONE, MemoryUsage::plus);
+  }
+
+  public int size() {
+    return sessions.size();
+  }
+
+  boolean isOpen(String sessionId) {
+    return sessions.containsKey(sessionId);
+  }
+
+  /**
+   * Evicts sessions idle past the timeout, then the least recently used ones over the cap, and
+   * forgets issued ids that were never used within the timeout.
+   */
+  public void evict() {
+    long now = nanoTime.getAsLong();
+    pending.values().removeIf(issuedAt -> now - issuedAt > idleTimeoutNanos);
+    for (String sessionId : List.copyOf(sessions.keySet())) {
+      evictIf(sessionId, session -> now - session.lastUsed > idleTimeoutNanos, "idle");
+    }
+
+    long total = 0;
+    List<Map.Entry<String, Session>> idle = new ArrayList<>();
+    for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+      total += entry.getValue().usage.totalBytes();
+      if (entry.getValue().users == 0) {
+        idle.add(Map.entry(entry.getKey(), entry.getValue()));
+      }
+    }
+    if (total <= memoryCapBytes) {
+      return;
+    }
+    idle.sort(Comparator.comparingLong(entry -> entry.getValue().lastUsed));
+    for (Map.Entry<String, Session> entry : idle) {
+      if (total <= memoryCapBytes) {
+        break;
+      }
+      long bytes = entry.getValue().usage.totalBytes();
+      if (evictIf(entry.getKey(), session -> session == entry.getValue(), "over the memory cap")) {
+        total -= bytes;
+      }
+    }
+  }
+
+  /** Runs {@link #evict()} every period until the registry is closed. */
+  public void evictEvery(Duration period) {
+    evictor.scheduleWithFixedDelay(
+        () -> {
+          // A run that throws would cancel the later ones
+          try {
+            evict();
+          } catch (RuntimeException e) {
+            log.warn("Could not evict sessions", e);
+          }
+        },
+        period.toMillis(),
+        period.toMillis(),
+        TimeUnit.MILLISECONDS);
+  }
+
+  /** Stops the periodic eviction. Open sessions stay usable. */
+  @Override
+  public void close() {
+    evictor.shutdownNow();
+  }
+
+  /**
+   * Registers a use of the session. A session that is not open is put in the map before it is
+   * opened, so two requests cannot open it twice, and the requests that come while it is opened
+   * wait for it. The opener reads the session's log, so it runs outside the lock of the map entry.
+   */
+  private Session acquire(String sessionId) {
+    boolean[] created = {false};
+    Session session =
+        sessions.compute(
+            sessionId,
+            (id, existing) -> {
+              Session acquired = existing;
+              if (acquired == null) {
+                acquired = new Session();
+                created[0] = true;
+              }
+              acquired.users++;
+              acquired.lastUsed = nanoTime.getAsLong();
+              return acquired;
+            });
+    if (created[0]) {
+      open(sessionId, session);
+    }
+    return session;
+  }
+
+  private void open(String sessionId, Session session) {
+    try {
+      ConversationService service = opener.apply(sessionId);
+      session.usage = service.memoryUsage();
+      known.add(sessionId);
+      pending.remove(sessionId);
+      session.opened.complete(service);
+    } catch (RuntimeException | Error e) {
+      sessions.remove(sessionId, session);
+      session.opened.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  private void release(String sessionId, Session session) {
+    // A session that failed to open has left the map, or been replaced by a new attempt
+    sessions.computeIfPresent(
+        sessionId,
+        (id, current) -> {
+          if (current == session) {
+            session.users--;
+            session.lastUsed = nanoTime.getAsLong();
+          }
+          return current;
+        });
+  }
+
+  /** Removes the session if nobody uses it and the condition holds, atomically with acquire. */
+  private boolean evictIf(String sessionId, Predicate<Session> condition, String reason) {
+    boolean[] evicted = {false};
+    sessions.computeIfPresent(
+        sessionId,
+        (id, session) -> {
+          if (session.users > 0 || !condition.test(session)) {
+            return session;
+          }
+          evicted[0] = true;
+          if (session.usage.hotMessages() + session.usage.coldMessages() == 0) {
+            known.remove(id);
+          }
+          return null;
+        });
+    if (evicted[0]) {
+      log.info("Evicted session {} ({})", sessionId, reason);
+      releaser.accept(sessionId);
+    }
+    return evicted[0];
+  }
+
+  private static final class Session {
+    private final CompletableFuture<ConversationService> opened = new CompletableFuture<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    // Users and last use change inside compute of the session's map entry only
+    private volatile int users;
+    private volatile long lastUsed;
+    private volatile MemoryUsage usage = MemoryUsage.NONE;
+  }
+}
@@ -0,0 +1,109 @@
+package com.larseckart.core.services;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import com.larseckart.core.domain.ChatMessage;
+import com.larseckart.core.domain.ConversationContext;
+import com.larseckart.core.domain.HistoryListener;
+import com.larseckart.core.ports.session.SessionLog;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+
+/**
+ * Opens conversations that outlive the process. A session is read back from its {@link SessionLog}
+ * only when it is opened, not at startup, and every later change of its history is logged.
+ */
+public class SessionStore {
+
+  /** The session ids accepted, as a regular expression for validation annotations. */
+  public static final String SESSION_ID_PATTERN = "[A-Za-z0-9_-]{1,64}";
+
+  private static final Logger log = getLogger(SessionStore.class);
+  private static final Pattern SESSION_ID = Pattern.compile(SESSION_ID_PATTERN);
+
+  private final SessionLog sessionLog;
+
+  public SessionStore(SessionLog sessionLog) {
+    this.sessionLog = sessionLog;
+  }
+
+  /** Returns the conversation of the session, with the history logged so far. */
+  public ConversationContext open(String sessionId) {
+    requireValid(sessionId);
+    long start = System.nanoTime();
+    List<ChatMessage> messages = sessionLog.load(sessionId);
+    ConversationContext context = new ConversationContext();
+    messages.forEach(context::addMessage);
+    context.setHistoryListener(new LoggingListener(sessionId, context));
+    if (!messages.isEmpty()) {
+      log.info(
+          "Resumed session {} with {} messages in {} ms",
+          sessionId,
+          messages.size(),
+          (System.nanoTime() - start) / 1_000_000);
+    }
+    return context;
+  }
+
+  /** Releases what the log holds open for a session that has left memory. */
+  public void release(String sessionId) {
+    sessionLog.release(sessionId);
+  }
+
+  public Set<String> sessionIds() {
+    return sessionLog.sessionIds();
+  }
+
+  /** Session ids become file names and URL parts, so only a safe alphabet is accepted. */
+  public static boolean isValidSessionId(String sessionId) {
+    return sessionId != null && SESSION_ID.matcher(sessionId).matches();
+  }
+
+  private static void requireValid(String sessionId) {
+    if (!isValidSessionId(sessionId)) {
+      throw new IllegalArgumentException("Invalid session id: " + sessionId);
+    }
+  }
+
+  /**
+   * Logs every change of a session's history. When a write fails, the log lacks a message, so the
+   * next change writes the whole history again instead of appending to it.
+   */
+  private final class LoggingListener implements HistoryListener {
+    private final String sessionId;
+    private final ConversationContext context;
+    private volatile boolean incomplete;
+
+    private LoggingListener(String sessionId, ConversationContext context) {
+      this.sessionId = sessionId;
+      this.context = context;
+    }
+
+    @Override
+    public void appended(ChatMessage message) {
+      if (incomplete) {
+        replaced(context.getHistory());
+      } else {
+        watch(sessionLog.append(sessionId, message));
+      }
+    }
+
+    @Override
+    public void replaced(List<ChatMessage> history) {
+      incomplete = false;
+      watch(sessionLog.rewrite(sessionId, history));
+    }
+
+    private void watch(CompletableFuture<Void> written) {
+      written.exceptionally(
+          e -> {
+            incomplete = true;
+            log.error("Could not log session {}, rewriting it on its next change", sessionId, e);
+            return null;
+          });
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package com.larseckart.core.services;
+
+import com.larseckart.core.domain.ChatMessage;
+import com.larseckart.core.domain.ContextWindow;
+import com.larseckart.core.domain.MessageBlock;
+import com.larseckart.core.domain.PersistentVector;
+import com.larseckart.core.domain.TokenEstimator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces large tool outputs that a later result makes redundant with a short note before the
+ * history is sent. An output is redundant when a later one has the same content, or answers the
+ * same call of the same tool, such as reading the same file again. The note names the {@code
+ * tool_use_id} of the result that is sent in full, and the conversation itself keeps every output.
+ *
+ * <p>Only settled turns are elided, which the caller advances in batches of {@link #BATCH_TURNS}
+ * turns: between batches the elided history is the same prefix from request to request, so the
+ * provider can keep reading it from its prompt cache.
+ */
+final class StaleToolOutputs {
+
+  static final int BATCH_TURNS = 8;
+
+  private StaleToolOutputs() {}
+
+  /**
+   * Returns the window with redundant outputs among its first messages replaced.
+   *
+   * @param settledMessages how many messages at the start of the window may be elided; later ones
+   *     are neither elided nor make earlier ones redundant
+   */
+  static ContextWindow elide(ContextWindow window, int settledMessages) {
+    List<ChatMessage> messages = window.messages();
+    int settled = Math.min(settledMessages, messages.size());
+    Map<String, String> callsById = new HashMap<>();
+    for (ChatMessage message : messages.subList(0, Math.max(0, settled))) {
+      for (MessageBlock block : message.blocks()) {
+        if (block instanceof MessageBlock.ToolUse toolUse) {
+          callsById.put(toolUse.id(), toolUse.name() + " " + toolUse.input());
+        }
+      }
+    }
+
+    // Walking backwards, the first output seen for a digest or call is the one kept in full
+    Map<String, String> keptByDigest = new HashMap<>();
+    Map<String, String> keptByCall = new HashMap<>();
+    Map<Integer, ChatMessage> replaced = new HashMap<>();
+    long savedTokens = 0;
+    for (int i = settled - 1; i >= 0; i--) {
+      ChatMessage message = messages.get(i);
+      if (message.isToolResults()) {
+        ChatMessage elided = elide(message, callsById, keptByDigest, keptByCall);
+        if (elided != message) {
+          replaced.put(i, elided);
+          savedTokens += TokenEstimator.rawEstimate(message) - TokenEstimator.rawEstimate(elided);
+        }
+      }
+    }
+    if (replaced.isEmpty()) {
+      return window;
+    }
+
+    int first = messages.size();
+    for (int index : replaced.keySet()) {
+      first = Math.min(first, index);
+    }
+    PersistentVector<ChatMessage> result = PersistentVector.copyOf(messages).take(first);
+    for (int i = first; i < messages.size(); i++) {
+      result = result.append(replaced.getOrDefault(i, messages.get(i)));
+    }
+    return new ContextWindow(
+        result, window.estimatedTokens() - savedTokens, window.omittedMessages());
+  }
+
+  private static ChatMessage elide(
+      ChatMessage message,
+      Map<String, String> callsById,
+      Map<String, String> keptByDigest,
+      Map<String, String> keptByCall) {
+    List<MessageBlock> blocks = new ArrayList<>(message.blocks().size());
+    boolean changed = false;
+    for (MessageBlock block : message.blocks()) {
+      MessageBlock.ToolResult result = (MessageBlock.ToolResult) block;
+      if (result.digest() == null) {
+        blocks.add(result);
+        continue;
+      }
+      String call = callsById.get(result.toolUseId());
+      String sameContent = keptByDigest.get(result.digest());
+      String sameCall = call == null ? null : keptByCall.get(call);
+      if (sameContent != null) {
+        blocks.add(
+            result.withContent(
+                "[Unchanged output, shown in full in the result for " + sameContent + "]"));
+        changed = true;
+      } else if (sameCall != null) {
+        blocks.add(
+            result.withContent(
+                "[Outdated output, the same "
+                    + result.toolName()
+                    + " call is answered again in the result for "
+                    + sameCall
+                    + "]"));
+        changed = true;
+      } else {
+        keptByDigest.put(result.digest(), result.toolUseId());
+        if (call != null) {
+          keptByCall.put(call, result.toolUseId());
+        }
+        blocks.add(result);
+      }
+    }
+    return changed ? new ChatMessage(message.role(), message.content(), blocks) : message;
+  }
+}
@@ -0,0 +1,139 @@
+package com.larseckart.core.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.larseckart.core.domain.TokenEstimator;
+import com.larseckart.core.domain.Tool;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Immutable, versioned snapshot of the registered tools. Each tool's JSON schema is parsed and
+ * compiled once when it is added to the catalog, and provider specific representations built from
+ * a catalog are cached on it. Registering a tool produces a new catalog, which naturally
+ * invalidates those caches.
+ */
+public final class ToolCatalog {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  /** A registered tool together with its parsed and compiled parameter schema. */
+  public record ToolDefinition(
+      Tool tool, JsonNode schema, Map<String, Object> inputSchema, CompiledSchema validator) {
+
+    public String name() {
+      return tool.getName();
+    }
+
+    public String description() {
+      return tool.getDescription();
+    }
+  }
+
+  private final long version;
+  private final Map<String, ToolDefinition> definitions;
+  private final List<Map<String, Object>> claudeFunctionDefinitions;
+  private final long rawEstimate;
+  private final Map<String, Object> providerViews = new ConcurrentHashMap<>();
+
+  private ToolCatalog(long version, Map<String, ToolDefinition> definitions) {
+    this.version = version;
+    this.definitions = Collections.unmodifiableMap(definitions);
+    this.claudeFunctionDefinitions = buildClaudeFunctionDefinitions(definitions.values());
+    this.rawEstimate = estimate(definitions.values());
+  }
+
+  static ToolCatalog empty() {
+    return new ToolCatalog(0, new LinkedHashMap<>());
+  }
+
+  /**
+   * Returns a catalog containing the given tool, replacing any tool with the same name. Returns
+   * this catalog unchanged if the very same tool instance is already registered.
+   */
+  ToolCatalog with(Tool tool) {
+    ToolDefinition existing = definitions.get(tool.getName());
+    if (existing != null && existing.tool() == tool) {
+      return this;
+    }
+
+    Map<String, ToolDefinition> updated = new LinkedHashMap<>(definitions);
+    updated.put(tool.getName(), define(tool));
+    return new ToolCatalog(version + 1, updated);
+  }
+
+  public long version() {
+    return version;
+  }
+
+  public ToolDefinition get(String name) {
+    return definitions.get(name);
+  }
+
+  public Collection<ToolDefinition> definitions() {
+    return definitions.values();
+  }
+
+  public List<Map<String, Object>> claudeFunctionDefinitions() {
+    return claudeFunctionDefinitions;
+  }
+
+  /** Raw token estimate of the names, descriptions and schemas of all tools. */
+  public long rawEstimate() {
+    return rawEstimate;
+  }
+
+  /**
+   * Returns the provider specific representation of this catalog stored under the given key,
+   * building it on first access. The builder runs at most once per catalog version.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T providerView(String key, Function<ToolCatalog, T> builder) {
+    return (T) providerViews.computeIfAbsent(key, k -> builder.apply(this));
+  }
+
+  private static ToolDefinition define(Tool tool) {
+    try {
+      JsonNode schemaNode = MAPPER.readTree(tool.getParameterSchema());
+      @SuppressWarnings("unchecked")
+      Map<String, Object> inputSchema = MAPPER.convertValue(schemaNode, Map.class);
+      return new ToolDefinition(
+          tool,
+          schemaNode,
+          Collections.unmodifiableMap(inputSchema),
+          CompiledSchema.compile(schemaNode));
+    } catch (Exception e) {
+      throw new RuntimeException("Failed to parse parameter schema for tool: " + tool.getName(), e);
+    }
+  }
+
+  private static long estimate(Collection<ToolDefinition> definitions) {
+    long tokens = 0;
+    for (ToolDefinition definition : definitions) {
+      tokens +=
+          TokenEstimator.rawEstimate(definition.name())
+              + TokenEstimator.rawEstimate(definition.description())
+              + TokenEstimator.rawEstimate(definition.schema().toString());
+    }
+    return tokens;
+  }
+
+  private static List<Map<String, Object>> buildClaudeFunctionDefinitions(
+      Collection<ToolDefinition> definitions) {
+    List<Map<String, Object>> functionDefinitions = new ArrayList<>();
+    for (ToolDefinition definition : definitions) {
+      functionDefinitions.add(
+          Map.of(
+              "name", definition.name(),
+              "description", definition.description(),
+              "input_schema", definition.inputSchema()));
+    }
+    return List.copyOf(functionDefinitions);
+  }
+}
@@ -0,0 +1,43 @@
+package com.larseckart.core.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.time.Duration;
+
+/**
+ * The result of one tool call as seen by the tool runtime. Calls that did not complete normally are
+ * rendered for the model as a small JSON object, so it can tell a timeout from a failing tool.
+ */
+public record ToolOutcome(String toolName, Status status, String output, Duration elapsed) {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  public enum Status {
+    COMPLETED,
+    FAILED,
+    TIMED_OUT,
+    CANCELLED
+  }
+
+  public static ToolOutcome completed(String toolName, String output, Duration elapsed) {
+    return new ToolOutcome(toolName, Status.COMPLETED, output, elapsed);
+  }
+
+  public boolean isError() {
+    return status != Status.COMPLETED || output.startsWith("Error:");
+  }
+
+  /** Returns the text sent back to the model for this call. */
+  public String toModelText() {
+    if (status == Status.COMPLETED) {
+      return output;
+    }
+
+    ObjectNode report = MAPPER.createObjectNode();
+    report.put("tool", toolName);
+    report.put("status", status.name().toLowerCase());
+    report.put("elapsed_ms", elapsed.toMillis());
+    report.put("message", output);
+    return "Error: " + report;
+  }
+}
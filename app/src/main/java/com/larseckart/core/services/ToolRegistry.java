@@ -1,60 +1,98 @@
 package com.larseckart.core.services;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.larseckart.core.domain.Tool;
+import com.larseckart.core.services.ToolCatalog.ToolDefinition;
+import com.larseckart.core.tools.EditFileTool;
+import com.larseckart.core.tools.ListFilesTool;
+import com.larseckart.core.tools.ReadFileTool;
+import com.larseckart.core.tools.RunTestsTool;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import org.springframework.stereotype.Service;
 
 @Service
 public class ToolRegistry {
 
-  private final Map<String, Tool> tools = new ConcurrentHashMap<>();
+  private volatile ToolCatalog catalog = ToolCatalog.empty();
 
-  public void registerTool(Tool tool) {
-    tools.put(tool.getName(), tool);
+  /** Creates a registry with the built-in file and test tools that every provider offers. */
+  public static ToolRegistry withDefaultTools() {
+    ToolRegistry registry = new ToolRegistry();
+    registry.registerTool(new ReadFileTool());
+    registry.registerTool(new ListFilesTool());
+    registry.registerTool(new EditFileTool());
+    registry.registerTool(new RunTestsTool());
+    return registry;
+  }
+
+  public synchronized void registerTool(Tool tool) {
+    catalog = catalog.with(tool);
   }
 
   public Tool getTool(String name) {
-    return tools.get(name);
+    ToolDefinition definition = catalog.get(name);
+    return definition == null ? null : definition.tool();
   }
 
   public Collection<Tool> getAllTools() {
-    return new ArrayList<>(tools.values());
+    List<Tool> tools = new ArrayList<>();
+    for (ToolDefinition definition : catalog.definitions()) {
+      tools.add(definition.tool());
+    }
+    return tools;
   }
 
-  public List<Map<String, Object>> convertToClaudeFunctionDefinitions() {
-    List<Map<String, Object>> functionDefinitions = new ArrayList<>();
-    ObjectMapper mapper = new ObjectMapper();
+  /** Returns the current immutable tool catalog. */
+  public ToolCatalog getCatalog() {
+    return catalog;
+  }
 
-    for (Tool tool : tools.values()) {
-      Map<String, Object> functionDef = new HashMap<>();
-      functionDef.put("name", tool.getName());
-      functionDef.put("description", tool.getDescription());
+  public List<Map<String, Object>> convertToClaudeFunctionDefinitions() {
+    return catalog.claudeFunctionDefinitions();
+  }
 
-      try {
-        // Parse the JSON schema string
-        JsonNode schemaNode = mapper.readTree(tool.getParameterSchema());
-        @SuppressWarnings("unchecked")
-        Map<String, Object> inputSchema = mapper.convertValue(schemaNode, Map.class);
-
-        functionDef.put("input_schema", inputSchema);
-        functionDefinitions.add(functionDef);
-      } catch (Exception e) {
-        throw new RuntimeException(
-            "Failed to parse parameter schema for tool: " + tool.getName(), e);
-      }
-    }
+  public String routeFunctionCall(String toolName, JsonNode parameters) {
+    ToolDefinition definition = definitionOf(toolName);
+    String errors = validationErrors(definition, parameters);
+    return errors != null ? errors : definition.tool().execute(parameters);
+  }
 
-    return functionDefinitions;
+  /**
+   * Routes a call like {@link #routeFunctionCall(String, JsonNode)}, serving read-only calls from
+   * the given cache. Each caller owns its cache, so concurrent conversations never see or clear
+   * each other's results.
+   */
+  public String routeFunctionCall(
+      String toolName, JsonNode parameters, ToolResultCache resultCache) {
+    ToolDefinition definition = definitionOf(toolName);
+    String errors = validationErrors(definition, parameters);
+    return errors != null ? errors : resultCache.execute(definition.tool(), parameters);
   }
 
-  public String routeFunctionCall(String toolName, JsonNode parameters) {
-    Tool tool = getTool(toolName);
-    if (tool == null) {
+  private ToolDefinition definitionOf(String toolName) {
+    ToolDefinition definition = catalog.get(toolName);
+    if (definition == null) {
       throw new IllegalArgumentException("Unknown tool: " + toolName);
     }
-    return tool.execute(parameters);
+    return definition;
+  }
+
+  // Rejects bad calls before any I/O happens, so the model can correct them right away
+  private static String validationErrors(ToolDefinition definition, JsonNode parameters) {
+    List<String> errors = definition.validator().validate(parameters);
+    if (errors.isEmpty()) {
+      try {
+        definition.tool().validate(parameters);
+      } catch (IllegalArgumentException e) {
+        errors = List.of(e.getMessage());
+      }
+    }
+    if (errors.isEmpty()) {
+      return null;
+    }
+    return "Error: Invalid parameters for tool '"
+        + definition.name()
+        + "': "
+        + String.join("; ", errors);
   }
 }
@@ -0,0 +1,127 @@
+package com.larseckart.core.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.larseckart.core.domain.Tool;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Memoizes results of read-only tool calls, keyed by tool name and canonicalized parameters. A
+ * mutating call drops every entry whose path overlaps the mutated path, or all entries if the
+ * mutation has no known path. Error results are never cached.
+ */
+public class ToolResultCache {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  /** Cumulative cache statistics. */
+  public record Stats(long hits, long misses, long invalidations) {
+
+    public double hitRate() {
+      long lookups = hits + misses;
+      return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+  }
+
+  private record Entry(String result, Path path) {}
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private final AtomicLong generation = new AtomicLong();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder invalidations = new LongAdder();
+
+  /** Executes the tool, serving read-only calls from the cache where possible. */
+  public String execute(Tool tool, JsonNode parameters) {
+    Optional<Path> path = tool.targetPath(parameters);
+    if (!tool.isReadOnly()) {
+      // Bump before and after so reads racing with this mutation never cache what they saw
+      generation.incrementAndGet();
+      try {
+        return tool.execute(parameters);
+      } finally {
+        invalidate(path.orElse(null));
+      }
+    }
+
+    String key = key(tool.getName(), parameters);
+    Entry cached = entries.get(key);
+    if (cached != null) {
+      hits.increment();
+      return cached.result();
+    }
+
+    misses.increment();
+    long observedGeneration = generation.get();
+    String result = tool.execute(parameters);
+    if (!result.startsWith("Error:") && generation.get() == observedGeneration) {
+      entries.put(key, new Entry(result, path.orElse(null)));
+    }
+    return result;
+  }
+
+  /** Drops all cached results, e.g. at the start of a new turn. */
+  public void clear() {
+    generation.incrementAndGet();
+    entries.clear();
+  }
+
+  public Stats stats() {
+    return new Stats(hits.sum(), misses.sum(), invalidations.sum());
+  }
+
+  private void invalidate(Path mutatedPath) {
+    generation.incrementAndGet();
+    entries
+        .entrySet()
+        .removeIf(
+            entry -> {
+              if (overlaps(entry.getValue().path(), mutatedPath)) {
+                invalidations.increment();
+                return true;
+              }
+              return false;
+            });
+  }
+
+  private static boolean overlaps(Path cachedPath, Path mutatedPath) {
+    if (cachedPath == null || mutatedPath == null) {
+      return true;
+    }
+    return cachedPath.startsWith(mutatedPath) || mutatedPath.startsWith(cachedPath);
+  }
+
+  static String key(String toolName, JsonNode parameters) {
+    JsonNode canonical = parameters == null ? MAPPER.nullNode() : canonicalize(parameters);
+    return toolName + '\0' + canonical;
+  }
+
+  private static JsonNode canonicalize(JsonNode node) {
+    if (node.isObject()) {
+      List<String> fieldNames = new ArrayList<>();
+      node.fieldNames().forEachRemaining(fieldNames::add);
+      fieldNames.sort(null);
+
+      ObjectNode sorted = MAPPER.createObjectNode();
+      for (String fieldName : fieldNames) {
+        sorted.set(fieldName, canonicalize(node.get(fieldName)));
+      }
+      return sorted;
+    }
+    if (node.isArray()) {
+      ArrayNode array = MAPPER.createArrayNode();
+      node.forEach(element -> array.add(canonicalize(element)));
+      return array;
+    }
+    return node;
+  }
+}
@@ -0,0 +1,273 @@
+package com.larseckart.core.services;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.larseckart.core.domain.Tool;
+import com.larseckart.core.domain.ai.AIToolUse;
+import com.larseckart.core.ports.StreamListener;
+import com.larseckart.core.services.ToolOutcome.Status;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+
+/**
+ * Runs the tool uses of a single model turn concurrently on virtual threads. Each call waits only
+ * for earlier calls it conflicts with: two calls conflict when at least one of them mutates and
+ * their target paths overlap, which acts as an ordered read/write lock per path. Independent reads
+ * and listings therefore run in parallel while edits to the same file keep their request order.
+ *
+ * <p>Every call is bounded by its tool's {@link Tool#timeout()} and by the deadline of the turn.
+ * Calls that run over are interrupted and reported as {@link Status#TIMED_OUT}; calls still pending
+ * when a turn is cancelled are reported as {@link Status#CANCELLED}.
+ */
+public class ToolScheduler {
+
+  private static final Logger log = getLogger(ToolScheduler.class);
+  static final Duration DEFAULT_TURN_TIMEOUT = Duration.ofMinutes(3);
+
+  private final ToolRegistry toolRegistry;
+  private final Duration turnTimeout;
+
+  public ToolScheduler(ToolRegistry toolRegistry) {
+    this(toolRegistry, DEFAULT_TURN_TIMEOUT);
+  }
+
+  public ToolScheduler(ToolRegistry toolRegistry, Duration turnTimeout) {
+    this.toolRegistry = toolRegistry;
+    this.turnTimeout = turnTimeout;
+  }
+
+  /** Executes all tool uses and returns their outcomes in request order. */
+  public List<ToolOutcome> executeAll(List<AIToolUse> toolUses) {
+    return executeAll(toolUses, StreamListener.NONE);
+  }
+
+  /**
+   * Executes all tool uses, reporting each call's start and end to the listener, and returns their
+   * outcomes in request order. Interrupting the calling thread cancels the turn.
+   */
+  public List<ToolOutcome> executeAll(List<AIToolUse> toolUses, StreamListener listener) {
+    return executeAll(toolUses, listener, new ToolResultCache());
+  }
+
+  /**
+   * Executes all tool uses like {@link #executeAll(List, StreamListener)}, serving read-only calls
+   * from the given cache, e.g. one shared by all tool rounds of a conversation turn.
+   */
+  public List<ToolOutcome> executeAll(
+      List<AIToolUse> toolUses, StreamListener listener, ToolResultCache resultCache) {
+    try (Turn turn = openTurn(listener, resultCache)) {
+      for (AIToolUse toolUse : toolUses) {
+        turn.submit(toolUse);
+      }
+      return turn.awaitOutcomes();
+    }
+  }
+
+  /**
+   * Opens a scope for the tool calls of one turn. Closing the turn waits for every call submitted
+   * to it, which is bounded by the turn deadline, so no call outlives the turn that started it.
+   */
+  public Turn openTurn() {
+    return openTurn(StreamListener.NONE);
+  }
+
+  /** Opens a turn whose calls report their start and end to the given listener. */
+  public Turn openTurn(StreamListener listener) {
+    return openTurn(listener, new ToolResultCache());
+  }
+
+  /** Opens a turn whose read-only calls are served from the given cache. */
+  public Turn openTurn(StreamListener listener, ToolResultCache resultCache) {
+    return new Turn(System.nanoTime() + turnTimeout.toNanos(), listener, resultCache);
+  }
+
+  private record Access(boolean readOnly, Path path) {
+
+    static Access of(Tool tool, JsonNode parameters) {
+      if (tool == null) {
+        return new Access(true, null);
+      }
+      return new Access(tool.isReadOnly(), tool.targetPath(parameters).orElse(null));
+    }
+
+    boolean conflictsWith(Access other) {
+      if (readOnly && other.readOnly) {
+        return false;
+      }
+      if (path == null || other.path == null) {
+        return true;
+      }
+      return path.startsWith(other.path) || other.path.startsWith(path);
+    }
+  }
+
+  private record Scheduled(Access access, CompletableFuture<ToolOutcome> future) {}
+
+  /** The tool calls of a single model turn. */
+  public final class Turn implements AutoCloseable {
+
+    private final long deadlineNanos;
+    private final StreamListener listener;
+    private final ToolResultCache resultCache;
+    // Waits for dependencies and enforces deadlines, always finishes by the turn deadline
+    private final ExecutorService supervisors = Executors.newVirtualThreadPerTaskExecutor();
+    // Runs the tools themselves, stragglers are interrupted but never waited for
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private final List<Scheduled> scheduled = new ArrayList<>();
+    private volatile boolean cancelled;
+
+    private Turn(long deadlineNanos, StreamListener listener, ToolResultCache resultCache) {
+      this.deadlineNanos = deadlineNanos;
+      this.listener = listener;
+      this.resultCache = resultCache;
+    }
+
+    /**
+     * Schedules a tool use behind every earlier call of this turn it conflicts with. The returned
+     * future always completes normally with the call's outcome.
+     */
+    public synchronized CompletableFuture<ToolOutcome> submit(AIToolUse toolUse) {
+      Tool tool = toolRegistry.getTool(toolUse.toolName());
+      Access access = Access.of(tool, toolUse.parameters());
+
+      List<CompletableFuture<ToolOutcome>> dependencies = new ArrayList<>();
+      for (Scheduled earlier : scheduled) {
+        if (earlier.access().conflictsWith(access)) {
+          dependencies.add(earlier.future());
+        }
+      }
+
+      CompletableFuture<ToolOutcome> future =
+          CompletableFuture.allOf(dependencies.toArray(CompletableFuture[]::new))
+              .handle((ignored, failure) -> null)
+              .thenApplyAsync(ignored -> runReported(tool, toolUse), supervisors);
+      scheduled.add(new Scheduled(access, future));
+      return future;
+    }
+
+    /**
+     * Waits for every call submitted so far and returns their outcomes in submission order.
+     * Interrupting the waiting thread cancels the turn.
+     */
+    public List<ToolOutcome> awaitOutcomes() {
+      List<CompletableFuture<ToolOutcome>> futures;
+      synchronized (this) {
+        futures = scheduled.stream().map(Scheduled::future).toList();
+      }
+
+      List<ToolOutcome> outcomes = new ArrayList<>();
+      for (CompletableFuture<ToolOutcome> future : futures) {
+        try {
+          outcomes.add(future.get());
+        } catch (InterruptedException e) {
+          cancel();
+          Thread.currentThread().interrupt();
+          outcomes.add(future.join());
+        } catch (ExecutionException e) {
+          throw new IllegalStateException("Tool outcome future failed", e.getCause());
+        }
+      }
+      return outcomes;
+    }
+
+    /** Interrupts all running calls of this turn and skips the ones not yet started. */
+    public void cancel() {
+      cancelled = true;
+      workers.shutdownNow();
+    }
+
+    private ToolOutcome runReported(Tool tool, AIToolUse toolUse) {
+      report(() -> listener.onToolStart(toolUse.toolName()));
+      ToolOutcome outcome = run(tool, toolUse);
+      report(
+          () ->
+              listener.onToolEnd(
+                  outcome.toolName(), outcome.status().name().toLowerCase(), outcome.elapsed()));
+      return outcome;
+    }
+
+    // A failing listener, e.g. a disconnected client, must not break the turn's outcomes
+    private void report(Runnable event) {
+      try {
+        event.run();
+      } catch (RuntimeException e) {
+        log.debug("Tool event listener failed", e);
+      }
+    }
+
+    private ToolOutcome run(Tool tool, AIToolUse toolUse) {
+      String toolName = toolUse.toolName();
+      long start = System.nanoTime();
+      if (cancelled) {
+        return outcome(toolName, Status.CANCELLED, "Turn was cancelled", start);
+      }
+
+      long remaining = deadlineNanos - start;
+      long limit = tool == null ? remaining : Math.min(tool.timeout().toNanos(), remaining);
+      if (limit <= 0) {
+        return outcome(toolName, Status.TIMED_OUT, "Turn deadline exceeded before start", start);
+      }
+
+      log.info("Executing tool: {}", toolName);
+      log.debug("Tool parameters: {}", toolUse.parameters());
+      Future<String> execution;
+      try {
+        execution =
+            workers.submit(
+                () -> toolRegistry.routeFunctionCall(toolName, toolUse.parameters(), resultCache));
+      } catch (RuntimeException e) {
+        return outcome(toolName, Status.CANCELLED, "Turn was cancelled", start);
+      }
+
+      try {
+        String result = execution.get(limit, TimeUnit.NANOSECONDS);
+        log.debug("Tool {} executed successfully, result length: {}", toolName, result.length());
+        return ToolOutcome.completed(toolName, result, elapsedSince(start));
+      } catch (TimeoutException e) {
+        execution.cancel(true);
+        log.warn("Tool {} timed out after {} ms", toolName, limit / 1_000_000);
+        return outcome(
+            toolName,
+            Status.TIMED_OUT,
+            "No result within " + Duration.ofNanos(limit).toMillis() + " ms, call was interrupted",
+            start);
+      } catch (CancellationException e) {
+        return outcome(toolName, Status.CANCELLED, "Turn was cancelled", start);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        log.error("Tool {} failed", toolName, cause);
+        return outcome(toolName, Status.FAILED, String.valueOf(cause.getMessage()), start);
+      } catch (InterruptedException e) {
+        execution.cancel(true);
+        Thread.currentThread().interrupt();
+        return outcome(toolName, Status.CANCELLED, "Turn was cancelled", start);
+      }
+    }
+
+    @Override
+    public void close() {
+      supervisors.close();
+      workers.shutdownNow();
+    }
+  }
+
+  private static ToolOutcome outcome(String toolName, Status status, String message, long start) {
+    return new ToolOutcome(toolName, status, message, elapsedSince(start));
+  }
+
+  private static Duration elapsedSince(long startNanos) {
+    return Duration.ofNanos(System.nanoTime() - startNanos);
+  }
+}
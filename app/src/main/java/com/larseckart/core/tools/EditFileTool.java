@@ -4,9 +4,11 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.larseckart.core.domain.Tool;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,6 +54,21 @@ public class EditFileTool implements Tool {
         }""";
   }
 
+  @Override
+  public Optional<Path> targetPath(JsonNode parameters) {
+    if (parameters == null || !parameters.path("path").isTextual()) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(
+          Paths.get(System.getProperty("user.dir"))
+              .resolve(parameters.get("path").asText())
+              .normalize());
+    } catch (InvalidPathException e) {
+      return Optional.empty();
+    }
+  }
+
   @Override
   public void validate(JsonNode parameters) {
     if (parameters == null) {
@@ -0,0 +1,96 @@
+package com.larseckart.core.tools;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/** Reads the JUnit XML reports Gradle writes for each test class. */
+public class JUnitXmlReport {
+
+  public record TestFailure(String testClass, String testName, String message) {}
+
+  public record SuiteResult(
+      String testClass,
+      int tests,
+      int failures,
+      int errors,
+      int skipped,
+      long durationMillis,
+      List<TestFailure> failedTests) {}
+
+  private JUnitXmlReport() {}
+
+  public static SuiteResult parse(Path reportFile) throws IOException {
+    Document document;
+    try (InputStream input = Files.newInputStream(reportFile)) {
+      document = newDocumentBuilder().parse(input);
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException("Malformed JUnit XML report: " + reportFile, e);
+    }
+
+    Element suite = document.getDocumentElement();
+    List<TestFailure> failedTests = new ArrayList<>();
+    NodeList testCases = suite.getElementsByTagName("testcase");
+    for (int i = 0; i < testCases.getLength(); i++) {
+      Element testCase = (Element) testCases.item(i);
+      Element problem = firstChild(testCase, "failure");
+      if (problem == null) {
+        problem = firstChild(testCase, "error");
+      }
+      if (problem != null) {
+        failedTests.add(
+            new TestFailure(
+                testCase.getAttribute("classname"),
+                testCase.getAttribute("name"),
+                problem.getAttribute("message")));
+      }
+    }
+
+    return new SuiteResult(
+        suite.getAttribute("name"),
+        intAttribute(suite, "tests"),
+        intAttribute(suite, "failures"),
+        intAttribute(suite, "errors"),
+        intAttribute(suite, "skipped"),
+        Math.round(doubleAttribute(suite, "time") * 1000),
+        List.copyOf(failedTests));
+  }
+
+  private static DocumentBuilder newDocumentBuilder() throws Exception {
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+    factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+    return factory.newDocumentBuilder();
+  }
+
+  private static Element firstChild(Element parent, String tagName) {
+    for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child instanceof Element element && tagName.equals(element.getTagName())) {
+        return element;
+      }
+    }
+    return null;
+  }
+
+  private static int intAttribute(Element element, String name) {
+    String value = element.getAttribute(name);
+    return value.isEmpty() ? 0 : Integer.parseInt(value);
+  }
+
+  private static double doubleAttribute(Element element, String name) {
+    String value = element.getAttribute(name);
+    return value.isEmpty() ? 0 : Double.parseDouble(value);
+  }
+}
@@ -6,9 +6,11 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.larseckart.core.domain.Tool;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Comparator;
+import java.util.Optional;
 import java.util.stream.Stream;
 import org.slf4j.Logger;
 
@@ -45,6 +47,24 @@ public class ListFilesTool implements Tool {
       """;
   }
 
+  @Override
+  public boolean isReadOnly() {
+    return true;
+  }
+
+  @Override
+  public Optional<Path> targetPath(JsonNode parameters) {
+    String pathStr =
+        parameters != null && parameters.path("path").isTextual()
+            ? parameters.get("path").asText()
+            : ".";
+    try {
+      return Optional.of(Paths.get(pathStr).toAbsolutePath().normalize());
+    } catch (InvalidPathException e) {
+      return Optional.empty();
+    }
+  }
+
   @Override
   public void validate(JsonNode parameters) {
     if (parameters == null) {
@@ -7,9 +7,11 @@ import com.larseckart.core.domain.Tool;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Optional;
 import org.slf4j.Logger;
 
 /**
@@ -100,6 +102,23 @@ public class ReadFileTool implements Tool {
     }
   }
 
+  @Override
+  public boolean isReadOnly() {
+    return true;
+  }
+
+  @Override
+  public Optional<Path> targetPath(JsonNode parameters) {
+    if (parameters == null || !parameters.path("path").isTextual()) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(resolveFilePath(parameters.get("path").asText()).normalize());
+    } catch (InvalidPathException e) {
+      return Optional.empty();
+    }
+  }
+
   @Override
   public void validate(JsonNode parameters) {
     if (parameters == null) {
@@ -10,18 +10,23 @@ import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 
 /**
  * A tool that runs all Gradle tests using gradlew with a 1-minute timeout. Provides detailed output
- * including test results, failures, and execution summary.
+ * including test results, failures, and execution summary. In sharded mode the test classes are
+ * spread across parallel Gradle workers, see {@link ShardedTestRunner}.
  */
 public class RunTestsTool implements Tool {
 
   private static final Logger log = getLogger(RunTestsTool.class);
   private static final int TIMEOUT_MINUTES = 1;
   private static final int MAX_OUTPUT_LENGTH = 10000;
+  private static final Duration OUTPUT_DRAIN_TIMEOUT = Duration.ofSeconds(5);
+  // Every shard is a Gradle JVM of its own, so there are never more than there are cores
+  private static final int MAX_SHARDS = Runtime.getRuntime().availableProcessors();
 
   @Override
   public String getName() {
@@ -31,7 +36,8 @@ public class RunTestsTool implements Tool {
   @Override
   public String getDescription() {
     return "Runs all Gradle tests using gradlew. "
-        + "Provides detailed output including test results, failures, and execution summary.";
+        + "Provides detailed output including test results, failures, and execution summary. "
+        + "Set 'sharded' to split CPU-bound suites across parallel worker processes.";
   }
 
   @Override
@@ -40,9 +46,21 @@ public class RunTestsTool implements Tool {
       {
         "$schema": "https://json-schema.org/draft/2020-12/schema",
         "type": "object",
-        "properties": {},
+        "properties": {
+          "sharded": {
+            "type": "boolean",
+            "description": "Split test classes across parallel Gradle workers balanced by historical duration. Defaults to false"
+          },
+          "shards": {
+            "type": "integer",
+            "minimum": 1,
+            "maximum": %d,
+            "description": "Number of parallel workers in sharded mode, at most the number of available processors. Defaults to that number"
+          }
+        },
         "additionalProperties": false
-      }""";
+      }"""
+        .formatted(MAX_SHARDS);
   }
 
   @Override
@@ -62,6 +80,17 @@ public class RunTestsTool implements Tool {
 
       // Build the command
       String gradlewCommand = Files.exists(gradlewScript) ? "./gradlew" : "gradlew.bat";
+
+      if (parameters != null && parameters.path("sharded").asBoolean(false)) {
+        int shards =
+            parameters.has("shards")
+                ? Math.min(parameters.get("shards").asInt(), MAX_SHARDS)
+                : MAX_SHARDS;
+        log.info("Running tests in sharded mode with up to {} shards", shards);
+        return new ShardedTestRunner(currentDir, gradlewCommand)
+            .run(shards, Duration.ofMinutes(TIMEOUT_MINUTES));
+      }
+
       ProcessBuilder processBuilder = new ProcessBuilder(gradlewCommand, "test");
       log.info("Running all tests");
 
@@ -72,33 +101,30 @@ public class RunTestsTool implements Tool {
       Process process = processBuilder.start();
       StringBuilder output = new StringBuilder();
 
-      // Read output
-      try (BufferedReader reader =
-          new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-        String line;
-        while ((line = reader.readLine()) != null) {
-          output.append(line).append("\n");
-          // Prevent excessive output
-          if (output.length() > MAX_OUTPUT_LENGTH) {
-            output.append("\n[Output truncated - too long]\n");
-            break;
-          }
-        }
+      // Read output on a separate thread so waiting for the process stays interruptible
+      Thread outputReader = Thread.ofVirtual().start(() -> readOutput(process, output));
+
+      // Wait for completion with timeout, killing the whole process tree if we are cancelled
+      boolean finished;
+      try {
+        finished = process.waitFor(TIMEOUT_MINUTES, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        destroyProcessTree(process);
+        Thread.currentThread().interrupt();
+        return "Error: Test execution was cancelled.\n\nPartial output:\n" + snapshot(output);
       }
 
-      // Wait for completion with timeout
-      boolean finished = process.waitFor(TIMEOUT_MINUTES, TimeUnit.MINUTES);
-
       if (!finished) {
-        process.destroyForcibly();
+        destroyProcessTree(process);
         return "Error: Test execution timed out after "
             + TIMEOUT_MINUTES
             + " minute.\n\nPartial output:\n"
-            + output.toString();
+            + snapshot(output);
       }
 
+      outputReader.join(OUTPUT_DRAIN_TIMEOUT);
       int exitCode = process.exitValue();
-      String result = output.toString();
+      String result = snapshot(output);
 
       // Format the response
       StringBuilder response = new StringBuilder();
@@ -125,8 +151,60 @@ public class RunTestsTool implements Tool {
     }
   }
 
+  @Override
+  public Duration timeout() {
+    // Leave the tool's own timeout room to report partial output before the runtime steps in
+    return Duration.ofMinutes(TIMEOUT_MINUTES).plusSeconds(30);
+  }
+
+  private static void readOutput(Process process, StringBuilder output) {
+    try (BufferedReader reader =
+        new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+      String line;
+      boolean truncated = false;
+      while ((line = reader.readLine()) != null) {
+        // Keep draining after truncation so the process never blocks on a full pipe
+        if (truncated) {
+          continue;
+        }
+        synchronized (output) {
+          output.append(line).append("\n");
+          // Prevent excessive output
+          if (output.length() > MAX_OUTPUT_LENGTH) {
+            output.append("\n[Output truncated - too long]\n");
+            truncated = true;
+          }
+        }
+      }
+    } catch (IOException e) {
+      log.debug("Stopped reading test output", e);
+    }
+  }
+
+  private static String snapshot(StringBuilder output) {
+    synchronized (output) {
+      return output.toString();
+    }
+  }
+
+  private static void destroyProcessTree(Process process) {
+    process.descendants().forEach(ProcessHandle::destroyForcibly);
+    process.destroyForcibly();
+  }
+
   @Override
   public void validate(JsonNode parameters) {
-    // No parameters to validate
+    if (parameters == null) {
+      return;
+    }
+
+    if (parameters.has("sharded") && !parameters.get("sharded").isBoolean()) {
+      throw new IllegalArgumentException("Parameter 'sharded' must be a boolean");
+    }
+
+    if (parameters.has("shards")
+        && (!parameters.get("shards").isInt() || parameters.get("shards").asInt() < 1)) {
+      throw new IllegalArgumentException("Parameter 'shards' must be a positive integer");
+    }
   }
 }
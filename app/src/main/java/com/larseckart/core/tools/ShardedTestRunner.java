@@ -0,0 +1,352 @@
+package com.larseckart.core.tools;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import com.larseckart.core.tools.JUnitXmlReport.SuiteResult;
+import com.larseckart.core.tools.JUnitXmlReport.TestFailure;
+import com.larseckart.core.tools.TestShardPlanner.Shard;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+
+/**
+ * Runs a Gradle test suite split across several worker processes. Test classes are balanced using
+ * the persisted {@link TestTimingHistory}, every shard runs as its own Gradle invocation with a
+ * {@code --tests} filter, and the per-shard JUnit XML reports are merged into a single summary.
+ */
+public class ShardedTestRunner {
+
+  private static final Logger log = getLogger(ShardedTestRunner.class);
+
+  static final String HISTORY_FILE = ".gradle/agent-test-timings.properties";
+  private static final String SHARD_REPORT_DIR = "test-shards";
+  private static final int MAX_LOG_TAIL_LINES = 40;
+
+  private static final String INIT_SCRIPT =
+      """
+      def shard = gradle.startParameter.projectProperties['agentShard']
+      allprojects {
+        tasks.withType(Test).configureEach {
+          filter.failOnNoMatchingTests = false
+          reports.html.required = false
+          reports.junitXml.outputLocation = layout.buildDirectory.dir("test-shards/shard-${shard}/xml")
+          binaryResultsDirectory = layout.buildDirectory.dir("test-shards/shard-${shard}/binary")
+          outputs.upToDateWhen { false }
+        }
+      }
+      """;
+
+  private final Path projectDir;
+  private final String gradlewCommand;
+  private final TestShardPlanner planner = new TestShardPlanner();
+
+  public ShardedTestRunner(Path projectDir, String gradlewCommand) {
+    this.projectDir = projectDir;
+    this.gradlewCommand = gradlewCommand;
+  }
+
+  private record ShardRun(Shard shard, Process process, Path logFile, long startNanos) {}
+
+  /** The results of all shards, added up. */
+  record Totals(int tests, int failures, int errors, int skipped, List<TestFailure> failedTests) {}
+
+  public String run(int requestedShards, Duration timeout)
+      throws IOException, InterruptedException {
+    long start = System.nanoTime();
+    long deadline = start + timeout.toNanos();
+
+    List<String> testClasses = discoverTestClasses();
+    if (testClasses.isEmpty()) {
+      return "Error: No test classes found under src/test/java.";
+    }
+
+    TestTimingHistory history = TestTimingHistory.load(projectDir.resolve(HISTORY_FILE));
+    List<Shard> shards = planner.plan(testClasses, history.durations(), requestedShards);
+    log.info("Running {} test classes in {} shards", testClasses.size(), shards.size());
+
+    // Compile once up front so the workers do not race each other on compilation
+    Path compileLog = Files.createTempFile("agent-test-compile", ".log");
+    Process compile = startGradle(List.of("testClasses"), compileLog);
+    try {
+      if (!compile.waitFor(remaining(deadline), TimeUnit.NANOSECONDS)) {
+        return "Error: Compiling tests timed out.\n\nPartial output:\n" + tail(compileLog);
+      }
+      if (compile.exitValue() != 0) {
+        return "❌ Test compilation failed with exit code "
+            + compile.exitValue()
+            + ".\n\nOutput:\n"
+            + tail(compileLog);
+      }
+    } finally {
+      // Also reached when the waiting thread is interrupted, so cancellation kills the build
+      if (compile.isAlive()) {
+        destroyTree(compile);
+      }
+      Files.deleteIfExists(compileLog);
+    }
+
+    Path initScript = Files.createTempFile("agent-test-shards", ".gradle");
+    Files.writeString(initScript, INIT_SCRIPT, StandardCharsets.UTF_8);
+    deleteShardReports();
+
+    List<ShardRun> runs = new ArrayList<>();
+    try {
+      for (Shard shard : shards) {
+        List<String> arguments = new ArrayList<>();
+        arguments.add("test");
+        arguments.add("--init-script");
+        arguments.add(initScript.toString());
+        arguments.add("-PagentShard=" + shard.index());
+        for (String testClass : shard.testClasses()) {
+          arguments.add("--tests");
+          arguments.add(testClass);
+        }
+        Path logFile = Files.createTempFile("agent-test-shard-" + shard.index(), ".log");
+        runs.add(new ShardRun(shard, startGradle(arguments, logFile), logFile, System.nanoTime()));
+      }
+
+      StringBuilder shardSummary = new StringBuilder();
+      boolean timedOut = false;
+      for (ShardRun run : runs) {
+        boolean finished = run.process().waitFor(remaining(deadline), TimeUnit.NANOSECONDS);
+        long elapsedMillis = (System.nanoTime() - run.startNanos()) / 1_000_000;
+        if (!finished) {
+          timedOut = true;
+          destroyTree(run.process());
+        }
+        shardSummary
+            .append("- shard ")
+            .append(run.shard().index())
+            .append(": ")
+            .append(run.shard().testClasses().size())
+            .append(" classes, estimated ")
+            .append(formatMillis(run.shard().estimatedMillis()))
+            .append(", ")
+            .append(finished ? "exit code " + run.process().exitValue() : "timed out")
+            .append(" after ")
+            .append(formatMillis(elapsedMillis))
+            .append("\n");
+      }
+
+      return mergeReports(runs, history, shardSummary, timedOut, start);
+    } finally {
+      for (ShardRun run : runs) {
+        if (run.process().isAlive()) {
+          destroyTree(run.process());
+        }
+        Files.deleteIfExists(run.logFile());
+      }
+      Files.deleteIfExists(initScript);
+    }
+  }
+
+  private String mergeReports(
+      List<ShardRun> runs,
+      TestTimingHistory history,
+      StringBuilder shardSummary,
+      boolean timedOut,
+      long start)
+      throws IOException {
+    Totals totals =
+        collectReports(runs.stream().map(run -> run.shard().index()).toList(), history);
+    int failures = totals.failures();
+    int errors = totals.errors();
+    List<TestFailure> failedTests = totals.failedTests();
+
+    boolean workersFailed =
+        runs.stream().anyMatch(run -> run.process().isAlive() || run.process().exitValue() != 0);
+    long wallMillis = (System.nanoTime() - start) / 1_000_000;
+
+    StringBuilder response = new StringBuilder();
+    response
+        .append("Sharded test execution completed in ")
+        .append(formatMillis(wallMillis))
+        .append(" using ")
+        .append(runs.size())
+        .append(" shards.\n");
+    response
+        .append("Tests: ")
+        .append(totals.tests())
+        .append(", Failures: ")
+        .append(failures)
+        .append(", Errors: ")
+        .append(errors)
+        .append(", Skipped: ")
+        .append(totals.skipped())
+        .append("\n\n");
+
+    if (timedOut) {
+      response.append("❌ Test execution timed out, results are partial.\n\n");
+    } else if (failures == 0 && errors == 0 && !workersFailed) {
+      response.append("✅ All tests passed!\n\n");
+    } else {
+      response.append("❌ Some tests failed or there were errors.\n\n");
+    }
+
+    if (!failedTests.isEmpty()) {
+      response.append("Failed tests:\n");
+      for (TestFailure failure : failedTests) {
+        response
+            .append("- ")
+            .append(failure.testClass())
+            .append(" > ")
+            .append(failure.testName());
+        if (!failure.message().isEmpty()) {
+          response.append(": ").append(failure.message());
+        }
+        response.append("\n");
+      }
+      response.append("\n");
+    }
+
+    response.append("Shards:\n").append(shardSummary);
+
+    // Failures outside of test execution (e.g. build errors) leave no report behind
+    if (workersFailed && failedTests.isEmpty()) {
+      for (ShardRun run : runs) {
+        if (!run.process().isAlive() && run.process().exitValue() != 0) {
+          response
+              .append("\nOutput of shard ")
+              .append(run.shard().index())
+              .append(":\n")
+              .append(tail(run.logFile()));
+        }
+      }
+    }
+    return response.toString();
+  }
+
+  /**
+   * Adds up the JUnit XML reports of the given shards and records each class's duration in the
+   * timing history, which is saved for the next run to balance by.
+   */
+  Totals collectReports(List<Integer> shardIndexes, TestTimingHistory history)
+      throws IOException {
+    int tests = 0;
+    int failures = 0;
+    int errors = 0;
+    int skipped = 0;
+    List<TestFailure> failedTests = new ArrayList<>();
+
+    for (int shardIndex : shardIndexes) {
+      for (Path report : shardReports(shardIndex)) {
+        SuiteResult suite;
+        try {
+          suite = JUnitXmlReport.parse(report);
+        } catch (IOException e) {
+          log.warn("Skipping unreadable test report {}", report, e);
+          continue;
+        }
+        tests += suite.tests();
+        failures += suite.failures();
+        errors += suite.errors();
+        skipped += suite.skipped();
+        failedTests.addAll(suite.failedTests());
+        history.record(suite.testClass(), suite.durationMillis());
+      }
+    }
+
+    try {
+      history.save();
+    } catch (IOException e) {
+      log.warn("Failed to persist test timing history", e);
+    }
+    return new Totals(tests, failures, errors, skipped, List.copyOf(failedTests));
+  }
+
+  List<String> discoverTestClasses() throws IOException {
+    List<String> testClasses = new ArrayList<>();
+    try (Stream<Path> files = Files.walk(projectDir)) {
+      files
+          .filter(Files::isRegularFile)
+          .filter(this::isTestSource)
+          .forEach(file -> testClasses.add(toClassName(file)));
+    }
+    testClasses.sort(Comparator.naturalOrder());
+    return testClasses;
+  }
+
+  private boolean isTestSource(Path file) {
+    String name = file.getFileName().toString();
+    if (!name.endsWith("Test.java") && !name.endsWith("Tests.java")) {
+      return false;
+    }
+    String path = file.toString().replace('\\', '/');
+    return path.contains("/src/test/java/") && !path.contains("/build/");
+  }
+
+  private String toClassName(Path file) {
+    String path = file.toString().replace('\\', '/');
+    String relative = path.substring(path.indexOf("/src/test/java/") + "/src/test/java/".length());
+    return relative.substring(0, relative.length() - ".java".length()).replace('/', '.');
+  }
+
+  private Process startGradle(List<String> arguments, Path logFile) throws IOException {
+    List<String> command = new ArrayList<>();
+    command.add(gradlewCommand);
+    command.add("--no-configuration-cache");
+    command.addAll(arguments);
+
+    ProcessBuilder processBuilder = new ProcessBuilder(command);
+    processBuilder.directory(projectDir.toFile());
+    processBuilder.redirectErrorStream(true);
+    processBuilder.redirectOutput(logFile.toFile());
+    return processBuilder.start();
+  }
+
+  private List<Path> shardReports(int shardIndex) throws IOException {
+    String marker = "/build/" + SHARD_REPORT_DIR + "/shard-" + shardIndex + "/xml/";
+    try (Stream<Path> files = Files.walk(projectDir)) {
+      return files
+          .filter(Files::isRegularFile)
+          .filter(file -> file.getFileName().toString().endsWith(".xml"))
+          .filter(file -> file.toString().replace('\\', '/').contains(marker))
+          .toList();
+    }
+  }
+
+  private void deleteShardReports() throws IOException {
+    List<Path> reportDirs;
+    try (Stream<Path> dirs = Files.walk(projectDir)) {
+      reportDirs =
+          dirs.filter(Files::isDirectory)
+              .filter(dir -> dir.getFileName().toString().equals(SHARD_REPORT_DIR))
+              .filter(dir -> dir.getParent().getFileName().toString().equals("build"))
+              .toList();
+    }
+    for (Path reportDir : reportDirs) {
+      try (Stream<Path> contents = Files.walk(reportDir)) {
+        for (Path path : contents.sorted(Comparator.reverseOrder()).toList()) {
+          Files.deleteIfExists(path);
+        }
+      }
+    }
+  }
+
+  private static void destroyTree(Process process) {
+    process.descendants().forEach(ProcessHandle::destroyForcibly);
+    process.destroyForcibly();
+  }
+
+  private static long remaining(long deadlineNanos) {
+    return Math.max(0, deadlineNanos - System.nanoTime());
+  }
+
+  private static String tail(Path logFile) throws IOException {
+    List<String> lines = Files.readAllLines(logFile, StandardCharsets.UTF_8);
+    int from = Math.max(0, lines.size() - MAX_LOG_TAIL_LINES);
+    return String.join("\n", lines.subList(from, lines.size())) + "\n";
+  }
+
+  private static String formatMillis(long millis) {
+    return String.format("%.1fs", millis / 1000.0);
+  }
+}
@@ -0,0 +1,70 @@
+package com.larseckart.core.tools;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Partitions test classes into shards of roughly equal expected duration. Uses the longest
+ * processing time first heuristic: classes are sorted by historical duration and each one is
+ * assigned to the currently lightest shard. Classes without history are assumed to take the
+ * average known duration.
+ */
+public class TestShardPlanner {
+
+  static final long DEFAULT_DURATION_MILLIS = 1000;
+
+  public record Shard(int index, List<String> testClasses, long estimatedMillis) {}
+
+  public List<Shard> plan(List<String> testClasses, Map<String, Long> durations, int shardCount) {
+    if (shardCount < 1) {
+      throw new IllegalArgumentException("Shard count must be at least 1");
+    }
+
+    long fallback = averageDuration(durations);
+    List<String> ordered = new ArrayList<>(testClasses);
+    ordered.sort(
+        Comparator.comparingLong((String c) -> durations.getOrDefault(c, fallback))
+            .reversed()
+            .thenComparing(Comparator.naturalOrder()));
+
+    int effectiveShards = Math.max(1, Math.min(shardCount, ordered.size()));
+    List<List<String>> assignments = new ArrayList<>();
+    long[] loads = new long[effectiveShards];
+    PriorityQueue<Integer> lightest =
+        new PriorityQueue<>(
+            Comparator.comparingLong((Integer i) -> loads[i]).thenComparingInt(i -> i));
+    for (int i = 0; i < effectiveShards; i++) {
+      assignments.add(new ArrayList<>());
+      lightest.add(i);
+    }
+
+    for (String testClass : ordered) {
+      int shard = lightest.poll();
+      assignments.get(shard).add(testClass);
+      loads[shard] += durations.getOrDefault(testClass, fallback);
+      lightest.add(shard);
+    }
+
+    List<Shard> shards = new ArrayList<>();
+    for (int i = 0; i < effectiveShards; i++) {
+      if (!assignments.get(i).isEmpty()) {
+        shards.add(new Shard(shards.size() + 1, List.copyOf(assignments.get(i)), loads[i]));
+      }
+    }
+    return shards;
+  }
+
+  private long averageDuration(Map<String, Long> durations) {
+    if (durations.isEmpty()) {
+      return DEFAULT_DURATION_MILLIS;
+    }
+    long total = 0;
+    for (long duration : durations.values()) {
+      total += duration;
+    }
+    return Math.max(1, total / durations.size());
+  }
+}
@@ -0,0 +1,79 @@
+package com.larseckart.core.tools;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import org.slf4j.Logger;
+
+/**
+ * Persisted per test class timing history used to balance test shards. Durations are smoothed with
+ * an exponentially weighted moving average so a single slow run does not skew the next plan.
+ */
+public class TestTimingHistory {
+
+  private static final Logger log = getLogger(TestTimingHistory.class);
+  private static final double SMOOTHING = 0.5;
+
+  private final Path file;
+  private final Map<String, Long> durations = new HashMap<>();
+
+  private TestTimingHistory(Path file) {
+    this.file = file;
+  }
+
+  public static TestTimingHistory load(Path file) {
+    TestTimingHistory history = new TestTimingHistory(file);
+    if (!Files.exists(file)) {
+      return history;
+    }
+
+    Properties properties = new Properties();
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      properties.load(reader);
+    } catch (IOException e) {
+      log.warn("Failed to read test timing history from {}, starting fresh", file, e);
+      return history;
+    }
+
+    for (String testClass : properties.stringPropertyNames()) {
+      try {
+        history.durations.put(testClass, Long.parseLong(properties.getProperty(testClass)));
+      } catch (NumberFormatException e) {
+        log.debug("Ignoring malformed timing entry for {}", testClass);
+      }
+    }
+    return history;
+  }
+
+  public Map<String, Long> durations() {
+    return Map.copyOf(durations);
+  }
+
+  public void record(String testClass, long observedMillis) {
+    durations.merge(
+        testClass,
+        observedMillis,
+        (previous, observed) -> Math.round(previous * (1 - SMOOTHING) + observed * SMOOTHING));
+  }
+
+  public void save() throws IOException {
+    Properties properties = new Properties();
+    durations.forEach((testClass, millis) -> properties.setProperty(testClass, millis.toString()));
+
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+    try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+      properties.store(writer, "Test class durations in milliseconds");
+    }
+    Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+  }
+}
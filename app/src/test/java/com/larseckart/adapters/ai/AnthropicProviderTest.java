@@ -0,0 +1,204 @@
+package com.larseckart.adapters.ai;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.*;
+
+import com.anthropic.client.AnthropicClient;
+import com.anthropic.client.okhttp.AnthropicOkHttpClient;
+import com.anthropic.models.messages.ContentBlockParam;
+import com.anthropic.models.messages.MessageParam;
+import com.anthropic.models.messages.TextBlockParam;
+import com.anthropic.models.messages.Tool;
+import com.anthropic.models.messages.ToolResultBlockParam;
+import com.anthropic.models.messages.ToolUseBlockParam;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.larseckart.ApiKey;
+import com.larseckart.core.domain.ChatMessage;
+import com.larseckart.core.domain.MessageBlock;
+import com.larseckart.core.domain.Role;
+import com.larseckart.core.domain.ai.AIRequest;
+import com.larseckart.core.domain.ai.AIResponse;
+import com.larseckart.core.services.ToolRegistry;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class AnthropicProviderTest {
+
+  private final AnthropicProvider provider = new AnthropicProvider(ApiKey.forTesting("test-key"));
+
+  @Test
+  void should_place_one_message_breakpoint_on_the_last_block_that_is_sent() {
+    List<ChatMessage> messages =
+        List.of(
+            ChatMessage.user("Read a.txt"),
+            ChatMessage.of(
+                Role.ASSISTANT,
+                List.of(
+                    new MessageBlock.Text("Let me look."),
+                    new MessageBlock.ToolUse(
+                        "toolu_1",
+                        "read_file",
+                        new ObjectMapper().createObjectNode().put("path", "a.txt")))),
+            ChatMessage.toolResults(
+                List.of(new MessageBlock.ToolResult("toolu_1", "read_file", "Hallo", false))),
+            // Blank text is not sent, so it cannot carry the breakpoint
+            ChatMessage.assistant(" "));
+
+    List<MessageParam> params = provider.toMessageParams(messages);
+
+    assertThat(params).hasSize(3);
+    assertThat(breakpoints(params)).containsExactly(false, false, false, true);
+  }
+
+  @Test
+  void should_never_run_tools_the_model_asks_for_when_tool_use_is_off() throws IOException {
+    AtomicInteger executions = new AtomicInteger();
+    ToolRegistry toolRegistry = new ToolRegistry();
+    toolRegistry.registerTool(new CountingTool(executions));
+    List<String> requestBodies = new ArrayList<>();
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/v1/messages", exchange -> answer(exchange, requestBodies));
+    server.start();
+    try {
+      AnthropicClient client =
+          AnthropicOkHttpClient.builder()
+              .apiKey("test-key")
+              .baseUrl("http://localhost:" + server.getAddress().getPort())
+              .maxRetries(0)
+              .build();
+      AnthropicProvider summarizer =
+          new AnthropicProvider(
+              ApiKeyPool.of(ApiKey.forTesting("test-key")), toolRegistry, key -> client);
+
+      AIResponse response =
+          summarizer.sendMessage(
+              new AIRequest(List.of(ChatMessage.user("Summarize")), "Be brief", null, 100)
+                  .withoutToolUse());
+
+      assertThat(response.textContent()).isEqualTo("They edited a.txt.");
+      assertThat(executions).hasValue(0);
+      assertThat(requestBodies).hasSize(1);
+      JsonNode sent = new ObjectMapper().readTree(requestBodies.getFirst());
+      assertThat(sent.path("tool_choice").path("type").asText()).isEqualTo("none");
+      assertThat(sent.path("tools").findValuesAsText("name")).contains("count");
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  void should_place_breakpoints_on_the_system_prompt_and_the_last_tool() {
+    List<TextBlockParam> system = provider.systemBlocks("Be brief");
+    List<Boolean> toolBreakpoints =
+        provider.tools().stream()
+            .map(tool -> tool.tool().flatMap(Tool::cacheControl).isPresent())
+            .toList();
+
+    assertThat(system).hasSize(1);
+    assertThat(system.getFirst().cacheControl()).isPresent();
+    assertThat(toolBreakpoints).hasSizeGreaterThan(1).containsOnlyOnce(true).endsWith(true);
+    assertThat(provider.systemBlocks("")).isEmpty();
+  }
+
+  // Answers with text followed by a tool call, the way a model ignoring the request would
+  private static void answer(HttpExchange exchange, List<String> requestBodies)
+      throws IOException {
+    requestBodies.add(new String(exchange.getRequestBody().readAllBytes(), UTF_8));
+    byte[] body =
+        """
+        event: message_start
+        data: {"type":"message_start","message":{"id":"msg_1","type":"message",\
+        "role":"assistant","model":"claude-haiku-4-5","content":[],"stop_reason":null,\
+        "stop_sequence":null,"usage":{"input_tokens":10,"output_tokens":1,\
+        "cache_creation_input_tokens":0,"cache_read_input_tokens":0}}}
+
+        event: content_block_start
+        data: {"type":"content_block_start","index":0,"content_block":{"type":"text","text":""}}
+
+        event: content_block_delta
+        data: {"type":"content_block_delta","index":0,\
+        "delta":{"type":"text_delta","text":"They edited a.txt."}}
+
+        event: content_block_stop
+        data: {"type":"content_block_stop","index":0}
+
+        event: content_block_start
+        data: {"type":"content_block_start","index":1,\
+        "content_block":{"type":"tool_use","id":"toolu_1","name":"count","input":{}}}
+
+        event: content_block_delta
+        data: {"type":"content_block_delta","index":1,\
+        "delta":{"type":"input_json_delta","partial_json":"{}"}}
+
+        event: content_block_stop
+        data: {"type":"content_block_stop","index":1}
+
+        event: message_delta
+        data: {"type":"message_delta","delta":{"stop_reason":"tool_use","stop_sequence":null},\
+        "usage":{"output_tokens":20}}
+
+        event: message_stop
+        data: {"type":"message_stop"}
+
+        """
+            .getBytes(UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  private static List<Boolean> breakpoints(List<MessageParam> params) {
+    return params.stream()
+        .flatMap(param -> param.content().asBlockParams().stream())
+        .map(AnthropicProviderTest::hasBreakpoint)
+        .toList();
+  }
+
+  private static boolean hasBreakpoint(ContentBlockParam block) {
+    return block.text().flatMap(TextBlockParam::cacheControl).isPresent()
+        || block.toolUse().flatMap(ToolUseBlockParam::cacheControl).isPresent()
+        || block.toolResult().flatMap(ToolResultBlockParam::cacheControl).isPresent();
+  }
+
+  private record CountingTool(AtomicInteger executions)
+      implements com.larseckart.core.domain.Tool {
+
+    @Override
+    public String getName() {
+      return "count";
+    }
+
+    @Override
+    public String getDescription() {
+      return "Counts its executions";
+    }
+
+    @Override
+    public String getParameterSchema() {
+      return "{\"type\":\"object\",\"properties\":{}}";
+    }
+
+    @Override
+    public String execute(JsonNode parameters) {
+      return String.valueOf(executions.incrementAndGet());
+    }
+
+    @Override
+    public void validate(JsonNode parameters) {
+      // Takes no parameters
+    }
+  }
+}
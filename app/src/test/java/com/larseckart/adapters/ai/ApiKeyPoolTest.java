@@ -0,0 +1,103 @@
+package com.larseckart.adapters.ai;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.larseckart.ApiKey;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class ApiKeyPoolTest {
+
+  private final AtomicLong now = new AtomicLong();
+  private final ApiKey first = ApiKey.forTesting("key-aaaa");
+  private final ApiKey second = ApiKey.forTesting("key-bbbb");
+  private final ApiKeyPool pool = new ApiKeyPool(List.of(first, second), now::get);
+
+  @Test
+  void should_take_turns_between_keys_with_equal_headroom() {
+    ApiKey a = keyOfOneCall();
+    ApiKey b = keyOfOneCall();
+    ApiKey c = keyOfOneCall();
+
+    assertThat(List.of(a, b, c)).containsExactly(first, second, first);
+  }
+
+  @Test
+  void should_prefer_the_key_with_more_reported_headroom() {
+    try (ApiKeyPool.Lease lease = pool.acquire()) {
+      lease.reportHeadroom(0.1);
+    }
+
+    assertThat(keyOfOneCall()).isEqualTo(second);
+    assertThat(keyOfOneCall()).isEqualTo(second);
+  }
+
+  @Test
+  void should_spread_concurrent_calls_over_keys() {
+    try (ApiKeyPool.Lease running = pool.acquire()) {
+      assertThat(keyOfOneCall()).isNotEqualTo(running.key());
+    }
+  }
+
+  @Test
+  void should_skip_a_quarantined_key_until_its_quarantine_ends() {
+    try (ApiKeyPool.Lease lease = pool.acquire()) {
+      lease.quarantine(Duration.ofMinutes(1), "invalid key");
+    }
+
+    assertThat(keyOfOneCall()).isEqualTo(second);
+    assertThat(keyOfOneCall()).isEqualTo(second);
+
+    now.addAndGet(Duration.ofMinutes(1).toNanos());
+    assertThat(pool.status()).noneMatch(ApiKeyPool.KeyStatus::quarantined);
+  }
+
+  @Test
+  void should_quarantine_the_key_when_the_call_fails_with_a_key_error() {
+    RuntimeException rejected = new IllegalStateException("401");
+
+    assertThatThrownBy(
+            () ->
+                pool.call(
+                    lease -> {
+                      throw rejected;
+                    },
+                    e -> Optional.of(Duration.ofMinutes(10))))
+        .isSameAs(rejected);
+
+    assertThat(pool.status())
+        .extracting(ApiKeyPool.KeyStatus::quarantined, ApiKeyPool.KeyStatus::inFlight)
+        .containsExactly(tuple(true, 0), tuple(false, 0));
+    assertThat(pool.hasAvailableKey()).isTrue();
+  }
+
+  @Test
+  void should_still_use_a_key_when_all_are_quarantined() {
+    try (ApiKeyPool.Lease lease = pool.acquire()) {
+      lease.quarantine(Duration.ofMinutes(10), "invalid key");
+    }
+    try (ApiKeyPool.Lease lease = pool.acquire()) {
+      lease.quarantine(Duration.ofMinutes(1), "out of quota");
+    }
+
+    assertThat(pool.hasAvailableKey()).isFalse();
+    assertThat(keyOfOneCall()).isEqualTo(second);
+  }
+
+  @Test
+  void should_not_reveal_keys_in_status() {
+    assertThat(pool.status())
+        .extracting(ApiKeyPool.KeyStatus::label)
+        .containsExactly("...aaaa", "...bbbb");
+  }
+
+  private ApiKey keyOfOneCall() {
+    return pool.call(ApiKeyPool.Lease::key, e -> Optional.empty());
+  }
+}
@@ -0,0 +1,67 @@
+package com.larseckart.adapters.ai;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class CircuitBreakerTest {
+
+  private final AtomicLong now = new AtomicLong();
+  private final CircuitBreaker breaker =
+      new CircuitBreaker("test", 3, Duration.ofSeconds(10), now::get);
+
+  @Test
+  void should_open_after_consecutive_failures() {
+    failTimes(3);
+
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    assertThat(breaker.tryAcquire()).isFalse();
+    assertThat(breaker.remainingOpenTime()).isEqualTo(Duration.ofSeconds(10));
+  }
+
+  @Test
+  void should_reset_failure_count_on_success() {
+    failTimes(2);
+    breaker.tryAcquire();
+    breaker.onSuccess();
+    failTimes(2);
+
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+  }
+
+  @Test
+  void should_let_a_single_trial_call_through_after_the_open_period() {
+    failTimes(3);
+    now.addAndGet(Duration.ofSeconds(10).toNanos());
+
+    assertThat(breaker.tryAcquire()).isTrue();
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    assertThat(breaker.tryAcquire()).isFalse();
+
+    breaker.onSuccess();
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+  }
+
+  @Test
+  void should_reopen_when_the_trial_call_fails() {
+    failTimes(3);
+    now.addAndGet(Duration.ofSeconds(10).toNanos());
+
+    breaker.tryAcquire();
+    breaker.onFailure();
+
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+  }
+
+  private void failTimes(int times) {
+    for (int i = 0; i < times; i++) {
+      breaker.tryAcquire();
+      breaker.onFailure();
+    }
+  }
+}
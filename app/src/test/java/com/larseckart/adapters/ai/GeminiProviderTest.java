@@ -0,0 +1,50 @@
+package com.larseckart.adapters.ai;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.genai.types.Schema;
+import java.util.List;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class GeminiProviderTest {
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  @Test
+  void should_convert_tool_parameter_schema_to_gemini_schema() throws Exception {
+    JsonNode schema =
+        mapper.readTree(
+            """
+            {
+              "type": "object",
+              "properties": {
+                "path": {"type": "string", "description": "File to read"},
+                "mode": {"type": "string", "enum": ["fast", "full"]},
+                "names": {"type": "array", "items": {"type": "string"}}
+              },
+              "required": ["path"]
+            }
+            """);
+
+    Schema converted = GeminiProvider.convertToSchema(schema);
+
+    assertThat(converted.type()).isPresent();
+    assertThat(converted.type().get().toString()).isEqualTo("OBJECT");
+    assertThat(converted.required()).contains(List.of("path"));
+    assertThat(converted.properties().orElseThrow()).containsOnlyKeys("path", "mode", "names");
+
+    Schema path = converted.properties().orElseThrow().get("path");
+    assertThat(path.description()).contains("File to read");
+
+    Schema mode = converted.properties().orElseThrow().get("mode");
+    assertThat(mode.enum_()).contains(List.of("fast", "full"));
+
+    Schema names = converted.properties().orElseThrow().get("names");
+    assertThat(names.items()).isPresent();
+  }
+}
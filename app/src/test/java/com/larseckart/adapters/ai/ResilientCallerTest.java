@@ -0,0 +1,167 @@
+package com.larseckart.adapters.ai;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.larseckart.adapters.ai.ResilientCaller.Failure;
+import com.larseckart.adapters.ai.ResilientCaller.RetryPolicy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class ResilientCallerTest {
+
+  private final List<Duration> sleeps = new ArrayList<>();
+  private final ResilientCaller caller =
+      new ResilientCaller(
+          "test",
+          new RetryPolicy(3, Duration.ofMillis(100), Duration.ofSeconds(1), Duration.ofSeconds(30)),
+          new CircuitBreaker("test", 5, Duration.ofSeconds(30)),
+          sleeps::add);
+
+  @Test
+  void should_retry_transient_failures_until_success() {
+    AtomicInteger attempts = new AtomicInteger();
+
+    String result =
+        caller.call(
+            () -> {
+              if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("overloaded");
+              }
+              return "ok";
+            },
+            e -> Failure.transientFailure(Optional.empty()));
+
+    assertThat(result).isEqualTo("ok");
+    assertThat(sleeps).hasSize(2);
+    assertThat(sleeps.get(0)).isLessThanOrEqualTo(Duration.ofMillis(100));
+    assertThat(sleeps.get(1)).isLessThanOrEqualTo(Duration.ofMillis(200));
+    assertThat(caller.stats().retries()).isEqualTo(2);
+  }
+
+  @Test
+  void should_wait_at_least_as_long_as_retry_after() {
+    AtomicInteger attempts = new AtomicInteger();
+
+    caller.call(
+        () -> {
+          if (attempts.incrementAndGet() == 1) {
+            throw new IllegalStateException("rate limited");
+          }
+          return "ok";
+        },
+        e -> Failure.transientFailure(Optional.of(Duration.ofSeconds(2))));
+
+    assertThat(sleeps).hasSize(1);
+    assertThat(sleeps.getFirst()).isGreaterThanOrEqualTo(Duration.ofSeconds(2));
+  }
+
+  @Test
+  void should_not_retry_permanent_failures() {
+    AtomicInteger attempts = new AtomicInteger();
+
+    assertThatThrownBy(
+            () ->
+                caller.call(
+                    () -> {
+                      attempts.incrementAndGet();
+                      throw new IllegalArgumentException("bad request");
+                    },
+                    e -> Failure.permanent()))
+        .isInstanceOf(IllegalArgumentException.class);
+
+    assertThat(attempts.get()).isEqualTo(1);
+    assertThat(sleeps).isEmpty();
+  }
+
+  @Test
+  void should_give_up_after_max_attempts() {
+    AtomicInteger attempts = new AtomicInteger();
+
+    assertThatThrownBy(
+            () ->
+                caller.call(
+                    () -> {
+                      attempts.incrementAndGet();
+                      throw new IllegalStateException("overloaded");
+                    },
+                    e -> Failure.transientFailure(Optional.empty())))
+        .hasMessage("overloaded");
+
+    assertThat(attempts.get()).isEqualTo(3);
+    assertThat(caller.stats().failures()).isEqualTo(1);
+  }
+
+  @Test
+  void should_reject_calls_while_the_circuit_is_open() {
+    ResilientCaller fragile = fragile();
+    assertThatThrownBy(
+        () ->
+            fragile.call(
+                () -> {
+                  throw new IllegalStateException("down");
+                },
+                e -> Failure.transientFailure(Optional.empty())));
+
+    assertThatThrownBy(() -> fragile.call(() -> "never called", e -> Failure.permanent()))
+        .isInstanceOf(ResilientCaller.CircuitOpenException.class);
+    assertThat(fragile.stats().rejected()).isEqualTo(1);
+    assertThat(fragile.stats().breakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+  }
+
+  @Test
+  void should_not_open_the_circuit_for_rejected_keys() {
+    ResilientCaller fragile = fragile();
+
+    for (int i = 0; i < 3; i++) {
+      assertThatThrownBy(
+          () ->
+              fragile.call(
+                  () -> {
+                    throw new IllegalStateException("key revoked");
+                  },
+                  e -> Failure.keyRejected(Optional.empty()).notRepeatable()));
+    }
+
+    assertThat(fragile.stats().breakerState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    assertThat(fragile.call(() -> "ok", e -> Failure.permanent())).isEqualTo("ok");
+  }
+
+  @Test
+  void should_count_a_failure_that_cannot_be_repeated_against_the_provider() {
+    ResilientCaller fragile = fragile();
+
+    assertThatThrownBy(
+        () ->
+            fragile.call(
+                () -> {
+                  throw new IllegalStateException("stream broke after output");
+                },
+                e -> Failure.transientFailure(Optional.empty()).notRepeatable()));
+
+    assertThat(sleeps).isEmpty();
+    assertThat(fragile.stats().breakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+  }
+
+  @Test
+  void should_parse_retry_after_in_seconds_and_milliseconds() {
+    assertThat(ResilientCaller.parseRetryAfter("3")).contains(Duration.ofSeconds(3));
+    assertThat(ResilientCaller.parseRetryAfterMillis("1500.0")).contains(Duration.ofMillis(1500));
+    assertThat(ResilientCaller.parseRetryAfter("soon")).isEmpty();
+  }
+
+  // No retries, and a single provider failure opens the circuit
+  private ResilientCaller fragile() {
+    return new ResilientCaller(
+        "fragile",
+        new RetryPolicy(1, Duration.ZERO, Duration.ZERO, Duration.ZERO),
+        new CircuitBreaker("fragile", 1, Duration.ofMinutes(1)),
+        sleeps::add);
+  }
+}
@@ -0,0 +1,187 @@
+package com.larseckart.adapters.ai;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.anthropic.core.ObjectMappers;
+import com.anthropic.models.messages.RawMessageStreamEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.larseckart.core.domain.Tool;
+import com.larseckart.core.ports.StreamListener;
+import com.larseckart.core.services.ToolOutcome;
+import com.larseckart.core.services.ToolRegistry;
+import com.larseckart.core.services.ToolResultCache;
+import com.larseckart.core.services.ToolScheduler;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class StreamingToolDispatcherTest {
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final ToolRegistry toolRegistry = new ToolRegistry();
+  private final CountDownLatch echoStarted = new CountDownLatch(1);
+  private StreamingToolDispatcher dispatcher;
+
+  @BeforeEach
+  void setUp() {
+    toolRegistry.registerTool(
+        new FakeTool(
+            "echo",
+            parameters -> {
+              echoStarted.countDown();
+              return "echo " + parameters;
+            }));
+    dispatcher =
+        new StreamingToolDispatcher(
+            new ToolScheduler(toolRegistry), mapper, StreamListener.NONE, new ToolResultCache());
+  }
+
+  @AfterEach
+  void tearDown() {
+    dispatcher.close();
+  }
+
+  @Test
+  void should_dispatch_a_call_with_its_streamed_input_as_soon_as_its_block_closes()
+      throws InterruptedException {
+    dispatcher.accept(textStart(0));
+    dispatcher.accept(blockStop(0));
+    dispatcher.accept(toolUseStart(1, "toolu_1", "echo"));
+    dispatcher.accept(inputDelta(1, "{\"path\":"));
+    dispatcher.accept(inputDelta(1, "\"a.txt\"}"));
+    assertThat(dispatcher.hasDispatched()).isFalse();
+
+    dispatcher.accept(blockStop(1));
+
+    assertThat(echoStarted.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(dispatcher.awaitOutcomes())
+        .extracting(ToolOutcome::output)
+        .containsExactly("echo {\"path\":\"a.txt\"}");
+  }
+
+  @Test
+  void should_return_outcomes_in_block_order_when_blocks_interleave() {
+    dispatcher.accept(toolUseStart(1, "toolu_1", "echo"));
+    dispatcher.accept(toolUseStart(2, "toolu_2", "echo"));
+    dispatcher.accept(inputDelta(2, "{\"path\":\"b\"}"));
+    dispatcher.accept(inputDelta(1, "{\"path\":\"a\"}"));
+    dispatcher.accept(blockStop(2));
+    dispatcher.accept(blockStop(1));
+
+    assertThat(dispatcher.awaitOutcomes())
+        .extracting(ToolOutcome::output)
+        .containsExactly("echo {\"path\":\"a\"}", "echo {\"path\":\"b\"}");
+  }
+
+  @Test
+  void should_fall_back_to_empty_input_when_the_streamed_json_is_malformed() {
+    dispatcher.accept(toolUseStart(1, "toolu_1", "echo"));
+    dispatcher.accept(inputDelta(1, "{\"path\":"));
+    dispatcher.accept(blockStop(1));
+
+    assertThat(dispatcher.awaitOutcomes())
+        .extracting(ToolOutcome::output)
+        .containsExactly("echo {}");
+  }
+
+  @Test
+  void should_cancel_calls_that_were_never_awaited_on_close() throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    toolRegistry.registerTool(
+        new FakeTool(
+            "hang",
+            parameters -> {
+              started.countDown();
+              try {
+                new CountDownLatch(1).await();
+                return "finished";
+              } catch (InterruptedException e) {
+                interrupted.countDown();
+                return "interrupted";
+              }
+            }));
+    dispatcher.accept(toolUseStart(1, "toolu_1", "hang"));
+    dispatcher.accept(blockStop(1));
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+    dispatcher.close();
+
+    assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  private RawMessageStreamEvent textStart(long index) {
+    ObjectNode event = mapper.createObjectNode().put("type", "content_block_start");
+    event.put("index", index).putObject("content_block").put("type", "text").put("text", "");
+    return parse(event);
+  }
+
+  private RawMessageStreamEvent toolUseStart(long index, String id, String name) {
+    ObjectNode event = mapper.createObjectNode().put("type", "content_block_start");
+    ObjectNode block = event.put("index", index).putObject("content_block");
+    block.put("type", "tool_use").put("id", id).put("name", name).putObject("input");
+    return parse(event);
+  }
+
+  private RawMessageStreamEvent inputDelta(long index, String partialJson) {
+    ObjectNode event = mapper.createObjectNode().put("type", "content_block_delta");
+    ObjectNode delta = event.put("index", index).putObject("delta");
+    delta.put("type", "input_json_delta").put("partial_json", partialJson);
+    return parse(event);
+  }
+
+  private RawMessageStreamEvent blockStop(long index) {
+    return parse(mapper.createObjectNode().put("type", "content_block_stop").put("index", index));
+  }
+
+  // Parsed like events of a real stream, so the test does not depend on SDK builders
+  private static RawMessageStreamEvent parse(ObjectNode event) {
+    try {
+      return ObjectMappers.jsonMapper().readValue(event.toString(), RawMessageStreamEvent.class);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Not a stream event: " + event, e);
+    }
+  }
+
+  private record FakeTool(String name, Function<JsonNode, String> body) implements Tool {
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public String getDescription() {
+      return "Test tool " + name;
+    }
+
+    @Override
+    public String getParameterSchema() {
+      return "{\"type\":\"object\",\"properties\":{\"path\":{\"type\":\"string\"}}}";
+    }
+
+    @Override
+    public String execute(JsonNode parameters) {
+      return body.apply(parameters);
+    }
+
+    @Override
+    public void validate(JsonNode parameters) {
+      // The schema is all there is to check
+    }
+
+    @Override
+    public boolean isReadOnly() {
+      return true;
+    }
+  }
+}
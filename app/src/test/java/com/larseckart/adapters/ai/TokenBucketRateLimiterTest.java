@@ -0,0 +1,136 @@
+package com.larseckart.adapters.ai;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.larseckart.adapters.ai.TokenBucketRateLimiter.Headroom;
+import com.larseckart.adapters.ai.TokenBucketRateLimiter.RateLimitExceededException;
+import com.larseckart.core.domain.ChatMessage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class TokenBucketRateLimiterTest {
+
+  private static final Duration MAX_WAIT = Duration.ofSeconds(30);
+
+  private final AtomicLong now = new AtomicLong();
+  private final List<Duration> sleeps = new ArrayList<>();
+  private final TokenBucketRateLimiter limiter =
+      new TokenBucketRateLimiter(
+          "test-model",
+          60,
+          6_000,
+          now::get,
+          nanos -> {
+            sleeps.add(Duration.ofNanos(nanos));
+            now.addAndGet(nanos);
+          });
+
+  @Test
+  void should_admit_calls_within_the_budget_without_waiting() {
+    limiter.acquire(1_000, MAX_WAIT);
+    limiter.acquire(1_000, MAX_WAIT);
+
+    assertThat(sleeps).isEmpty();
+    assertThat(limiter.headroom()).isEqualTo(new Headroom(58, 4_000, 60, 6_000));
+  }
+
+  @Test
+  void should_wait_for_tokens_to_refill() {
+    limiter.acquire(6_000, MAX_WAIT);
+
+    limiter.acquire(1_000, MAX_WAIT);
+
+    // 6000 tokens per minute refill 1000 tokens in ten seconds
+    assertThat(sleeps).containsExactly(Duration.ofSeconds(10));
+  }
+
+  @Test
+  void should_wait_for_a_request_slot() {
+    TokenBucketRateLimiter oneRequestPerMinute =
+        new TokenBucketRateLimiter(
+            "test-model",
+            1,
+            1_000_000,
+            now::get,
+            nanos -> {
+              sleeps.add(Duration.ofNanos(nanos));
+              now.addAndGet(nanos);
+            });
+    oneRequestPerMinute.acquire(10, Duration.ofMinutes(2));
+
+    oneRequestPerMinute.acquire(10, Duration.ofMinutes(2));
+
+    assertThat(sleeps).containsExactly(Duration.ofMinutes(1));
+  }
+
+  @Test
+  void should_fail_fast_when_the_wait_exceeds_the_bound() {
+    limiter.acquire(6_000, MAX_WAIT);
+
+    assertThatThrownBy(() -> limiter.acquire(6_000, MAX_WAIT))
+        .isInstanceOf(RateLimitExceededException.class)
+        .hasMessageContaining("test-model");
+    assertThat(sleeps).isEmpty();
+  }
+
+  @Test
+  void should_admit_an_estimate_larger_than_the_budget_once_the_bucket_is_full() {
+    limiter.acquire(10_000, MAX_WAIT);
+
+    assertThat(sleeps).isEmpty();
+    assertThat(limiter.headroom().tokensAvailable()).isZero();
+  }
+
+  @Test
+  void should_refund_an_overestimate_when_settling() {
+    limiter.acquire(5_000, MAX_WAIT);
+
+    limiter.settle(5_000, 1_000);
+
+    assertThat(limiter.headroom().tokensAvailable()).isEqualTo(5_000);
+  }
+
+  @Test
+  void should_charge_an_underestimate_when_settling() {
+    limiter.acquire(1_000, MAX_WAIT);
+
+    limiter.settle(1_000, 7_000);
+    now.addAndGet(Duration.ofSeconds(10).toNanos());
+
+    // The bucket went 1000 tokens into debt and refilled 1000 since
+    assertThat(limiter.headroom().tokensAvailable()).isZero();
+  }
+
+  @Test
+  void should_not_refill_beyond_one_minute_of_budget() {
+    limiter.acquire(3_000, MAX_WAIT);
+
+    now.addAndGet(Duration.ofMinutes(5).toNanos());
+
+    assertThat(limiter.headroom()).isEqualTo(new Headroom(60, 6_000, 60, 6_000));
+  }
+
+  @Test
+  void should_parse_budgets_per_model_and_skip_malformed_entries() {
+    var limiters = RateLimits.parse("model-a=50:40000, model-b=oops, model-c=10");
+
+    assertThat(limiters).containsOnlyKeys("model-a");
+    assertThat(limiters.get("model-a").headroom())
+        .isEqualTo(new Headroom(50, 40_000, 50, 40_000));
+  }
+
+  @Test
+  void should_estimate_prompt_tokens_and_add_the_output_allowance() {
+    long estimate =
+        RateLimits.estimateTokens(
+            "x".repeat(400), List.of(ChatMessage.user("y".repeat(800))), 1_000);
+
+    assertThat(estimate).isEqualTo(100 + 204 + 1_000);
+  }
+}
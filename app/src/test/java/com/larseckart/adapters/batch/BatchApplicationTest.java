@@ -0,0 +1,59 @@
+package com.larseckart.adapters.batch;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.larseckart.core.domain.ai.BatchPrompt;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class BatchApplicationTest {
+
+  @TempDir Path directory;
+
+  @Test
+  void should_read_prompts_and_backlog_entries() throws IOException {
+    Path input = directory.resolve("prompts.jsonl");
+    Files.writeString(
+        input,
+        """
+        {"id": "first", "prompt": "Say hi"}
+
+        {"request_id": "user-001", "title": "Fix it", "body": "Details"}
+        {"prompt": "No id"}
+        """);
+
+    assertThat(BatchApplication.readPrompts(input))
+        .containsExactly(
+            new BatchPrompt("first", "Say hi"),
+            new BatchPrompt("user-001", "Fix it\n\nDetails"),
+            new BatchPrompt("line-4", "No id"));
+  }
+
+  @Test
+  void should_restrict_ids_to_what_batch_apis_accept() {
+    assertThat(BatchApplication.toBatchId("a b/c", 1)).isEqualTo("a_b_c");
+    assertThat(BatchApplication.toBatchId("x".repeat(80), 1)).hasSize(64);
+  }
+
+  @Test
+  void should_reject_ids_that_are_the_same_once_restricted() throws IOException {
+    Path input = directory.resolve("prompts.jsonl");
+    Files.writeString(
+        input,
+        """
+        {"id": "a.b", "prompt": "First"}
+        {"id": "a_b", "prompt": "Second"}
+        """);
+
+    assertThatThrownBy(() -> BatchApplication.readPrompts(input))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("Line 2")
+        .hasMessageContaining("id a_b, which line 1 already uses");
+  }
+}
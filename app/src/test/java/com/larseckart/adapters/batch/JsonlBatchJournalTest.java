@@ -0,0 +1,59 @@
+package com.larseckart.adapters.batch;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.larseckart.core.domain.ai.AIResponse;
+import com.larseckart.core.domain.ai.BatchResult;
+import com.larseckart.core.domain.ai.TokenUsage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class JsonlBatchJournalTest {
+
+  @TempDir Path directory;
+
+  @Test
+  void should_append_one_json_line_per_result() throws IOException {
+    Path results = directory.resolve("results.jsonl");
+
+    try (JsonlBatchJournal journal = new JsonlBatchJournal(results)) {
+      journal.record(
+          BatchResult.succeeded(
+              "a", new AIResponse("Tere!", List.of(), false, new TokenUsage(10, 5, 0, 2))));
+      journal.record(BatchResult.failed("b", "overloaded"));
+    }
+
+    assertThat(Files.readAllLines(results))
+        .containsExactly(
+            "{\"id\":\"a\",\"status\":\"succeeded\",\"text\":\"Tere!\",\"input_tokens\":12,"
+                + "\"output_tokens\":5}",
+            "{\"id\":\"b\",\"status\":\"failed\",\"error\":\"overloaded\"}");
+  }
+
+  @Test
+  void should_resume_from_existing_results_and_checkpoint() throws IOException {
+    Path results = directory.resolve("results.jsonl");
+    try (JsonlBatchJournal journal = new JsonlBatchJournal(results)) {
+      journal.record(BatchResult.succeeded("a", new AIResponse("ok", List.of(), false)));
+      journal.record(BatchResult.succeeded("b", new AIResponse("ok", List.of(), false)));
+      journal.record(BatchResult.failed("b", "expired"));
+      journal.batchSubmitted("batch-1");
+      journal.batchSubmitted("batch-2");
+      journal.batchCollected("batch-1");
+    }
+    Files.writeString(results, "{\"id\":\"c\",\"sta", StandardOpenOption.APPEND);
+
+    try (JsonlBatchJournal resumed = new JsonlBatchJournal(results)) {
+      assertThat(resumed.succeededIds()).containsExactly("a");
+      assertThat(resumed.openBatchIds()).containsExactly("batch-2");
+    }
+  }
+}
@@ -60,4 +60,15 @@ class ConsoleOutputAdapterTest {
     assertThat(outputStream.toString())
         .isEqualTo("\u001b[95mTheAgent\u001b[0m: \u001b[92m\u001b[0m\n");
   }
+
+  @Test
+  void streamed_response_should_print_the_same_as_a_complete_response() {
+    adapter.beginAssistantResponse();
+    adapter.displayAssistantDelta("Hello, how ");
+    adapter.displayAssistantDelta("can I help you?");
+    adapter.endAssistantResponse();
+
+    assertThat(outputStream.toString())
+        .isEqualTo("\u001b[95mTheAgent\u001b[0m: \u001b[92mHello, how can I help you?\u001b[0m\n");
+  }
 }
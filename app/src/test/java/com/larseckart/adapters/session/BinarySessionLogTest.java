@@ -0,0 +1,146 @@
+package com.larseckart.adapters.session;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.larseckart.core.domain.ChatMessage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class BinarySessionLogTest {
+
+  @TempDir Path directory;
+
+  @Test
+  void should_resume_the_messages_of_a_session_after_a_restart() {
+    List<ChatMessage> messages = new ArrayList<>();
+    for (int turn = 0; turn < 500; turn++) {
+      messages.add(ChatMessage.user("Question " + turn));
+      messages.add(ChatMessage.assistant("Answer " + turn + ", in Tallinn"));
+    }
+    try (BinarySessionLog log = new BinarySessionLog(directory)) {
+      messages.forEach(message -> log.append("alice", message));
+      log.append("bob", ChatMessage.user("Hello"));
+    }
+
+    try (BinarySessionLog log = new BinarySessionLog(directory)) {
+      assertThat(log.load("alice")).isEqualTo(messages);
+      assertThat(log.load("bob")).containsExactly(ChatMessage.user("Hello"));
+      assertThat(log.load("carol")).isEmpty();
+      assertThat(log.sessionIds()).containsExactly("alice", "bob");
+    }
+  }
+
+  @Test
+  void should_cut_off_a_torn_last_record() throws IOException {
+    try (BinarySessionLog log = new BinarySessionLog(directory)) {
+      log.append("alice", ChatMessage.user("Hello"));
+      log.append("alice", ChatMessage.assistant("Hi"));
+    }
+    Path file = directory.resolve("alice.log");
+    byte[] bytes = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+    try (BinarySessionLog log = new BinarySessionLog(directory)) {
+      assertThat(log.load("alice")).containsExactly(ChatMessage.user("Hello"));
+      log.append("alice", ChatMessage.assistant("Hi again"));
+    }
+
+    try (BinarySessionLog log = new BinarySessionLog(directory)) {
+      assertThat(log.load("alice"))
+          .containsExactly(ChatMessage.user("Hello"), ChatMessage.assistant("Hi again"));
+    }
+  }
+
+  @Test
+  void should_ignore_records_with_a_wrong_checksum() throws IOException {
+    try (BinarySessionLog log = new BinarySessionLog(directory)) {
+      log.append("alice", ChatMessage.user("Hello"));
+    }
+    Path file = directory.resolve("alice.log");
+    Files.write(file, new byte[] {0, 0, 0, 2, 1, 2, 3, 4, 9, 9}, StandardOpenOption.APPEND);
+
+    try (BinarySessionLog log = new BinarySessionLog(directory)) {
+      assertThat(log.load("alice")).containsExactly(ChatMessage.user("Hello"));
+    }
+  }
+
+  @Test
+  void should_replace_the_log_when_rewriting_a_session() throws IOException {
+    try (BinarySessionLog log = new BinarySessionLog(directory)) {
+      for (int i = 0; i < 100; i++) {
+        log.append("alice", ChatMessage.user("x".repeat(100)));
+      }
+      long before = Files.size(directory.resolve("alice.log"));
+
+      log.rewrite("alice", List.of(ChatMessage.user("Summary")));
+      log.append("alice", ChatMessage.assistant("Understood"));
+      log.flush();
+
+      assertThat(Files.size(directory.resolve("alice.log"))).isLessThan(before);
+      assertThat(log.load("alice"))
+          .containsExactly(ChatMessage.user("Summary"), ChatMessage.assistant("Understood"));
+    }
+  }
+
+  @Test
+  void should_open_a_released_session_again_when_it_is_appended_to() {
+    try (BinarySessionLog log = new BinarySessionLog(directory)) {
+      log.append("alice", ChatMessage.user("Hello"));
+      log.release("alice");
+      log.append("alice", ChatMessage.assistant("Hi"));
+      log.release("alice");
+
+      assertThat(log.load("alice"))
+          .containsExactly(ChatMessage.user("Hello"), ChatMessage.assistant("Hi"));
+    }
+  }
+
+  @Test
+  void should_fail_only_the_session_that_could_not_be_written() throws IOException {
+    // A directory where the file should be makes every write of bob fail
+    Files.createDirectory(directory.resolve("bob.log"));
+    try (BinarySessionLog log = new BinarySessionLog(directory)) {
+      CompletableFuture<Void> alice = log.append("alice", ChatMessage.user("Hello"));
+      CompletableFuture<Void> bob = log.append("bob", ChatMessage.user("Hello"));
+      log.flush();
+
+      assertThat(alice).isCompleted().isNotCompletedExceptionally();
+      assertThat(bob).isCompletedExceptionally();
+      assertThat(log.load("alice")).containsExactly(ChatMessage.user("Hello"));
+    }
+  }
+
+  @Test
+  void should_take_no_appends_after_a_failed_one_until_the_session_is_rewritten()
+      throws IOException {
+    Path blocker = Files.createDirectory(directory.resolve("bob.log"));
+    try (BinarySessionLog log = new BinarySessionLog(directory)) {
+      CompletableFuture<Void> lost = log.append("bob", ChatMessage.user("Hello"));
+      log.flush();
+      Files.delete(blocker);
+
+      CompletableFuture<Void> afterGap = log.append("bob", ChatMessage.assistant("Hi"));
+      log.flush();
+      assertThat(lost).isCompletedExceptionally();
+      assertThat(afterGap).isCompletedExceptionally();
+
+      log.rewrite("bob", List.of(ChatMessage.user("Hello"), ChatMessage.assistant("Hi"))).join();
+      log.append("bob", ChatMessage.user("Again")).join();
+
+      assertThat(log.load("bob"))
+          .containsExactly(
+              ChatMessage.user("Hello"), ChatMessage.assistant("Hi"), ChatMessage.user("Again"));
+    }
+  }
+}
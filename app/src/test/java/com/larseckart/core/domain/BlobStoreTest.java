@@ -0,0 +1,45 @@
+package com.larseckart.core.domain;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class BlobStoreTest {
+
+  private final BlobStore store = new BlobStore();
+
+  @Test
+  void should_hold_equal_texts_once() {
+    String first = "x".repeat(2_000);
+    String second = new String(first);
+
+    BlobStore.Blob a = store.intern(first);
+    BlobStore.Blob b = store.intern(second);
+
+    assertThat(b.content()).isSameAs(a.content()).isSameAs(first);
+    assertThat(b.digest()).isEqualTo(a.digest()).hasSize(64);
+    assertThat(store.size()).isEqualTo(1);
+  }
+
+  @Test
+  void should_freeze_a_text_once_and_thaw_it_into_the_interned_instance() {
+    String text = "y".repeat(2_000);
+    BlobStore.Blob blob = store.intern(text);
+
+    ColdBlob cold = store.freeze(blob.digest(), text);
+
+    assertThat(store.freeze(blob.digest(), new String(text))).isSameAs(cold);
+    assertThat(store.thaw(cold)).isSameAs(text);
+    assertThat(new BlobStore().thaw(cold)).isEqualTo(text);
+  }
+
+  @Test
+  void should_address_different_texts_by_different_digests() {
+    assertThat(store.intern("a").digest()).isNotEqualTo(store.intern("b").digest());
+    assertThat(store.intern("a").digest())
+        .isEqualTo("ca978112ca1bbdcafac231b39a23dc4da786eff8147c4e72b9807785afee48bb");
+  }
+}
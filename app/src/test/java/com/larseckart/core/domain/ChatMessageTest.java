@@ -0,0 +1,52 @@
+package com.larseckart.core.domain;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class ChatMessageTest {
+
+  @Test
+  void plain_messages_should_have_a_single_text_block() {
+    ChatMessage message = ChatMessage.user("Hello");
+
+    assertThat(message.blocks()).containsExactly(new MessageBlock.Text("Hello"));
+  }
+
+  @Test
+  void empty_messages_should_have_no_blocks() {
+    assertThat(ChatMessage.assistant("").blocks()).isEmpty();
+  }
+
+  @Test
+  void structured_messages_should_take_their_content_from_text_blocks() {
+    ChatMessage message =
+        ChatMessage.of(
+            Role.ASSISTANT,
+            List.of(
+                new MessageBlock.Text("Let me look. "),
+                new MessageBlock.ToolUse(
+                    "toolu_1", "read_file", new ObjectMapper().createObjectNode()),
+                new MessageBlock.Text("Reading now.")));
+
+    assertThat(message.content()).isEqualTo("Let me look. Reading now.");
+    assertThat(message.blocks()).hasSize(3);
+  }
+
+  @Test
+  void tool_results_should_be_sent_as_user_message() {
+    ChatMessage message =
+        ChatMessage.toolResults(
+            List.of(new MessageBlock.ToolResult("toolu_1", "read_file", "content", false)));
+
+    assertThat(message.role()).isEqualTo(Role.USER);
+    assertThat(message.content()).isEmpty();
+    assertThat(message.blocks())
+        .containsExactly(new MessageBlock.ToolResult("toolu_1", "read_file", "content", false));
+  }
+}
@@ -2,6 +2,8 @@ package com.larseckart.core.domain;
 
 import static org.assertj.core.api.Assertions.*;
 
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayNameGeneration;
@@ -91,6 +93,232 @@ class ConversationContextTest {
     assertThat(firstCopy != secondCopy).isTrue(); // Different object references
   }
 
+  @Test
+  void test_get_history_is_not_affected_by_later_messages() {
+    context.addUserMessage(ChatMessage.user("Hello"));
+    List<ChatMessage> snapshot = context.getHistory();
+    ContextWindow window = context.getRecentHistory(Long.MAX_VALUE);
+
+    context.addAssistantMessage(ChatMessage.assistant("Hi"));
+
+    assertThat(snapshot).containsExactly(ChatMessage.user("Hello"));
+    assertThat(window.messages()).containsExactly(ChatMessage.user("Hello"));
+  }
+
+  @Test
+  void should_fork_a_conversation_that_grows_independently() {
+    context.addUserMessage(ChatMessage.user("Hello"));
+    context.addAssistantMessage(ChatMessage.assistant("Hi"));
+
+    ConversationContext fork = context.fork();
+    fork.addUserMessage(ChatMessage.user("Try it this way"));
+    context.addUserMessage(ChatMessage.user("Try it that way"));
+
+    assertThat(fork.getHistory()).hasSize(3).last().isEqualTo(ChatMessage.user("Try it this way"));
+    assertThat(context.getHistory())
+        .hasSize(3)
+        .last()
+        .isEqualTo(ChatMessage.user("Try it that way"));
+    assertThat(fork.getHistory().getFirst()).isSameAs(context.getHistory().getFirst());
+  }
+
+  @Test
+  void should_fork_at_an_earlier_turn() {
+    context.addUserMessage(ChatMessage.user("first"));
+    context.addAssistantMessage(ChatMessage.assistant("one"));
+    context.addUserMessage(ChatMessage.user("second"));
+    context.addAssistantMessage(ChatMessage.assistant("two"));
+
+    ConversationContext fork = context.forkAtTurn(1);
+    fork.addUserMessage(ChatMessage.user("second, differently"));
+
+    assertThat(fork.getHistory())
+        .containsExactly(
+            ChatMessage.user("first"),
+            ChatMessage.assistant("one"),
+            ChatMessage.user("second, differently"));
+    assertThat(fork.turnCount()).isEqualTo(2);
+    assertThat(fork.estimatedTokens())
+        .isEqualTo(
+            TokenEstimator.rawEstimate(ChatMessage.user("first"))
+                + TokenEstimator.rawEstimate(ChatMessage.assistant("one"))
+                + TokenEstimator.rawEstimate(ChatMessage.user("second, differently")));
+    assertThat(context.getHistory()).hasSize(4);
+    assertThatThrownBy(() -> context.forkAtTurn(3)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void should_hold_equal_large_tool_outputs_once() {
+    String output = "line\n".repeat(500);
+    context.addMessage(
+        ChatMessage.toolResults(
+            List.of(new MessageBlock.ToolResult("t1", "read_file", output, false))));
+    context.addMessage(
+        ChatMessage.toolResults(
+            List.of(new MessageBlock.ToolResult("t2", "read_file", new String(output), false))));
+
+    MessageBlock.ToolResult first =
+        (MessageBlock.ToolResult) context.getHistory().get(0).blocks().getFirst();
+    MessageBlock.ToolResult second =
+        (MessageBlock.ToolResult) context.getHistory().get(1).blocks().getFirst();
+    assertThat(second.content()).isSameAs(first.content());
+    assertThat(second.digest()).isNotNull().isEqualTo(first.digest());
+  }
+
+  @Test
+  void should_compress_turns_that_fall_out_of_the_hot_tier() {
+    ConversationContext tiered = new ConversationContext(1);
+    List<ChatMessage> messages =
+        List.of(
+            ChatMessage.user("first " + "x".repeat(2_000)),
+            ChatMessage.assistant("one"),
+            ChatMessage.user("second"),
+            ChatMessage.assistant("two"));
+    messages.forEach(tiered::addMessage);
+
+    MemoryUsage usage = tiered.memoryUsage();
+    assertThat(usage.coldMessages()).isEqualTo(2);
+    assertThat(usage.hotMessages()).isEqualTo(2);
+    assertThat(usage.coldBytes()).isLessThan(2_000);
+    assertThat(tiered.getHistory()).isEqualTo(messages);
+    assertThat(tiered.getRecentHistory(Long.MAX_VALUE).messages()).isEqualTo(messages);
+    assertThat(tiered.getRecentHistory(0).messages()).isEqualTo(messages.subList(2, 4));
+  }
+
+  @Test
+  void should_compress_a_repeated_large_output_once_and_share_it_when_inflated() {
+    ConversationContext tiered = new ConversationContext(1);
+    String output = "public class A {}\n".repeat(3_000);
+    for (int read = 1; read <= 5; read++) {
+      tiered.addUserMessage(ChatMessage.user("Read A.java again"));
+      tiered.addMessage(
+          ChatMessage.toolResults(
+              List.of(
+                  new MessageBlock.ToolResult(
+                      "t" + read, "read_file", new String(output), false))));
+    }
+    tiered.addUserMessage(ChatMessage.user("Thanks"));
+
+    List<ChatMessage> history = tiered.getHistory();
+    List<String> contents = new ArrayList<>();
+    for (int index = 1; index < 10; index += 2) {
+      contents.add(((MessageBlock.ToolResult) history.get(index).blocks().getFirst()).content());
+    }
+
+    assertThat(tiered.memoryUsage().coldMessages()).isEqualTo(10);
+    assertThat(contents).allSatisfy(content -> assertThat(content).isSameAs(contents.getFirst()));
+    assertThat(contents.getFirst()).isEqualTo(output);
+  }
+
+  @Test
+  void should_only_compress_turns_before_the_stable_window() {
+    ConversationContext tiered = new ConversationContext(1);
+    ChatMessage first = ChatMessage.user("a".repeat(400));
+    tiered.addUserMessage(first);
+    tiered.addAssistantMessage(ChatMessage.assistant("a".repeat(400)));
+    tiered.getStableWindow(500);
+    tiered.addUserMessage(ChatMessage.user("b".repeat(400)));
+    tiered.addAssistantMessage(ChatMessage.assistant("b".repeat(400)));
+
+    // The first turn is sent again, so it is neither compressed nor inflated for the request
+    ContextWindow window = tiered.getStableWindow(500);
+    assertThat(tiered.memoryUsage().coldMessages()).isZero();
+    assertThat(window.messages().getFirst()).isSameAs(first);
+
+    // Once the window moves past it, nothing sends it any more
+    tiered.addUserMessage(ChatMessage.user("c".repeat(400)));
+    assertThat(tiered.getStableWindow(500).omittedMessages()).isEqualTo(4);
+    tiered.addUserMessage(ChatMessage.user("d"));
+    assertThat(tiered.memoryUsage().coldMessages()).isEqualTo(4);
+  }
+
+  @Test
+  void should_fork_into_the_compressed_tier() {
+    ConversationContext tiered = new ConversationContext(1);
+    tiered.addUserMessage(ChatMessage.user("first"));
+    tiered.addAssistantMessage(ChatMessage.assistant("one"));
+    tiered.addUserMessage(ChatMessage.user("second"));
+
+    ConversationContext fork = tiered.forkAtTurn(1);
+    fork.addUserMessage(ChatMessage.user("second, differently"));
+
+    assertThat(fork.getHistory())
+        .containsExactly(
+            ChatMessage.user("first"),
+            ChatMessage.assistant("one"),
+            ChatMessage.user("second, differently"));
+  }
+
+  @Test
+  void should_keep_a_running_token_estimate() {
+    context.addUserMessage(ChatMessage.user("x".repeat(40)));
+    context.addAssistantMessage(ChatMessage.assistant("y".repeat(80)));
+
+    assertThat(context.estimatedTokens()).isEqualTo((10 + 4) + (20 + 4));
+  }
+
+  @Test
+  void should_return_the_whole_history_when_it_fits_the_budget() {
+    context.addUserMessage(ChatMessage.user("Hello"));
+    context.addAssistantMessage(ChatMessage.assistant("Tere!"));
+
+    ContextWindow window = context.getRecentHistory(1_000);
+
+    assertThat(window.messages()).isEqualTo(context.getHistory());
+    assertThat(window.estimatedTokens()).isEqualTo(context.estimatedTokens());
+    assertThat(window.omittedMessages()).isZero();
+  }
+
+  @Test
+  void should_leave_out_the_oldest_whole_turns_beyond_the_budget() {
+    ChatMessage toolUse =
+        ChatMessage.of(
+            Role.ASSISTANT,
+            List.of(
+                new MessageBlock.ToolUse(
+                    "t1", "read_file", JsonNodeFactory.instance.objectNode())));
+    ChatMessage toolResult =
+        ChatMessage.toolResults(
+            List.of(new MessageBlock.ToolResult("t1", "read_file", "z".repeat(400), false)));
+    context.addUserMessage(ChatMessage.user("x".repeat(400)));
+    context.addAssistantMessage(ChatMessage.assistant("y".repeat(400)));
+    context.addUserMessage(ChatMessage.user("Read it"));
+    context.addMessage(toolUse);
+    context.addMessage(toolResult);
+    context.addAssistantMessage(ChatMessage.assistant("Done"));
+
+    ContextWindow window = context.getRecentHistory(150);
+
+    // The latest turn fits, with its tool use and result together
+    assertThat(window.messages()).first().isEqualTo(ChatMessage.user("Read it"));
+    assertThat(window.messages()).hasSize(4);
+    assertThat(window.omittedMessages()).isEqualTo(2);
+    assertThat(window.estimatedTokens())
+        .isEqualTo(context.estimatedTokens() - (100 + 4) - (100 + 4));
+  }
+
+  @Test
+  void should_keep_the_start_of_a_stable_window_until_it_overflows_then_trim_in_one_batch() {
+    addTurn("a");
+    addTurn("b");
+    assertThat(context.getStableWindow(500).omittedMessages()).isZero();
+
+    // Three turns of ~208 tokens overflow, so turns are left out until half the budget is left
+    addTurn("c");
+    ContextWindow trimmed = context.getStableWindow(500);
+    assertThat(trimmed.omittedMessages()).isEqualTo(4);
+    assertThat(context.getRecentHistory(500).omittedMessages()).isEqualTo(2);
+
+    // The next turn fits behind the same start, so the previous request is its prefix
+    addTurn("d");
+    ContextWindow next = context.getStableWindow(500);
+    assertThat(next.omittedMessages()).isEqualTo(4);
+    assertThat(next.messages()).startsWith(trimmed.messages().toArray(ChatMessage[]::new));
+
+    addTurn("e");
+    assertThat(context.getStableWindow(500).omittedMessages()).isEqualTo(8);
+  }
+
   @Test
   void test_to_string_empty_context() {
     String result = context.toString();
@@ -105,6 +333,46 @@ class ConversationContextTest {
     assertThat(result).isEqualTo("User: Hello\n");
   }
 
+  @Test
+  void should_find_the_start_of_the_recent_turns() {
+    context.addUserMessage(ChatMessage.user("first"));
+    context.addAssistantMessage(ChatMessage.assistant("one"));
+    context.addUserMessage(ChatMessage.user("second"));
+    context.addAssistantMessage(ChatMessage.assistant("two"));
+
+    assertThat(context.startOfRecentTurns(1)).isEqualTo(2);
+    assertThat(context.startOfRecentTurns(2)).isZero();
+    assertThat(context.startOfRecentTurns(5)).isZero();
+  }
+
+  @Test
+  void should_replace_the_oldest_messages_and_update_the_estimate() {
+    context.addUserMessage(ChatMessage.user("x".repeat(400)));
+    context.addAssistantMessage(ChatMessage.assistant("y".repeat(400)));
+    context.addUserMessage(ChatMessage.user("latest"));
+    List<ChatMessage> oldest = context.getHistory().subList(0, 2);
+
+    boolean replaced = context.replacePrefix(oldest, List.of(ChatMessage.user("summary")));
+
+    assertThat(replaced).isTrue();
+    assertThat(context.getHistory())
+        .containsExactly(ChatMessage.user("summary"), ChatMessage.user("latest"));
+    assertThat(context.estimatedTokens())
+        .isEqualTo(
+            TokenEstimator.rawEstimate(ChatMessage.user("summary"))
+                + TokenEstimator.rawEstimate(ChatMessage.user("latest")));
+    assertThat(context.startOfRecentTurns(1)).isEqualTo(1);
+  }
+
+  @Test
+  void should_not_replace_messages_that_are_no_longer_the_oldest() {
+    context.addUserMessage(ChatMessage.user("Hello"));
+    List<ChatMessage> stale = List.of(ChatMessage.user("Hi"));
+
+    assertThat(context.replacePrefix(stale, List.of(ChatMessage.user("summary")))).isFalse();
+    assertThat(context.getHistory()).containsExactly(ChatMessage.user("Hello"));
+  }
+
   @Test
   void test_to_string_single_assistant_message() {
     context.addAssistantMessage(ChatMessage.assistant("Hi there!"));
@@ -162,4 +430,9 @@ class ConversationContextTest {
 
     assertThat(result).isEqualTo(expected);
   }
+
+  private void addTurn(String letter) {
+    context.addUserMessage(ChatMessage.user(letter.repeat(400)));
+    context.addAssistantMessage(ChatMessage.assistant(letter.repeat(400)));
+  }
 }
@@ -0,0 +1,66 @@
+package com.larseckart.core.domain;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class MessageCodecTest {
+
+  @Test
+  void should_round_trip_every_kind_of_block() {
+    ChatMessage toolUse =
+        ChatMessage.of(
+            Role.ASSISTANT,
+            List.of(
+                new MessageBlock.Text("Let me look, grüß dich"),
+                new MessageBlock.ToolUse(
+                    "t1",
+                    "read_file",
+                    JsonNodeFactory.instance.objectNode().put("path", "a.txt"))));
+    ChatMessage toolResult =
+        ChatMessage.toolResults(
+            List.of(
+                new MessageBlock.ToolResult("t1", "read_file", "content", false, "abc"),
+                new MessageBlock.ToolResult("t2", "edit_file", "failed", true)));
+
+    assertThat(MessageCodec.decode(MessageCodec.encode(toolUse))).isEqualTo(toolUse);
+    assertThat(MessageCodec.decode(MessageCodec.encode(toolResult))).isEqualTo(toolResult);
+  }
+
+  @Test
+  void should_hold_the_text_of_a_decoded_message_once() {
+    ChatMessage message = ChatMessage.assistant("Moin aus Tallinn");
+
+    ChatMessage decoded = MessageCodec.decode(MessageCodec.encode(message));
+
+    assertThat(decoded).isEqualTo(message);
+    MessageBlock.Text text = (MessageBlock.Text) decoded.blocks().getFirst();
+    assertThat(decoded.content()).isSameAs(text.text());
+    assertThat(MessageCodec.encode(message).length).isLessThan(2 * message.content().length());
+  }
+
+  @Test
+  void should_round_trip_through_compression() {
+    ChatMessage message = ChatMessage.user("Tere! ".repeat(1_000));
+
+    CompressedMessage compressed = CompressedMessage.of(message);
+
+    assertThat(compressed.inflate()).isEqualTo(message);
+    assertThat(compressed.bytes()).isLessThan(500);
+  }
+
+  @Test
+  void should_reject_a_truncated_message() {
+    byte[] encoded = MessageCodec.encode(ChatMessage.user("Hello"));
+
+    assertThatThrownBy(() -> MessageCodec.decode(Arrays.copyOf(encoded, 8)))
+        .isInstanceOf(UncheckedIOException.class);
+  }
+}
@@ -0,0 +1,87 @@
+package com.larseckart.core.domain;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class PersistentVectorTest {
+
+  @Test
+  void should_keep_every_element_across_several_tree_levels() {
+    // More than 32 * 32 * 32 elements, so the tree grows several levels deep
+    List<Integer> expected = IntStream.range(0, 40_000).boxed().toList();
+
+    PersistentVector<Integer> vector = PersistentVector.copyOf(expected);
+
+    assertThat(vector).hasSize(40_000).isEqualTo(expected);
+    assertThat(vector.get(1_055)).isEqualTo(1_055);
+    assertThat(vector.get(39_999)).isEqualTo(39_999);
+  }
+
+  @Test
+  void should_leave_earlier_versions_unchanged_when_appending() {
+    PersistentVector<String> first = PersistentVector.<String>empty().append("a");
+    List<PersistentVector<String>> versions = new ArrayList<>(List.of(first));
+    for (int i = 0; i < 100; i++) {
+      versions.add(versions.getLast().append("x" + i));
+    }
+
+    PersistentVector<String> branch = versions.get(40).append("branch");
+
+    assertThat(versions.get(40)).hasSize(41).doesNotContain("branch");
+    assertThat(versions.get(41).getLast()).isEqualTo("x39");
+    assertThat(branch).hasSize(42).endsWith("x39", "branch");
+    assertThat(first).containsExactly("a");
+  }
+
+  @Test
+  void should_drop_leading_elements_and_keep_appending() {
+    PersistentVector<Integer> vector =
+        PersistentVector.copyOf(IntStream.range(0, 100).boxed().toList());
+
+    PersistentVector<Integer> rest = vector.drop(90).append(100);
+
+    assertThat(rest).containsExactly(90, 91, 92, 93, 94, 95, 96, 97, 98, 99, 100);
+    assertThat(vector).hasSize(100);
+  }
+
+  @Test
+  void should_take_a_prefix_that_can_grow_apart_from_the_original() {
+    PersistentVector<Integer> vector =
+        PersistentVector.copyOf(IntStream.range(0, 2_000).boxed().toList());
+
+    PersistentVector<Integer> prefix = vector.take(1_000);
+    for (int i = 0; i < 1_100; i++) {
+      prefix = prefix.append(-i);
+    }
+
+    assertThat(prefix).hasSize(2_100).startsWith(0, 1, 2).endsWith(-1_098, -1_099);
+    assertThat(prefix.get(999)).isEqualTo(999);
+    assertThat(prefix.get(1_000)).isZero();
+    assertThat(vector).isEqualTo(IntStream.range(0, 2_000).boxed().toList());
+  }
+
+  @Test
+  void should_return_a_vector_without_copying_it() {
+    PersistentVector<String> vector = PersistentVector.<String>empty().append("a");
+
+    assertThat(PersistentVector.copyOf(vector)).isSameAs(vector);
+  }
+
+  @Test
+  void should_reject_changes_and_indexes_out_of_bounds() {
+    PersistentVector<String> vector = PersistentVector.<String>empty().append("a");
+
+    assertThatThrownBy(() -> vector.add("b")).isInstanceOf(UnsupportedOperationException.class);
+    assertThatThrownBy(() -> vector.set(0, "b")).isInstanceOf(UnsupportedOperationException.class);
+    assertThatThrownBy(() -> vector.get(1)).isInstanceOf(IndexOutOfBoundsException.class);
+    assertThatThrownBy(() -> vector.drop(1).get(0))
+        .isInstanceOf(IndexOutOfBoundsException.class);
+  }
+}
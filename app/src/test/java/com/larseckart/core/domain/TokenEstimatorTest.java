@@ -0,0 +1,51 @@
+package com.larseckart.core.domain;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.List;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class TokenEstimatorTest {
+
+  private final TokenEstimator estimator = new TokenEstimator();
+
+  @Test
+  void should_estimate_about_four_characters_per_token() {
+    assertThat(TokenEstimator.rawEstimate("")).isZero();
+    assertThat(TokenEstimator.rawEstimate("abc")).isEqualTo(1);
+    assertThat(TokenEstimator.rawEstimate("x".repeat(400))).isEqualTo(100);
+  }
+
+  @Test
+  void should_count_every_block_of_a_message() {
+    ChatMessage results =
+        ChatMessage.toolResults(
+            List.of(
+                new MessageBlock.ToolResult("a", "read_file", "x".repeat(40), false),
+                new MessageBlock.ToolResult("b", "read_file", "y".repeat(80), false)));
+
+    assertThat(TokenEstimator.rawEstimate(results)).isEqualTo(4 + 10 + 20);
+  }
+
+  @Test
+  void should_move_towards_the_observed_ratio() {
+    estimator.calibrate(1_000, 3_500);
+
+    assertThat(estimator.factor()).isEqualTo(1.5);
+    assertThat(estimator.toTokens(1_000)).isEqualTo(1_500);
+    assertThat(estimator.toRawEstimate(1_500)).isEqualTo(1_000);
+  }
+
+  @Test
+  void should_converge_on_a_stable_ratio_and_ignore_outliers() {
+    for (int i = 0; i < 100; i++) {
+      estimator.calibrate(1_000, 1_300);
+    }
+    estimator.calibrate(1_000, 1_000_000);
+
+    assertThat(estimator.factor()).isBetween(1.3, 1.9);
+  }
+}
@@ -0,0 +1,35 @@
+package com.larseckart.core.domain.ai;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.List;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class TokenUsageTest {
+
+  @Test
+  void should_add_usage_of_all_calls_in_a_turn() {
+    AIResponse finalCall = new AIResponse("done", List.of(), false, new TokenUsage(10, 50, 0, 900));
+
+    AIResponse turn = finalCall.plusUsage(new TokenUsage(5, 20, 900, 0));
+
+    assertThat(turn.usage()).isEqualTo(new TokenUsage(15, 70, 900, 900));
+    assertThat(turn.textContent()).isEqualTo("done");
+  }
+
+  @Test
+  void should_compute_cache_hit_rate_over_all_input_tokens() {
+    TokenUsage usage = new TokenUsage(100, 10, 100, 800);
+
+    assertThat(usage.cacheHitRate()).isEqualTo(0.8);
+    assertThat(TokenUsage.NONE.cacheHitRate()).isZero();
+  }
+
+  @Test
+  void responses_without_reported_usage_should_have_none() {
+    assertThat(new AIResponse("Hi there!", List.of(), false).usage()).isEqualTo(TokenUsage.NONE);
+  }
+}
@@ -0,0 +1,310 @@
+package com.larseckart.core.services;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.larseckart.core.domain.ChatMessage;
+import com.larseckart.core.domain.MessageBlock;
+import com.larseckart.core.domain.Tool;
+import com.larseckart.core.domain.ai.AIRequest;
+import com.larseckart.core.domain.ai.AIResponse;
+import com.larseckart.core.domain.ai.AIToolUse;
+import com.larseckart.core.domain.ai.BatchPrompt;
+import com.larseckart.core.domain.ai.BatchResult;
+import com.larseckart.core.domain.ai.TokenUsage;
+import com.larseckart.core.ports.AIProvider;
+import com.larseckart.core.ports.batch.BatchJournal;
+import com.larseckart.core.ports.batch.MessageBatches;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class BatchServiceTest {
+
+  private final InMemoryJournal journal = new InMemoryJournal();
+
+  @Test
+  void should_answer_prompts_locally_with_bounded_concurrency() {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    AIProvider provider =
+        new FakeProvider(
+            request -> {
+              maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+              try {
+                Thread.sleep(20);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              running.decrementAndGet();
+              return reply("answer to " + request.messages().getFirst().content());
+            },
+            null);
+
+    BatchService.Summary summary = new BatchService(provider, journal, 2).run(prompts(6));
+
+    assertThat(summary).isEqualTo(new BatchService.Summary(0, 6, 0, 0));
+    assertThat(maxRunning.get()).isLessThanOrEqualTo(2);
+    assertThat(journal.results.get("p1").response().textContent()).isEqualTo("answer to prompt 1");
+  }
+
+  @Test
+  void should_skip_prompts_answered_by_an_earlier_run_and_retry_failed_ones() {
+    journal.record(BatchResult.succeeded("p1", reply("done")));
+    journal.record(BatchResult.failed("p2", "overloaded"));
+    List<String> asked = new ArrayList<>();
+    AIProvider provider =
+        new FakeProvider(
+            request -> {
+              synchronized (asked) {
+                asked.add(request.messages().getFirst().content());
+              }
+              return reply("ok");
+            },
+            null);
+
+    BatchService.Summary summary = new BatchService(provider, journal, 1).run(prompts(2));
+
+    assertThat(summary).isEqualTo(new BatchService.Summary(1, 1, 0, 0));
+    assertThat(asked).containsExactly("prompt 2");
+  }
+
+  @Test
+  void should_record_failures_without_stopping_the_run() {
+    AIProvider provider =
+        new FakeProvider(
+            request -> {
+              if (request.messages().getFirst().content().equals("prompt 1")) {
+                throw new RuntimeException("boom", new IllegalStateException("rate limited"));
+              }
+              return reply("ok");
+            },
+            null);
+
+    BatchService.Summary summary = new BatchService(provider, journal, 2).run(prompts(2));
+
+    assertThat(summary).isEqualTo(new BatchService.Summary(0, 1, 1, 0));
+    assertThat(journal.results.get("p1").error()).isEqualTo("rate limited");
+  }
+
+  @Test
+  void should_use_the_batch_api_and_continue_from_tool_uses_locally() {
+    FakeBatches batches = new FakeBatches(2);
+    List<AIRequest> askedLocally = new ArrayList<>();
+    AIProvider provider =
+        new FakeProvider(
+            request -> {
+              synchronized (askedLocally) {
+                askedLocally.add(request);
+              }
+              return new AIResponse(
+                  "after tools",
+                  List.of(),
+                  false,
+                  TokenUsage.NONE,
+                  List.of(ChatMessage.assistant("after tools")));
+            },
+            batches);
+    AtomicInteger reads = new AtomicInteger();
+    ToolRegistry toolRegistry = new ToolRegistry();
+    toolRegistry.registerTool(new ReadTool(reads));
+
+    BatchService.Summary summary =
+        new BatchService(provider, new ToolScheduler(toolRegistry), journal, 2).run(prompts(3));
+
+    assertThat(batches.submitted).hasSize(2);
+    assertThat(journal.openBatchIds()).isEmpty();
+    assertThat(summary).isEqualTo(new BatchService.Summary(0, 3, 0, 2));
+    // The tool ran once and the batch's reply was continued rather than asked again
+    assertThat(reads).hasValue(1);
+    assertThat(askedLocally).hasSize(1);
+    List<ChatMessage> continued = askedLocally.getFirst().messages();
+    assertThat(continued).hasSize(3);
+    assertThat(continued.getFirst().content()).isEqualTo("prompt 2");
+    assertThat(continued.get(1).blocks()).hasAtLeastOneElementOfType(MessageBlock.ToolUse.class);
+    assertThat(continued.get(2).blocks())
+        .containsExactly(new MessageBlock.ToolResult("t1", "read_file", "contents", false));
+    assertThat(journal.results.get("p2").response().transcript()).hasSize(3);
+    assertThat(journal.results.get("p2").response().textContent()).isEqualTo("after tools");
+  }
+
+  @Test
+  void should_collect_batches_left_open_by_an_earlier_run_instead_of_resubmitting() {
+    FakeBatches batches = new FakeBatches(10);
+    String earlier = batches.submit(Map.of("p1", requestFor("prompt 1")));
+    batches.submitted.clear();
+    journal.batchSubmitted(earlier);
+    AIProvider provider =
+        new FakeProvider(
+            request -> {
+              throw new AssertionError("not expected");
+            },
+            batches);
+
+    BatchService.Summary summary = new BatchService(provider, journal, 1).run(prompts(1));
+
+    assertThat(batches.submitted).isEmpty();
+    assertThat(summary).isEqualTo(new BatchService.Summary(0, 1, 0, 1));
+  }
+
+  private static List<BatchPrompt> prompts(int count) {
+    List<BatchPrompt> prompts = new ArrayList<>();
+    for (int i = 1; i <= count; i++) {
+      prompts.add(new BatchPrompt("p" + i, "prompt " + i));
+    }
+    return prompts;
+  }
+
+  private static AIResponse reply(String text) {
+    return new AIResponse(text, List.of(), false);
+  }
+
+  private static AIRequest requestFor(String prompt) {
+    return new AIRequest(List.of(ChatMessage.user(prompt)), "system", null, 100);
+  }
+
+  private record FakeProvider(Function<AIRequest, AIResponse> answer, MessageBatches batches)
+      implements AIProvider {
+
+    @Override
+    public AIResponse sendMessage(AIRequest request) {
+      return answer.apply(request);
+    }
+
+    @Override
+    public Optional<MessageBatches> messageBatches() {
+      return Optional.ofNullable(batches);
+    }
+
+    @Override
+    public String getProviderName() {
+      return "fake";
+    }
+  }
+
+  /** Answers every prompt at once; "prompt 2" asks for a tool. */
+  private static final class FakeBatches implements MessageBatches {
+    private final int maxBatchSize;
+    private final Map<String, Map<String, AIRequest>> submitted = new LinkedHashMap<>();
+    private final Map<String, Map<String, AIRequest>> all = new LinkedHashMap<>();
+
+    private FakeBatches(int maxBatchSize) {
+      this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public int maxBatchSize() {
+      return maxBatchSize;
+    }
+
+    @Override
+    public String submit(Map<String, AIRequest> requests) {
+      String id = "batch-" + all.size();
+      submitted.put(id, requests);
+      all.put(id, requests);
+      return id;
+    }
+
+    @Override
+    public List<BatchResult> awaitResults(String batchId) {
+      List<BatchResult> results = new ArrayList<>();
+      all.get(batchId)
+          .forEach(
+              (id, request) -> {
+                boolean usesTool = request.messages().getFirst().content().equals("prompt 2");
+                results.add(
+                    BatchResult.succeeded(
+                        id,
+                        new AIResponse(
+                            "batched",
+                            usesTool
+                                ? List.of(
+                                    new AIToolUse(
+                                        "read_file",
+                                        JsonNodeFactory.instance.objectNode().put("path", "a.txt"),
+                                        "t1"))
+                                : List.of(),
+                            usesTool)));
+              });
+      return results;
+    }
+  }
+
+  private record ReadTool(AtomicInteger reads) implements Tool {
+
+    @Override
+    public String getName() {
+      return "read_file";
+    }
+
+    @Override
+    public String getDescription() {
+      return "Reads a file";
+    }
+
+    @Override
+    public String getParameterSchema() {
+      return "{\"type\":\"object\",\"properties\":{\"path\":{\"type\":\"string\"}}}";
+    }
+
+    @Override
+    public String execute(JsonNode parameters) {
+      reads.incrementAndGet();
+      return "contents";
+    }
+
+    @Override
+    public void validate(JsonNode parameters) {
+      // The schema is all there is to check
+    }
+  }
+
+  private static final class InMemoryJournal implements BatchJournal {
+    private final Map<String, BatchResult> results = new ConcurrentHashMap<>();
+    private final Set<String> open = new HashSet<>();
+
+    @Override
+    public Set<String> succeededIds() {
+      Set<String> ids = new HashSet<>();
+      results.forEach(
+          (id, result) -> {
+            if (result.isSucceeded()) {
+              ids.add(id);
+            }
+          });
+      return ids;
+    }
+
+    @Override
+    public synchronized List<String> openBatchIds() {
+      return new ArrayList<>(open);
+    }
+
+    @Override
+    public synchronized void batchSubmitted(String batchId) {
+      open.add(batchId);
+    }
+
+    @Override
+    public synchronized void batchCollected(String batchId) {
+      open.remove(batchId);
+    }
+
+    @Override
+    public void record(BatchResult result) {
+      results.put(result.id(), result);
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package com.larseckart.core.services;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class CompiledSchemaTest {
+
+  private static final String SCHEMA =
+      """
+      {
+        "type": "object",
+        "properties": {
+          "path": { "type": "string", "minLength": 1 },
+          "show_hidden": { "type": "boolean" },
+          "shards": { "type": "integer", "minimum": 1 },
+          "mode": { "type": "string", "enum": ["fast", "full"] },
+          "tags": { "type": "array", "items": { "type": "string" } }
+        },
+        "required": ["path"],
+        "additionalProperties": false
+      }""";
+
+  private ObjectMapper mapper;
+  private CompiledSchema schema;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    mapper = new ObjectMapper();
+    schema = CompiledSchema.compile(mapper.readTree(SCHEMA));
+  }
+
+  @Test
+  void should_accept_valid_parameters() throws Exception {
+    JsonNode parameters =
+        mapper.readTree(
+            "{\"path\":\"a.txt\",\"show_hidden\":true,\"shards\":2,\"mode\":\"fast\",\"tags\":[\"x\"]}");
+
+    assertThat(schema.validate(parameters)).isEmpty();
+  }
+
+  @Test
+  void should_report_missing_required_property() throws Exception {
+    assertThat(schema.validate(mapper.readTree("{}")))
+        .containsExactly("missing required property parameters.path");
+  }
+
+  @Test
+  void should_report_wrong_types_with_location() throws Exception {
+    assertThat(schema.validate(mapper.readTree("{\"path\":42,\"show_hidden\":\"yes\"}")))
+        .containsExactly(
+            "parameters.path must be of type string but was integer",
+            "parameters.show_hidden must be of type boolean but was string");
+  }
+
+  @Test
+  void should_reject_whole_floats_for_integers_like_the_tools_do() throws Exception {
+    assertThat(schema.validate(mapper.readTree("{\"path\":\"a.txt\",\"shards\":3.0}")))
+        .containsExactly("parameters.shards must be of type integer but was number");
+  }
+
+  @Test
+  void should_report_unexpected_properties() throws Exception {
+    assertThat(schema.validate(mapper.readTree("{\"path\":\"a.txt\",\"extra\":1}")))
+        .containsExactly("unexpected property parameters.extra");
+  }
+
+  @Test
+  void should_check_bounds_enums_and_array_items() throws Exception {
+    JsonNode parameters =
+        mapper.readTree("{\"path\":\"\",\"shards\":0,\"mode\":\"slow\",\"tags\":[\"ok\",3]}");
+
+    assertThat(schema.validate(parameters))
+        .containsExactly(
+            "parameters.path must be at least 1 characters long",
+            "parameters.shards must be at least 1 but was 0",
+            "parameters.mode must be one of [\"fast\",\"full\"] but was \"slow\"",
+            "parameters.tags[1] must be of type string but was integer");
+  }
+
+  @Test
+  void should_reject_non_object_parameters() {
+    assertThat(schema.validate(null))
+        .containsExactly("parameters must be of type object but was missing");
+  }
+}
@@ -0,0 +1,129 @@
+package com.larseckart.core.services;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.larseckart.core.domain.ChatMessage;
+import com.larseckart.core.domain.ConversationContext;
+import com.larseckart.core.domain.ai.AIRequest;
+import com.larseckart.core.domain.ai.AIResponse;
+import com.larseckart.core.ports.AIProvider;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class ConversationCompactorTest {
+
+  private final ConversationContext context = new ConversationContext();
+  private final List<AIRequest> requests = new ArrayList<>();
+  private final List<Runnable> pending = new ArrayList<>();
+
+  @Test
+  void should_summarize_all_but_the_recent_turns_once_over_the_threshold() {
+    ConversationCompactor compactor = compactor(request -> "they talked about Tallinn");
+    addTurns(3);
+
+    compactor.startIfNeeded(context, 1_000);
+    runPending();
+    compactor.applyFinished(context);
+
+    assertThat(requests).hasSize(1);
+    assertThat(requests.getFirst().toolUse()).isFalse();
+    assertThat(requests.getFirst().messages()).hasSize(5).first().isEqualTo(ChatMessage.user("q1"));
+    assertThat(context.getHistory())
+        .hasSize(4)
+        .first()
+        .isEqualTo(
+            ChatMessage.user(ConversationCompactor.SUMMARY_PREFIX + "they talked about Tallinn"));
+    assertThat(context.getHistory().subList(2, 4))
+        .containsExactly(ChatMessage.user("q3"), ChatMessage.assistant("a3"));
+  }
+
+  @Test
+  void should_leave_a_history_under_the_threshold_alone() {
+    ConversationCompactor compactor = compactor(request -> "summary");
+    addTurns(3);
+
+    compactor.startIfNeeded(context, 100);
+
+    assertThat(pending).isEmpty();
+  }
+
+  @Test
+  void should_keep_the_conversation_going_while_the_summary_is_written() {
+    ConversationCompactor compactor = compactor(request -> "summary");
+    addTurns(3);
+
+    compactor.startIfNeeded(context, 1_000);
+    compactor.applyFinished(context);
+    compactor.startIfNeeded(context, 1_000);
+
+    assertThat(pending).hasSize(1);
+    assertThat(context.getHistory()).hasSize(6);
+  }
+
+  @Test
+  void should_try_again_after_a_failed_summary() {
+    ConversationCompactor compactor =
+        compactor(
+            request -> {
+              throw new IllegalStateException("overloaded");
+            });
+    addTurns(3);
+
+    compactor.startIfNeeded(context, 1_000);
+    runPending();
+    compactor.applyFinished(context);
+    compactor.startIfNeeded(context, 1_000);
+
+    assertThat(context.getHistory()).hasSize(6);
+    assertThat(pending).hasSize(1);
+  }
+
+  @Test
+  void should_drop_a_summary_of_history_that_changed_meanwhile() {
+    ConversationCompactor compactor = compactor(request -> "summary");
+    addTurns(3);
+    compactor.startIfNeeded(context, 1_000);
+    runPending();
+
+    ConversationContext other = new ConversationContext();
+    other.addUserMessage(ChatMessage.user("q1"));
+    compactor.applyFinished(other);
+
+    assertThat(other.getHistory()).containsExactly(ChatMessage.user("q1"));
+  }
+
+  private ConversationCompactor compactor(Function<AIRequest, String> summarize) {
+    AIProvider provider =
+        new AIProvider() {
+          @Override
+          public AIResponse sendMessage(AIRequest request) {
+            requests.add(request);
+            return new AIResponse(summarize.apply(request), List.of(), false);
+          }
+
+          @Override
+          public String getProviderName() {
+            return "Fake";
+          }
+        };
+    return new ConversationCompactor(provider, 500, 1, pending::add);
+  }
+
+  private void addTurns(int count) {
+    for (int i = 1; i <= count; i++) {
+      context.addUserMessage(ChatMessage.user("q" + i));
+      context.addAssistantMessage(ChatMessage.assistant("a" + i));
+    }
+  }
+
+  private void runPending() {
+    List<Runnable> tasks = new ArrayList<>(pending);
+    pending.clear();
+    tasks.forEach(Runnable::run);
+  }
+}
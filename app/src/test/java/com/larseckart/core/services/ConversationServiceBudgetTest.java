@@ -0,0 +1,110 @@
+package com.larseckart.core.services;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.larseckart.core.domain.ChatMessage;
+import com.larseckart.core.domain.ConversationContext;
+import com.larseckart.core.domain.TokenEstimator;
+import com.larseckart.core.domain.ai.AIRequest;
+import com.larseckart.core.domain.ai.AIResponse;
+import com.larseckart.core.domain.ai.TokenUsage;
+import com.larseckart.core.ports.AIProvider;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class ConversationServiceBudgetTest {
+
+  private final ConversationContext context = new ConversationContext();
+  private final List<AIRequest> requests = new ArrayList<>();
+  private final AIProvider provider =
+      new AIProvider() {
+        @Override
+        public AIResponse sendMessage(AIRequest request) {
+          requests.add(request);
+          return new AIResponse("ok", List.of(), false);
+        }
+
+        @Override
+        public String getProviderName() {
+          return "Fake";
+        }
+      };
+
+  @Test
+  void should_send_only_the_recent_turns_that_fit_the_context_window() {
+    ConversationService service = new ConversationService(context, provider, budgetForHistory(60));
+
+    service.sendMessage("x".repeat(100));
+    service.sendMessage("y".repeat(100));
+
+    assertThat(requests.get(0).messages()).containsExactly(ChatMessage.user("x".repeat(100)));
+    assertThat(requests.get(1).messages()).containsExactly(ChatMessage.user("y".repeat(100)));
+    assertThat(context.getHistory()).hasSize(4);
+  }
+
+  @Test
+  void should_send_the_whole_history_while_it_fits() {
+    ConversationService service =
+        new ConversationService(context, provider, budgetForHistory(1_000));
+
+    service.sendMessage("Hello");
+    service.sendMessage("How are you?");
+
+    assertThat(requests.get(1).messages())
+        .containsExactly(
+            ChatMessage.user("Hello"),
+            ChatMessage.assistant("ok"),
+            ChatMessage.user("How are you?"));
+  }
+
+  @Test
+  void should_not_mistake_the_tool_definitions_for_an_underestimated_history() {
+    // A provider whose tokenizer matches the raw estimate, with tools that dwarf a short history
+    long toolOverhead = 5_000;
+    AIProvider toolProvider =
+        new AIProvider() {
+          @Override
+          public AIResponse sendMessage(AIRequest request) {
+            requests.add(request);
+            long inputTokens =
+                toolOverhead
+                    + TokenEstimator.rawEstimate(request.systemPrompt())
+                    + request.messages().stream().mapToLong(TokenEstimator::rawEstimate).sum();
+            return new AIResponse(
+                "ok", List.of(), false, new TokenUsage(inputTokens, 10, 0, 0));
+          }
+
+          @Override
+          public long fixedOverheadEstimate() {
+            return toolOverhead;
+          }
+
+          @Override
+          public String getProviderName() {
+            return "Fake";
+          }
+        };
+    ConversationService service =
+        new ConversationService(context, toolProvider, budgetForHistory(1_000));
+
+    for (int turn = 0; turn < 8; turn++) {
+      service.sendMessage("x".repeat(200));
+    }
+
+    // 15 messages of ~54 tokens fit; a factor driven up by the tools would have left most out
+    assertThat(requests.getLast().messages()).hasSize(15);
+  }
+
+  private static ContextBudget budgetForHistory(long historyTokens) {
+    return new ContextBudget(
+        TokenEstimator.rawEstimate(ConversationService.SYSTEM_PROMPT)
+            + ConversationService.MAX_TOKENS
+            + historyTokens,
+        0,
+        Long.MAX_VALUE);
+  }
+}
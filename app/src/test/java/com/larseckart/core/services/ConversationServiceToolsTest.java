@@ -2,12 +2,21 @@ package com.larseckart.core.services;
 
 import static org.assertj.core.api.Assertions.*;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.larseckart.ApiKey;
 import com.larseckart.adapters.ai.AnthropicProvider;
+import com.larseckart.core.domain.ChatMessage;
 import com.larseckart.core.domain.ConversationContext;
+import com.larseckart.core.domain.MessageBlock;
+import com.larseckart.core.domain.Role;
+import com.larseckart.core.domain.ai.AIRequest;
+import com.larseckart.core.domain.ai.AIResponse;
+import com.larseckart.core.domain.ai.TokenUsage;
+import com.larseckart.core.ports.AIProvider;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayNameGeneration;
 import org.junit.jupiter.api.DisplayNameGenerator;
@@ -98,4 +107,42 @@ class ConversationServiceToolsTest {
     assertThat(aiProviderField.getType().getName())
         .isEqualTo("com.larseckart.core.ports.AIProvider");
   }
+
+  @Test
+  void should_record_tool_uses_and_results_in_context() {
+    ChatMessage toolUse =
+        ChatMessage.of(
+            Role.ASSISTANT,
+            List.of(
+                new MessageBlock.ToolUse(
+                    "toolu_1", "read_file", new ObjectMapper().createObjectNode())));
+    ChatMessage toolResult =
+        ChatMessage.toolResults(
+            List.of(new MessageBlock.ToolResult("toolu_1", "read_file", "content", false)));
+    ChatMessage answer = ChatMessage.assistant("The file says content");
+    AIProvider provider =
+        new AIProvider() {
+          @Override
+          public AIResponse sendMessage(AIRequest request) {
+            return new AIResponse(
+                answer.content(),
+                List.of(),
+                false,
+                TokenUsage.NONE,
+                List.of(toolUse, toolResult, answer));
+          }
+
+          @Override
+          public String getProviderName() {
+            return "Fake";
+          }
+        };
+    ConversationService service = new ConversationService(context, provider);
+
+    String response = service.sendMessage("What is in the file?");
+
+    assertThat(response).isEqualTo("The file says content");
+    assertThat(context.getHistory())
+        .containsExactly(ChatMessage.user("What is in the file?"), toolUse, toolResult, answer);
+  }
 }
@@ -0,0 +1,241 @@
+package com.larseckart.core.services;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.larseckart.core.domain.ConversationContext;
+import com.larseckart.core.domain.ai.AIRequest;
+import com.larseckart.core.domain.ai.AIResponse;
+import com.larseckart.core.ports.AIProvider;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class SessionRegistryTest {
+
+  private static final Duration IDLE_TIMEOUT = Duration.ofMinutes(30);
+
+  private final AtomicLong nanos = new AtomicLong();
+  private final List<String> opened = new ArrayList<>();
+  private final List<String> released = new ArrayList<>();
+  private final AIProvider provider =
+      new AIProvider() {
+        @Override
+        public AIResponse sendMessage(AIRequest request) {
+          return new AIResponse("ok", List.of(), false);
+        }
+
+        @Override
+        public String getProviderName() {
+          return "Fake";
+        }
+      };
+
+  @Test
+  void should_keep_a_separate_conversation_per_session() {
+    SessionRegistry registry = registry(Long.MAX_VALUE);
+
+    registry.withSession("alice", service -> service.sendMessage("Hello"));
+    registry.withSession("bob", service -> service.sendMessage("Hi"));
+    registry.withSession("alice", service -> service.sendMessage("Again"));
+
+    assertThat(opened).containsExactly("alice", "bob");
+    assertThat(registry.memoryUsage().hotMessages()).isEqualTo(6);
+  }
+
+  @Test
+  void should_only_accept_session_ids_it_issued() {
+    SessionRegistry registry = registry(Long.MAX_VALUE);
+
+    String sessionId = registry.newSessionId();
+    registry.withSession(sessionId, service -> service.sendMessage("Hello"));
+
+    assertThat(registry.isIssued(sessionId)).isTrue();
+    assertThat(registry.isIssued("mallory")).isFalse();
+    assertThatIllegalArgumentException()
+        .isThrownBy(() -> registry.withSession("mallory", service -> service.sendMessage("Hi")));
+    assertThat(opened).containsExactly(sessionId);
+  }
+
+  @Test
+  void should_forget_issued_ids_that_are_not_used_within_the_idle_timeout() {
+    SessionRegistry registry = registry(Long.MAX_VALUE);
+    String unused = registry.newSessionId();
+
+    nanos.addAndGet(IDLE_TIMEOUT.plusSeconds(1).toNanos());
+    String fresh = registry.newSessionId();
+    registry.evict();
+
+    assertThat(registry.isIssued(unused)).isFalse();
+    assertThat(registry.isIssued(fresh)).isTrue();
+  }
+
+  @Test
+  void should_forget_the_id_of_a_session_evicted_without_a_history() {
+    SessionRegistry registry = registry(Long.MAX_VALUE);
+    String empty = registry.newSessionId();
+    String used = registry.newSessionId();
+    registry.withSession(empty, service -> null);
+    registry.withSession(used, service -> service.sendMessage("Hello"));
+
+    nanos.addAndGet(IDLE_TIMEOUT.plusSeconds(1).toNanos());
+    registry.evict();
+
+    assertThat(registry.size()).isZero();
+    assertThat(registry.isIssued(empty)).isFalse();
+    assertThat(registry.isIssued(used)).isTrue();
+  }
+
+  @Test
+  void should_evict_idle_sessions_and_open_them_again_when_used() {
+    SessionRegistry registry = registry(Long.MAX_VALUE);
+    registry.withSession("alice", service -> service.sendMessage("Hello"));
+
+    nanos.addAndGet(IDLE_TIMEOUT.plusSeconds(1).toNanos());
+    registry.evict();
+
+    assertThat(registry.size()).isZero();
+    assertThat(released).containsExactly("alice");
+    registry.withSession("alice", service -> service.sendMessage("Back"));
+    assertThat(opened).containsExactly("alice", "alice");
+  }
+
+  @Test
+  void should_evict_idle_sessions_periodically_without_further_turns() throws Exception {
+    try (SessionRegistry registry = registry(Long.MAX_VALUE)) {
+      registry.withSession("alice", service -> service.sendMessage("Hello"));
+      nanos.addAndGet(IDLE_TIMEOUT.plusSeconds(1).toNanos());
+
+      registry.evictEvery(Duration.ofMillis(10));
+
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (registry.size() > 0 && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      assertThat(registry.size()).isZero();
+    }
+  }
+
+  @Test
+  void should_evict_the_least_recently_used_sessions_over_the_memory_cap() {
+    SessionRegistry registry = registry(Long.MAX_VALUE);
+    registry.withSession("alice", service -> service.sendMessage("x".repeat(1_000)));
+    long oneSession = registry.memoryUsage().totalBytes();
+    registry = registry(2 * oneSession);
+
+    for (String sessionId : List.of("alice", "bob", "carol")) {
+      nanos.incrementAndGet();
+      registry.withSession(sessionId, service -> service.sendMessage("x".repeat(1_000)));
+    }
+
+    assertThat(registry.size()).isEqualTo(2);
+    assertThat(registry.isOpen("alice")).isFalse();
+    assertThat(released).containsExactly("alice");
+  }
+
+  @Test
+  void should_not_evict_a_session_during_its_turn() {
+    SessionRegistry registry = registry(Long.MAX_VALUE);
+
+    registry.withSession(
+        "alice",
+        service -> {
+          nanos.addAndGet(IDLE_TIMEOUT.plusSeconds(1).toNanos());
+          return registry.withSession("bob", other -> other.sendMessage("Hi"));
+        });
+
+    assertThat(registry.isOpen("alice")).isTrue();
+    assertThat(registry.isOpen("bob")).isTrue();
+  }
+
+  @Test
+  void should_not_hold_up_other_sessions_while_one_is_opened() throws Exception {
+    CountDownLatch opening = new CountDownLatch(1);
+    CountDownLatch loaded = new CountDownLatch(1);
+    SessionRegistry registry =
+        new SessionRegistry(
+            sessionId -> {
+              if (sessionId.equals("alice")) {
+                opening.countDown();
+                if (!await(loaded)) {
+                  throw new IllegalStateException("Opening alice was never let through");
+                }
+              }
+              return new ConversationService(new ConversationContext(), provider);
+            },
+            released::add,
+            IDLE_TIMEOUT,
+            Long.MAX_VALUE,
+            nanos::get);
+    registry.addIssued(List.of("alice", "bob"));
+    CompletableFuture<String> alice =
+        CompletableFuture.supplyAsync(
+            () -> registry.withSession("alice", service -> service.sendMessage("Hello")));
+    assertThat(await(opening)).isTrue();
+
+    String bob = registry.withSession("bob", service -> service.sendMessage("Hi"));
+    registry.evict();
+    loaded.countDown();
+
+    assertThat(bob).isEqualTo("ok");
+    assertThat(alice.get(5, TimeUnit.SECONDS)).isEqualTo("ok");
+    assertThat(registry.isOpen("alice")).isTrue();
+  }
+
+  @Test
+  void should_try_to_open_a_session_again_after_opening_failed() {
+    AtomicInteger attempts = new AtomicInteger();
+    SessionRegistry registry =
+        new SessionRegistry(
+            sessionId -> {
+              if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("Log unreadable");
+              }
+              return new ConversationService(new ConversationContext(), provider);
+            },
+            released::add,
+            IDLE_TIMEOUT,
+            Long.MAX_VALUE,
+            nanos::get);
+    registry.addIssued(List.of("alice"));
+
+    assertThatIllegalStateException()
+        .isThrownBy(() -> registry.withSession("alice", service -> service.sendMessage("Hello")))
+        .withMessage("Log unreadable");
+    assertThat(registry.size()).isZero();
+    assertThat(registry.withSession("alice", service -> service.sendMessage("Again")))
+        .isEqualTo("ok");
+  }
+
+  private static boolean await(CountDownLatch latch) {
+    try {
+      return latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private SessionRegistry registry(long memoryCapBytes) {
+    SessionRegistry registry =
+        new SessionRegistry(
+            sessionId -> {
+              opened.add(sessionId);
+              return new ConversationService(new ConversationContext(), provider);
+            },
+            released::add,
+            IDLE_TIMEOUT,
+            memoryCapBytes,
+            nanos::get);
+    registry.addIssued(List.of("alice", "bob", "carol"));
+    return registry;
+  }
+}
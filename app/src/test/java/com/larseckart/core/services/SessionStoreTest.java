@@ -0,0 +1,107 @@
+package com.larseckart.core.services;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.larseckart.core.domain.ChatMessage;
+import com.larseckart.core.domain.ConversationContext;
+import com.larseckart.core.ports.session.SessionLog;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class SessionStoreTest {
+
+  private final InMemorySessionLog sessionLog = new InMemorySessionLog();
+  private final SessionStore store = new SessionStore(sessionLog);
+
+  @Test
+  void should_resume_a_session_and_log_what_is_added() {
+    sessionLog.append("alice", ChatMessage.user("Hello"));
+
+    ConversationContext context = store.open("alice");
+    context.addAssistantMessage(ChatMessage.assistant("Hi"));
+
+    assertThat(context.getHistory())
+        .containsExactly(ChatMessage.user("Hello"), ChatMessage.assistant("Hi"));
+    assertThat(sessionLog.load("alice")).isEqualTo(context.getHistory());
+  }
+
+  @Test
+  void should_rewrite_the_log_when_the_history_is_replaced() {
+    ConversationContext context = store.open("alice");
+    context.addUserMessage(ChatMessage.user("first"));
+    context.addAssistantMessage(ChatMessage.assistant("one"));
+    context.addUserMessage(ChatMessage.user("second"));
+
+    context.replacePrefix(context.getHistory().subList(0, 2), List.of(ChatMessage.user("summary")));
+
+    assertThat(sessionLog.load("alice"))
+        .containsExactly(ChatMessage.user("summary"), ChatMessage.user("second"));
+  }
+
+  @Test
+  void should_write_the_whole_history_again_after_a_failed_append() {
+    ConversationContext context = store.open("alice");
+    context.addUserMessage(ChatMessage.user("first"));
+    sessionLog.failAppends = true;
+    context.addAssistantMessage(ChatMessage.assistant("lost"));
+    sessionLog.failAppends = false;
+
+    context.addUserMessage(ChatMessage.user("second"));
+
+    assertThat(sessionLog.load("alice")).isEqualTo(context.getHistory()).hasSize(3);
+  }
+
+  @Test
+  void should_reject_session_ids_that_are_not_safe_file_names() {
+    assertThatThrownBy(() -> store.open("../etc/passwd"))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(SessionStore.isValidSessionId("tab-1_A")).isTrue();
+  }
+
+  private static final class InMemorySessionLog implements SessionLog {
+    private final Map<String, List<ChatMessage>> sessions = new HashMap<>();
+    private boolean failAppends;
+
+    @Override
+    public List<ChatMessage> load(String sessionId) {
+      return List.copyOf(sessions.getOrDefault(sessionId, List.of()));
+    }
+
+    @Override
+    public CompletableFuture<Void> append(String sessionId, ChatMessage message) {
+      if (failAppends) {
+        return CompletableFuture.failedFuture(
+            new UncheckedIOException(new IOException("Disk full")));
+      }
+      sessions.computeIfAbsent(sessionId, id -> new ArrayList<>()).add(message);
+      return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> rewrite(String sessionId, List<ChatMessage> messages) {
+      sessions.put(sessionId, new ArrayList<>(messages));
+      return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void release(String sessionId) {}
+
+    @Override
+    public Set<String> sessionIds() {
+      return sessions.keySet();
+    }
+  }
+}
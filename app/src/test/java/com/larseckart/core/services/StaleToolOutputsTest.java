@@ -0,0 +1,109 @@
+package com.larseckart.core.services;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.larseckart.core.domain.ChatMessage;
+import com.larseckart.core.domain.ContextWindow;
+import com.larseckart.core.domain.ConversationContext;
+import com.larseckart.core.domain.MessageBlock;
+import com.larseckart.core.domain.Role;
+import java.util.List;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class StaleToolOutputsTest {
+
+  private static final String FILE = "class Main {}\n".repeat(200);
+
+  private final ConversationContext context = new ConversationContext();
+
+  @Test
+  void should_send_an_unchanged_output_once() {
+    readTurn("t1", "Main.java", FILE);
+    readTurn("t2", "Copy.java", FILE);
+
+    ContextWindow window = elide();
+
+    assertThat(resultContent(window, 2))
+        .isEqualTo("[Unchanged output, shown in full in the result for t2]");
+    assertThat(resultContent(window, 6)).isEqualTo(FILE);
+    assertThat(window.estimatedTokens()).isLessThan(context.estimatedTokens());
+  }
+
+  @Test
+  void should_replace_an_output_outdated_by_the_same_call() {
+    readTurn("t1", "Main.java", FILE);
+    readTurn("t2", "Main.java", FILE + "// changed\n");
+
+    ContextWindow window = elide();
+
+    assertThat(resultContent(window, 2))
+        .isEqualTo(
+            "[Outdated output, the same read_file call is answered again in the result for t2]");
+    assertThat(resultContent(window, 6)).endsWith("// changed\n");
+  }
+
+  @Test
+  void should_keep_outputs_that_are_not_repeated() {
+    readTurn("t1", "Main.java", FILE);
+    readTurn("t2", "Other.java", FILE + "// other\n");
+
+    ContextWindow window = context.getRecentHistory(Long.MAX_VALUE);
+
+    assertThat(StaleToolOutputs.elide(window, window.messages().size())).isSameAs(window);
+  }
+
+  @Test
+  void should_leave_turns_that_are_not_settled_alone() {
+    readTurn("t1", "Main.java", FILE);
+    readTurn("t2", "Main.java", FILE);
+    readTurn("t3", "Main.java", FILE);
+
+    ContextWindow window = context.getRecentHistory(Long.MAX_VALUE);
+    ContextWindow elided = StaleToolOutputs.elide(window, 8);
+
+    // The second turn makes the first one redundant, the unsettled third one changes nothing
+    assertThat(resultContent(elided, 2))
+        .isEqualTo("[Unchanged output, shown in full in the result for t2]");
+    assertThat(resultContent(elided, 6)).isEqualTo(FILE);
+    assertThat(resultContent(elided, 10)).isEqualTo(FILE);
+  }
+
+  @Test
+  void should_keep_the_conversation_unchanged() {
+    readTurn("t1", "Main.java", FILE);
+    readTurn("t2", "Main.java", FILE);
+
+    elide();
+
+    MessageBlock.ToolResult kept =
+        (MessageBlock.ToolResult) context.getHistory().get(2).blocks().getFirst();
+    assertThat(kept.content()).isEqualTo(FILE);
+  }
+
+  private void readTurn(String id, String path, String content) {
+    context.addUserMessage(ChatMessage.user("Read " + path));
+    context.addMessage(
+        ChatMessage.of(
+            Role.ASSISTANT,
+            List.of(
+                new MessageBlock.ToolUse(
+                    id, "read_file", JsonNodeFactory.instance.objectNode().put("path", path)))));
+    context.addMessage(
+        ChatMessage.toolResults(
+            List.of(new MessageBlock.ToolResult(id, "read_file", content, false))));
+    context.addAssistantMessage(ChatMessage.assistant("Done"));
+  }
+
+  private ContextWindow elide() {
+    ContextWindow window = context.getRecentHistory(Long.MAX_VALUE);
+    return StaleToolOutputs.elide(window, window.messages().size());
+  }
+
+  private static String resultContent(ContextWindow window, int index) {
+    return ((MessageBlock.ToolResult) window.messages().get(index).blocks().getFirst()).content();
+  }
+}
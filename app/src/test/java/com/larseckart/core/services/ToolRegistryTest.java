@@ -174,6 +174,53 @@ class ToolRegistryTest {
     assertThat(result).isEqualTo("Result: 2+2");
   }
 
+  @Test
+  void should_reject_parameters_violating_the_schema_before_execution() {
+    int[] executions = {0};
+    Tool tool =
+        new Tool() {
+          @Override
+          public String getName() {
+            return "reader";
+          }
+
+          @Override
+          public String getDescription() {
+            return "Reads things";
+          }
+
+          @Override
+          public String getParameterSchema() {
+            return "{\"type\":\"object\",\"properties\":{\"path\":{\"type\":\"string\"}},\"required\":[\"path\"]}";
+          }
+
+          @Override
+          public String execute(JsonNode parameters) {
+            executions[0]++;
+            return "read";
+          }
+
+          @Override
+          public void validate(JsonNode parameters) {
+            if (parameters.get("path").asText().isBlank()) {
+              throw new IllegalArgumentException("'path' cannot be empty");
+            }
+          }
+        };
+    toolRegistry.registerTool(tool);
+
+    String missingPath = toolRegistry.routeFunctionCall("reader", mapper.createObjectNode());
+    String blankPath =
+        toolRegistry.routeFunctionCall("reader", mapper.createObjectNode().put("path", " "));
+
+    assertThat(missingPath)
+        .isEqualTo(
+            "Error: Invalid parameters for tool 'reader': missing required property parameters.path");
+    assertThat(blankPath)
+        .isEqualTo("Error: Invalid parameters for tool 'reader': 'path' cannot be empty");
+    assertThat(executions[0]).isZero();
+  }
+
   @Test
   void should_throw_exception_when_routing_to_unknown_tool() {
     ObjectNode params = mapper.createObjectNode();
@@ -197,6 +244,80 @@ class ToolRegistryTest {
     assertThat(retrieved.getDescription()).isEqualTo("Second version");
   }
 
+  @Test
+  void should_keep_catalog_when_same_tool_is_registered_again() {
+    Tool tool = createMockTool("tool1", "First tool");
+    toolRegistry.registerTool(tool);
+    ToolCatalog catalog = toolRegistry.getCatalog();
+
+    toolRegistry.registerTool(tool);
+
+    assertThat(toolRegistry.getCatalog()).isSameAs(catalog);
+    assertThat(toolRegistry.getCatalog().version()).isEqualTo(1);
+  }
+
+  @Test
+  void should_cache_provider_views_until_tool_set_changes() {
+    toolRegistry.registerTool(createMockTool("tool1", "First tool"));
+    int[] builds = {0};
+
+    List<String> first =
+        toolRegistry.getCatalog().providerView("test", catalog -> buildNames(catalog, builds));
+    List<String> second =
+        toolRegistry.getCatalog().providerView("test", catalog -> buildNames(catalog, builds));
+
+    assertThat(second).isSameAs(first);
+    assertThat(builds[0]).isEqualTo(1);
+
+    toolRegistry.registerTool(createMockTool("tool2", "Second tool"));
+    List<String> third =
+        toolRegistry.getCatalog().providerView("test", catalog -> buildNames(catalog, builds));
+
+    assertThat(third).containsExactly("tool1", "tool2");
+    assertThat(builds[0]).isEqualTo(2);
+  }
+
+  @Test
+  void should_reject_tool_with_invalid_schema_at_registration() {
+    Tool tool =
+        new Tool() {
+          @Override
+          public String getName() {
+            return "broken";
+          }
+
+          @Override
+          public String getDescription() {
+            return "Broken schema";
+          }
+
+          @Override
+          public String getParameterSchema() {
+            return "{not json";
+          }
+
+          @Override
+          public String execute(JsonNode parameters) {
+            return "executed";
+          }
+
+          @Override
+          public void validate(JsonNode parameters) {
+            // No validation for test
+          }
+        };
+
+    assertThatThrownBy(() -> toolRegistry.registerTool(tool))
+        .isInstanceOf(RuntimeException.class)
+        .hasMessageContaining("broken");
+    assertThat(toolRegistry.getTool("broken")).isNull();
+  }
+
+  private List<String> buildNames(ToolCatalog catalog, int[] builds) {
+    builds[0]++;
+    return catalog.definitions().stream().map(ToolCatalog.ToolDefinition::name).toList();
+  }
+
   private Tool createMockTool(String name, String description) {
     return new Tool() {
       @Override
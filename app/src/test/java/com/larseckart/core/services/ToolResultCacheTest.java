@@ -0,0 +1,151 @@
+package com.larseckart.core.services;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.larseckart.core.domain.Tool;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class ToolResultCacheTest {
+
+  private ToolResultCache cache;
+  private ObjectMapper mapper;
+  private CountingTool reader;
+  private CountingTool writer;
+
+  @BeforeEach
+  void setUp() {
+    cache = new ToolResultCache();
+    mapper = new ObjectMapper();
+    reader = new CountingTool("read", true, "content");
+    writer = new CountingTool("write", false, "written");
+  }
+
+  @Test
+  void should_serve_repeated_reads_from_cache() {
+    cache.execute(reader, params("/project/a.txt"));
+    String result = cache.execute(reader, params("/project/a.txt"));
+
+    assertThat(result).isEqualTo("content");
+    assertThat(reader.executions.get()).isEqualTo(1);
+    assertThat(cache.stats().hits()).isEqualTo(1);
+    assertThat(cache.stats().misses()).isEqualTo(1);
+    assertThat(cache.stats().hitRate()).isEqualTo(0.5);
+  }
+
+  @Test
+  void should_treat_parameters_with_different_field_order_as_equal() throws Exception {
+    JsonNode first = mapper.readTree("{\"path\":\"/project/a.txt\",\"encoding\":\"UTF-8\"}");
+    JsonNode second = mapper.readTree("{\"encoding\":\"UTF-8\",\"path\":\"/project/a.txt\"}");
+
+    assertThat(ToolResultCache.key("read", first)).isEqualTo(ToolResultCache.key("read", second));
+  }
+
+  @Test
+  void should_invalidate_reads_of_overlapping_paths_after_a_write() {
+    cache.execute(reader, params("/project/a.txt"));
+    cache.execute(reader, params("/project/b.txt"));
+
+    cache.execute(writer, params("/project/a.txt"));
+    cache.execute(reader, params("/project/a.txt"));
+    cache.execute(reader, params("/project/b.txt"));
+
+    assertThat(reader.executions.get()).isEqualTo(3);
+    assertThat(cache.stats().invalidations()).isEqualTo(1);
+  }
+
+  @Test
+  void should_invalidate_directory_listings_containing_a_written_file() {
+    cache.execute(reader, params("/project"));
+
+    cache.execute(writer, params("/project/a.txt"));
+    cache.execute(reader, params("/project"));
+
+    assertThat(reader.executions.get()).isEqualTo(2);
+  }
+
+  @Test
+  void should_never_cache_mutating_tools_or_errors() {
+    CountingTool failingReader = new CountingTool("read", true, "Error: File not found");
+
+    cache.execute(writer, params("/project/a.txt"));
+    cache.execute(writer, params("/project/a.txt"));
+    cache.execute(failingReader, params("/project/a.txt"));
+    cache.execute(failingReader, params("/project/a.txt"));
+
+    assertThat(writer.executions.get()).isEqualTo(2);
+    assertThat(failingReader.executions.get()).isEqualTo(2);
+  }
+
+  @Test
+  void should_forget_everything_on_clear() {
+    cache.execute(reader, params("/project/a.txt"));
+
+    cache.clear();
+    cache.execute(reader, params("/project/a.txt"));
+
+    assertThat(reader.executions.get()).isEqualTo(2);
+  }
+
+  private JsonNode params(String path) {
+    return mapper.createObjectNode().put("path", path);
+  }
+
+  private static class CountingTool implements Tool {
+
+    private final String name;
+    private final boolean readOnly;
+    private final String result;
+    private final AtomicInteger executions = new AtomicInteger();
+
+    CountingTool(String name, boolean readOnly, String result) {
+      this.name = name;
+      this.readOnly = readOnly;
+      this.result = result;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public String getDescription() {
+      return "Counting tool";
+    }
+
+    @Override
+    public String getParameterSchema() {
+      return "{\"type\":\"object\",\"properties\":{\"path\":{\"type\":\"string\"}}}";
+    }
+
+    @Override
+    public String execute(JsonNode parameters) {
+      executions.incrementAndGet();
+      return result;
+    }
+
+    @Override
+    public void validate(JsonNode parameters) {
+      // No validation for test
+    }
+
+    @Override
+    public boolean isReadOnly() {
+      return readOnly;
+    }
+
+    @Override
+    public Optional<Path> targetPath(JsonNode parameters) {
+      return Optional.of(Path.of(parameters.get("path").asText()));
+    }
+  }
+}
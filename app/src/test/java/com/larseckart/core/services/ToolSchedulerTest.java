@@ -0,0 +1,324 @@
+package com.larseckart.core.services;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.larseckart.core.domain.Tool;
+import com.larseckart.core.domain.ai.AIToolUse;
+import com.larseckart.core.ports.StreamListener;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class ToolSchedulerTest {
+
+  private ToolRegistry toolRegistry;
+  private ToolScheduler scheduler;
+  private ObjectMapper mapper;
+
+  @BeforeEach
+  void setUp() {
+    toolRegistry = new ToolRegistry();
+    scheduler = new ToolScheduler(toolRegistry);
+    mapper = new ObjectMapper();
+  }
+
+  @Test
+  void should_run_independent_reads_concurrently() {
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    toolRegistry.registerTool(
+        new PathTool(
+            "read",
+            true,
+            parameters -> {
+              bothStarted.countDown();
+              try {
+                return bothStarted.await(5, TimeUnit.SECONDS) ? "concurrent" : "sequential";
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return "interrupted";
+              }
+            }));
+
+    List<String> results = outputs(List.of(call("read", "/a"), call("read", "/b")));
+
+    assertThat(results).containsExactly("concurrent", "concurrent");
+  }
+
+  @Test
+  void should_keep_request_order_for_writes_to_the_same_path() {
+    List<String> executionOrder = new CopyOnWriteArrayList<>();
+    toolRegistry.registerTool(
+        new PathTool(
+            "write",
+            false,
+            parameters -> {
+              String label = parameters.get("label").asText();
+              if (label.equals("first")) {
+                sleep(100);
+              }
+              executionOrder.add(label);
+              return label;
+            }));
+
+    List<String> results =
+        outputs(
+            List.of(
+                call("write", "/dir/file.txt", "first"),
+                call("write", "/dir/file.txt", "second")));
+
+    assertThat(results).containsExactly("first", "second");
+    assertThat(executionOrder).containsExactly("first", "second");
+  }
+
+  @Test
+  void should_order_reads_after_a_write_to_an_enclosing_path() {
+    List<String> executionOrder = new CopyOnWriteArrayList<>();
+    toolRegistry.registerTool(
+        new PathTool(
+            "write",
+            false,
+            parameters -> {
+              sleep(100);
+              executionOrder.add("write");
+              return "written";
+            }));
+    toolRegistry.registerTool(
+        new PathTool(
+            "read",
+            true,
+            parameters -> {
+              executionOrder.add("read");
+              return "read";
+            }));
+
+    List<String> results = outputs(List.of(call("write", "/dir/file.txt"), call("read", "/dir")));
+
+    assertThat(results).containsExactly("written", "read");
+    assertThat(executionOrder).containsExactly("write", "read");
+  }
+
+  @Test
+  void should_return_results_in_request_order() {
+    toolRegistry.registerTool(
+        new PathTool(
+            "read",
+            true,
+            parameters -> {
+              String path = parameters.get("path").asText();
+              if (path.equals("/slow")) {
+                sleep(100);
+              }
+              return path;
+            }));
+
+    List<String> results = outputs(List.of(call("read", "/slow"), call("read", "/fast")));
+
+    assertThat(results).containsExactly("/slow", "/fast");
+  }
+
+  @Test
+  void should_report_unknown_tools_as_failed() {
+    ToolOutcome outcome = scheduler.executeAll(List.of(call("missing", "/a"))).getFirst();
+
+    assertThat(outcome.status()).isEqualTo(ToolOutcome.Status.FAILED);
+    assertThat(outcome.isError()).isTrue();
+    assertThat(outcome.toModelText())
+        .startsWith("Error: {")
+        .contains("\"status\":\"failed\"")
+        .contains("Unknown tool: missing");
+  }
+
+  @Test
+  void should_interrupt_tools_that_exceed_their_timeout() throws Exception {
+    CountDownLatch interrupted = new CountDownLatch(1);
+    toolRegistry.registerTool(
+        new PathTool(
+            "hang",
+            true,
+            parameters -> {
+              try {
+                Thread.sleep(10_000);
+                return "finished";
+              } catch (InterruptedException e) {
+                interrupted.countDown();
+                return "interrupted";
+              }
+            }) {
+          @Override
+          public Duration timeout() {
+            return Duration.ofMillis(100);
+          }
+        });
+
+    ToolOutcome outcome = scheduler.executeAll(List.of(call("hang", "/a"))).getFirst();
+
+    assertThat(outcome.status()).isEqualTo(ToolOutcome.Status.TIMED_OUT);
+    assertThat(outcome.toModelText()).contains("\"status\":\"timed_out\"");
+    assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  void should_stop_at_the_turn_deadline() {
+    ToolScheduler shortTurns = new ToolScheduler(toolRegistry, Duration.ofMillis(100));
+    toolRegistry.registerTool(
+        new PathTool(
+            "write",
+            false,
+            parameters -> {
+              sleep(1_000);
+              return "written";
+            }));
+
+    List<ToolOutcome> outcomes =
+        shortTurns.executeAll(List.of(call("write", "/a"), call("write", "/a")));
+
+    assertThat(outcomes)
+        .extracting(ToolOutcome::status)
+        .containsExactly(ToolOutcome.Status.TIMED_OUT, ToolOutcome.Status.TIMED_OUT);
+  }
+
+  @Test
+  void should_report_tool_start_and_end_to_the_listener() {
+    toolRegistry.registerTool(new PathTool("read", true, parameters -> "content"));
+    List<String> events = new CopyOnWriteArrayList<>();
+    StreamListener listener =
+        new StreamListener() {
+          @Override
+          public void onTextDelta(String delta) {}
+
+          @Override
+          public void onToolStart(String toolName) {
+            events.add("start " + toolName);
+          }
+
+          @Override
+          public void onToolEnd(String toolName, String status, Duration elapsed) {
+            events.add("end " + toolName + " " + status);
+          }
+        };
+
+    scheduler.executeAll(List.of(call("read", "/a"), call("missing", "/b")), listener);
+
+    assertThat(events)
+        .containsExactlyInAnyOrder(
+            "start read", "end read completed", "start missing", "end missing failed");
+  }
+
+  @Test
+  void should_ignore_failing_listeners() {
+    toolRegistry.registerTool(new PathTool("read", true, parameters -> "content"));
+    StreamListener disconnected =
+        new StreamListener() {
+          @Override
+          public void onTextDelta(String delta) {}
+
+          @Override
+          public void onToolStart(String toolName) {
+            throw new IllegalStateException("Client disconnected");
+          }
+        };
+
+    List<ToolOutcome> outcomes = scheduler.executeAll(List.of(call("read", "/a")), disconnected);
+
+    assertThat(outcomes).extracting(ToolOutcome::output).containsExactly("content");
+  }
+
+  @Test
+  void should_share_memoized_reads_only_between_turns_given_the_same_cache() {
+    AtomicInteger executions = new AtomicInteger();
+    toolRegistry.registerTool(
+        new PathTool("read", true, parameters -> "read " + executions.incrementAndGet()));
+    ToolResultCache conversation = new ToolResultCache();
+    ToolResultCache otherConversation = new ToolResultCache();
+
+    scheduler.executeAll(List.of(call("read", "/a")), StreamListener.NONE, conversation);
+    scheduler.executeAll(List.of(call("read", "/a")), StreamListener.NONE, conversation);
+    List<ToolOutcome> other =
+        scheduler.executeAll(List.of(call("read", "/a")), StreamListener.NONE, otherConversation);
+
+    assertThat(other.getFirst().output()).isEqualTo("read 2");
+    assertThat(conversation.stats().hits()).isEqualTo(1);
+    assertThat(otherConversation.stats().hits()).isZero();
+  }
+
+  private List<String> outputs(List<AIToolUse> toolUses) {
+    return scheduler.executeAll(toolUses).stream().map(ToolOutcome::output).toList();
+  }
+
+  private AIToolUse call(String toolName, String path) {
+    return call(toolName, path, "");
+  }
+
+  private AIToolUse call(String toolName, String path, String label) {
+    return new AIToolUse(toolName, mapper.createObjectNode().put("path", path).put("label", label));
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class PathTool implements Tool {
+
+    private final String name;
+    private final boolean readOnly;
+    private final Function<JsonNode, String> body;
+
+    PathTool(String name, boolean readOnly, Function<JsonNode, String> body) {
+      this.name = name;
+      this.readOnly = readOnly;
+      this.body = body;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public String getDescription() {
+      return "Test tool " + name;
+    }
+
+    @Override
+    public String getParameterSchema() {
+      return "{\"type\":\"object\",\"properties\":{\"path\":{\"type\":\"string\"}}}";
+    }
+
+    @Override
+    public String execute(JsonNode parameters) {
+      return body.apply(parameters);
+    }
+
+    @Override
+    public void validate(JsonNode parameters) {
+      // No validation for test
+    }
+
+    @Override
+    public boolean isReadOnly() {
+      return readOnly;
+    }
+
+    @Override
+    public Optional<Path> targetPath(JsonNode parameters) {
+      return Optional.of(Path.of(parameters.get("path").asText()));
+    }
+  }
+}
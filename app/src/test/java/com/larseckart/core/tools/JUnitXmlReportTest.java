@@ -0,0 +1,71 @@
+package com.larseckart.core.tools;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.larseckart.core.tools.JUnitXmlReport.SuiteResult;
+import com.larseckart.core.tools.JUnitXmlReport.TestFailure;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class JUnitXmlReportTest {
+
+  @TempDir Path tempDir;
+
+  @Test
+  void should_read_the_counts_duration_and_failed_tests_of_a_suite() throws IOException {
+    Path report = tempDir.resolve("TEST-com.example.FooTest.xml");
+    Files.writeString(
+        report,
+        """
+        <?xml version="1.0" encoding="UTF-8"?>
+        <testsuite name="com.example.FooTest" tests="4" skipped="1" failures="1" errors="1" \
+        time="1.25">
+          <testcase name="passes" classname="com.example.FooTest" time="0.1"/>
+          <testcase name="fails" classname="com.example.FooTest" time="0.2">
+            <failure message="expected 1 but was 2" type="org.opentest4j.AssertionFailedError">
+              stack trace
+            </failure>
+          </testcase>
+          <testcase name="throws" classname="com.example.FooTest" time="0.3">
+            <error message="boom" type="java.lang.IllegalStateException">stack trace</error>
+          </testcase>
+          <testcase name="skipped" classname="com.example.FooTest" time="0">
+            <skipped/>
+          </testcase>
+          <system-out><![CDATA[]]></system-out>
+        </testsuite>
+        """);
+
+    SuiteResult suite = JUnitXmlReport.parse(report);
+
+    assertThat(suite)
+        .extracting(
+            SuiteResult::testClass,
+            SuiteResult::tests,
+            SuiteResult::failures,
+            SuiteResult::errors,
+            SuiteResult::skipped,
+            SuiteResult::durationMillis)
+        .containsExactly("com.example.FooTest", 4, 1, 1, 1, 1250L);
+    assertThat(suite.failedTests())
+        .containsExactly(
+            new TestFailure("com.example.FooTest", "fails", "expected 1 but was 2"),
+            new TestFailure("com.example.FooTest", "throws", "boom"));
+  }
+
+  @Test
+  void should_report_a_malformed_file_as_an_io_error() throws IOException {
+    Path report = tempDir.resolve("TEST-broken.xml");
+    Files.writeString(report, "<testsuite name=\"broken\"");
+
+    assertThatThrownBy(() -> JUnitXmlReport.parse(report))
+        .isInstanceOf(IOException.class)
+        .hasMessageContaining("Malformed JUnit XML report");
+  }
+}
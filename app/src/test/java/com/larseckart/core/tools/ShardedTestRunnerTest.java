@@ -0,0 +1,119 @@
+package com.larseckart.core.tools;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.larseckart.core.tools.JUnitXmlReport.TestFailure;
+import com.larseckart.core.tools.ShardedTestRunner.Totals;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class ShardedTestRunnerTest {
+
+  @TempDir Path projectDir;
+
+  @Test
+  void should_merge_the_reports_of_all_shards_and_update_the_timing_history()
+      throws IOException {
+    writeReport(
+        0,
+        "com.example.FooTest",
+        3,
+        1,
+        0,
+        0,
+        "2.0",
+        failure("com.example.FooTest", "fails", "expected"));
+    writeReport(0, "com.example.BarTest", 2, 0, 0, 1, "0.5", "");
+    writeReport(
+        1,
+        "com.example.BazTest",
+        1,
+        0,
+        1,
+        0,
+        "1.5",
+        error("com.example.BazTest", "throws", "boom"));
+    // Reports of a shard that is not part of this run are left alone
+    writeReport(2, "com.example.OldTest", 7, 7, 0, 0, "9.0", "");
+    Path historyFile = projectDir.resolve(ShardedTestRunner.HISTORY_FILE);
+    TestTimingHistory history = TestTimingHistory.load(historyFile);
+
+    Totals totals =
+        new ShardedTestRunner(projectDir, "./gradlew").collectReports(List.of(0, 1), history);
+
+    assertThat(totals.tests()).isEqualTo(6);
+    assertThat(totals.failures()).isEqualTo(1);
+    assertThat(totals.errors()).isEqualTo(1);
+    assertThat(totals.skipped()).isEqualTo(1);
+    assertThat(totals.failedTests())
+        .containsExactlyInAnyOrder(
+            new TestFailure("com.example.FooTest", "fails", "expected"),
+            new TestFailure("com.example.BazTest", "throws", "boom"));
+    assertThat(TestTimingHistory.load(historyFile).durations())
+        .containsOnly(
+            entry("com.example.FooTest", 2000L),
+            entry("com.example.BarTest", 500L),
+            entry("com.example.BazTest", 1500L));
+  }
+
+  @Test
+  void should_skip_unreadable_reports() throws IOException {
+    writeReport(0, "com.example.FooTest", 1, 0, 0, 0, "0.1", "");
+    Path broken = reportDir(0).resolve("TEST-broken.xml");
+    Files.writeString(broken, "<testsuite");
+
+    Totals totals =
+        new ShardedTestRunner(projectDir, "./gradlew")
+            .collectReports(
+                List.of(0), TestTimingHistory.load(projectDir.resolve("timings.properties")));
+
+    assertThat(totals.tests()).isEqualTo(1);
+    assertThat(totals.failedTests()).isEmpty();
+  }
+
+  private void writeReport(
+      int shard,
+      String testClass,
+      int tests,
+      int failures,
+      int errors,
+      int skipped,
+      String time,
+      String testCases)
+      throws IOException {
+    Files.writeString(
+        reportDir(shard).resolve("TEST-" + testClass + ".xml"),
+        """
+        <?xml version="1.0" encoding="UTF-8"?>
+        <testsuite name="%s" tests="%d" failures="%d" errors="%d" skipped="%d" time="%s">
+        %s
+        </testsuite>
+        """
+            .formatted(testClass, tests, failures, errors, skipped, time, testCases));
+  }
+
+  private Path reportDir(int shard) throws IOException {
+    return Files.createDirectories(
+        projectDir.resolve("app/build/test-shards/shard-" + shard + "/xml"));
+  }
+
+  private static String failure(String testClass, String test, String message) {
+    return testCase(testClass, test, "<failure message=\"%s\">trace</failure>".formatted(message));
+  }
+
+  private static String error(String testClass, String test, String message) {
+    return testCase(testClass, test, "<error message=\"%s\">trace</error>".formatted(message));
+  }
+
+  private static String testCase(String testClass, String test, String problem) {
+    return "<testcase name=\"%s\" classname=\"%s\">%s</testcase>"
+        .formatted(test, testClass, problem);
+  }
+}
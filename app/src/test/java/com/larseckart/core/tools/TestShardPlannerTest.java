@@ -0,0 +1,71 @@
+package com.larseckart.core.tools;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.larseckart.core.tools.TestShardPlanner.Shard;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class TestShardPlannerTest {
+
+  private TestShardPlanner planner;
+
+  @BeforeEach
+  void setUp() {
+    planner = new TestShardPlanner();
+  }
+
+  @Test
+  void should_balance_classes_by_historical_duration() {
+    Map<String, Long> durations = Map.of("A", 8000L, "B", 5000L, "C", 4000L, "D", 3000L);
+
+    List<Shard> shards = planner.plan(List.of("A", "B", "C", "D"), durations, 2);
+
+    assertThat(shards).hasSize(2);
+    assertThat(shards.get(0).testClasses()).containsExactly("A", "D");
+    assertThat(shards.get(0).estimatedMillis()).isEqualTo(11000L);
+    assertThat(shards.get(1).testClasses()).containsExactly("B", "C");
+    assertThat(shards.get(1).estimatedMillis()).isEqualTo(9000L);
+  }
+
+  @Test
+  void should_assign_every_class_exactly_once() {
+    List<String> classes = List.of("A", "B", "C", "D", "E", "F", "G");
+
+    List<Shard> shards = planner.plan(classes, Map.of(), 3);
+
+    assertThat(shards.stream().flatMap(shard -> shard.testClasses().stream()))
+        .containsExactlyInAnyOrderElementsOf(classes);
+  }
+
+  @Test
+  void should_not_create_more_shards_than_classes() {
+    List<Shard> shards = planner.plan(List.of("A", "B"), Map.of(), 8);
+
+    assertThat(shards).hasSize(2);
+  }
+
+  @Test
+  void should_use_average_duration_for_unknown_classes() {
+    Map<String, Long> durations = Map.of("Known1", 2000L, "Known2", 4000L);
+
+    List<Shard> shards = planner.plan(List.of("Known1", "Known2", "New"), durations, 3);
+
+    assertThat(shards)
+        .filteredOn(shard -> shard.testClasses().contains("New"))
+        .singleElement()
+        .extracting(Shard::estimatedMillis)
+        .isEqualTo(3000L);
+  }
+
+  @Test
+  void should_reject_non_positive_shard_count() {
+    assertThatThrownBy(() -> planner.plan(List.of("A"), Map.of(), 0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,55 @@
+package com.larseckart.core.tools;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class TestTimingHistoryTest {
+
+  @TempDir Path tempDir;
+
+  @Test
+  void should_start_empty_when_no_history_file_exists() {
+    TestTimingHistory history = TestTimingHistory.load(tempDir.resolve("missing.properties"));
+
+    assertThat(history.durations()).isEmpty();
+  }
+
+  @Test
+  void should_persist_and_reload_durations() throws Exception {
+    Path file = tempDir.resolve("nested/timings.properties");
+    TestTimingHistory history = TestTimingHistory.load(file);
+    history.record("com.example.FooTest", 1500);
+    history.save();
+
+    TestTimingHistory reloaded = TestTimingHistory.load(file);
+
+    assertThat(Files.exists(file)).isTrue();
+    assertThat(reloaded.durations()).containsEntry("com.example.FooTest", 1500L);
+  }
+
+  @Test
+  void should_smooth_repeated_observations() {
+    TestTimingHistory history = TestTimingHistory.load(tempDir.resolve("timings.properties"));
+    history.record("com.example.FooTest", 1000);
+    history.record("com.example.FooTest", 3000);
+
+    assertThat(history.durations()).containsEntry("com.example.FooTest", 2000L);
+  }
+
+  @Test
+  void should_ignore_malformed_entries() throws Exception {
+    Path file = tempDir.resolve("timings.properties");
+    Files.writeString(file, "com.example.FooTest=abc\ncom.example.BarTest=250\n");
+
+    TestTimingHistory history = TestTimingHistory.load(file);
+
+    assertThat(history.durations()).containsOnlyKeys("com.example.BarTest");
+  }
+}